@@ -0,0 +1,50 @@
+package com.planifcarbon.backend.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serve the requests on virtual threads when {@code web.virtual-threads} is true.
+ * Virtual threads need Java 21, on an older runtime Tomcat keeps its thread pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "web.virtual-threads", havingValue = "true")
+public class VirtualThreadConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    /**
+     * Returns an executor starting a virtual thread per task, if the runtime has virtual threads.
+     *
+     * @return the executor, or null if the runtime has no virtual threads.
+     */
+    static Executor virtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace the thread pool of Tomcat by virtual threads.
+     *
+     * @return the customizer of the protocol handler of Tomcat.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            Executor executor = virtualThreadExecutor();
+            if (executor == null) {
+                logger.warn("Virtual threads need Java 21, requests are served by the thread pool of Tomcat");
+            } else {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+}
@@ -1,15 +1,25 @@
 package com.planifcarbon.backend.controllers;
 
 import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import com.planifcarbon.backend.dtos.PathRequestDTO;
+import com.planifcarbon.backend.dtos.PathResultDTO;
+import com.planifcarbon.backend.dtos.ReachableStationDTO;
+import com.planifcarbon.backend.dtos.TravelMatrixDTO;
+import com.planifcarbon.backend.dtos.TravelMatrixRequestDTO;
+import com.planifcarbon.backend.services.BatchService;
+import com.planifcarbon.backend.services.MatrixService;
 import com.planifcarbon.backend.services.PathService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -20,15 +30,21 @@ import java.util.List;
 public class PathController {
     private static final Logger logger = LoggerFactory.getLogger(PathController.class);
     private final PathService pathService;
+    private final MatrixService matrixService;
+    private final BatchService batchService;
 
 
     /**
      * Constructs a new PathController object.
      *
      * @param pathService The PathService object that the controller will use for processing Path-related requests.
+     * @param matrixService The MatrixService object that the controller will use for travel matrices.
+     * @param batchService The BatchService object that the controller will use for batches of requests.
      */
-    public PathController(PathService pathService) {
+    public PathController(PathService pathService, MatrixService matrixService, BatchService batchService) {
         this.pathService = pathService;
+        this.matrixService = matrixService;
+        this.batchService = batchService;
     }
 
     /**
@@ -39,7 +55,9 @@ public class PathController {
      * @param time the starting time.
      * @param method the method to use to calculate the best path (time / distance).
      * @param transportation choose between (metro, metro and walk, walk).
-     * @return The best path according the method.
+     * @param engine the routing engine to use (dijkstra, astar, raptor, csa), dijkstra by default.
+     * @param timeout the time budget of the search in milliseconds, it can only shorten the one of the server.
+     * @return The best path according the method, the best one found so far if the search ran out of time.
      */
     @GetMapping("/best-path")
     public ResponseEntity<List<DjikstraSearchResultDTO>> getBestTimePath(
@@ -47,9 +65,66 @@ public class PathController {
             @RequestParam(name = "end") String end,
             @RequestParam(name = "time") Integer time,
             @RequestParam(name = "method") String method,
-            @RequestParam(name = "transportation") String transportation
+            @RequestParam(name = "transportation") String transportation,
+            @RequestParam(name = "engine", required = false, defaultValue = "DIJKSTRA") String engine,
+            @RequestParam(name = "timeout", required = false) Long timeout
     ) {
-        logger.info("Request to get best path from {} to {} at {} by {}", start, end, time, method);
-        return ResponseEntity.ok(this.pathService.getBestPath(start, end, time, method, transportation));
+        logger.info("Request to get best path from {} to {} at {} by {} with {}", start, end, time, method, engine);
+        return ResponseEntity.ok(this.pathService.getBestPath(start, end, time, method, transportation, engine,
+                timeout == null ? null : Duration.ofMillis(timeout)));
+    }
+
+    /**
+     * Calculate the stations reachable from start within a max travel time / distance, with one search.
+     *
+     * @param start the starting position.
+     * @param time the starting time.
+     * @param method the method to use (time / distance).
+     * @param transportation choose between (metro, metro and walk, walk).
+     * @param limit the max travel time in seconds, or the max distance in km.
+     * @param timeout the time budget of the search in milliseconds, it can only shorten the one of the server.
+     * @return The reachable stations with their best arrival time / distance.
+     */
+    @GetMapping("/isochrone")
+    public ResponseEntity<List<ReachableStationDTO>> getIsochrone(
+            @RequestParam(name = "start") String start,
+            @RequestParam(name = "time") Integer time,
+            @RequestParam(name = "method") String method,
+            @RequestParam(name = "transportation") String transportation,
+            @RequestParam(name = "limit") Double limit,
+            @RequestParam(name = "timeout", required = false) Long timeout
+    ) {
+        logger.info("Request to get stations reachable from {} at {} by {} within {}", start, time, method, limit);
+        return ResponseEntity.ok(this.pathService.getIsochrone(start, time, method, transportation, limit,
+                timeout == null ? null : Duration.ofMillis(timeout)));
+    }
+
+    /**
+     * Calculate the travel time / distance from each origin to each destination station.
+     *
+     * @param request the origins, the destination stations, the starting time, the method and the transportation.
+     * @return The matrix of the travel times / distances, null where a destination is not reachable.
+     */
+    @PostMapping("/matrix")
+    public ResponseEntity<TravelMatrixDTO> getTravelMatrix(@RequestBody TravelMatrixRequestDTO request) {
+        logger.info("Request to get travel matrix of {} origins and {} destinations at {} by {}",
+                request.getOrigins() == null ? 0 : request.getOrigins().size(),
+                request.getDestinations() == null ? 0 : request.getDestinations().size(), request.getTime(),
+                request.getMethod());
+        return ResponseEntity.ok(this.matrixService.getTravelMatrix(request.getOrigins(), request.getDestinations(),
+                request.getTime(), request.getMethod(), request.getTransportation()));
+    }
+
+    /**
+     * Calculate the best path of each request of a batch.
+     * A request which fails gives an error in its result, the other requests of the batch are still answered.
+     *
+     * @param requests the best path requests (start, end, time, method, transportation, engine).
+     * @return The result of each request, in the order of the requests.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<PathResultDTO>> getBestPaths(@RequestBody(required = false) List<PathRequestDTO> requests) {
+        logger.info("Request to get best paths of a batch of {} requests", requests == null ? 0 : requests.size());
+        return ResponseEntity.ok(this.batchService.getBestPaths(requests));
     }
 }
@@ -0,0 +1,123 @@
+package com.planifcarbon.backend.dtos;
+
+import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+
+/**
+ * Used to receive one best path request of a batch.
+ */
+@ExcludeFromJacocoGeneratedReport
+public class PathRequestDTO {
+    private String start;
+    private String end;
+    private int time;
+    private String method = "TIME";
+    private String transportation = "METRO_FOOT";
+    private String engine = "DIJKSTRA";
+
+    /**
+     * Constructs an empty PathRequestDTO object, filled by its setters.
+     */
+    public PathRequestDTO() {
+    }
+
+    /**
+     * Constructs a new PathRequestDTO object.
+     *
+     * @param start The starting position.
+     * @param end The final destination.
+     * @param time The starting time.
+     * @param method The method of the best path (time / distance).
+     * @param transportation The transportation (metro, metro and walk, walk).
+     */
+    public PathRequestDTO(String start, String end, int time, String method, String transportation) {
+        this.start = start;
+        this.end = end;
+        this.time = time;
+        this.method = method;
+        this.transportation = transportation;
+    }
+
+    /**
+     * Returns the starting position.
+     *
+     * @return The starting position.
+     */
+    public String getStart() { return start; }
+
+    /**
+     * Sets the starting position.
+     *
+     * @param start The starting position.
+     */
+    public void setStart(String start) { this.start = start; }
+
+    /**
+     * Returns the final destination.
+     *
+     * @return The final destination.
+     */
+    public String getEnd() { return end; }
+
+    /**
+     * Sets the final destination.
+     *
+     * @param end The final destination.
+     */
+    public void setEnd(String end) { this.end = end; }
+
+    /**
+     * Returns the starting time.
+     *
+     * @return The starting time.
+     */
+    public int getTime() { return time; }
+
+    /**
+     * Sets the starting time.
+     *
+     * @param time The starting time.
+     */
+    public void setTime(int time) { this.time = time; }
+
+    /**
+     * Returns the method of the best path (time / distance).
+     *
+     * @return The method of the best path.
+     */
+    public String getMethod() { return method; }
+
+    /**
+     * Sets the method of the best path (time / distance).
+     *
+     * @param method The method of the best path.
+     */
+    public void setMethod(String method) { this.method = method; }
+
+    /**
+     * Returns the transportation (metro, metro and walk, walk).
+     *
+     * @return The transportation.
+     */
+    public String getTransportation() { return transportation; }
+
+    /**
+     * Sets the transportation (metro, metro and walk, walk).
+     *
+     * @param transportation The transportation.
+     */
+    public void setTransportation(String transportation) { this.transportation = transportation; }
+
+    /**
+     * Returns the routing engine (dijkstra, astar, raptor, csa).
+     *
+     * @return The routing engine.
+     */
+    public String getEngine() { return engine; }
+
+    /**
+     * Sets the routing engine (dijkstra, astar, raptor, csa).
+     *
+     * @param engine The routing engine.
+     */
+    public void setEngine(String engine) { this.engine = engine; }
+}
@@ -0,0 +1,38 @@
+package com.planifcarbon.backend.dtos;
+
+import java.util.List;
+import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+
+/**
+ * Used to store the result of one best path request of a batch, either a path or an error.
+ */
+@ExcludeFromJacocoGeneratedReport
+public class PathResultDTO {
+    private final List<DjikstraSearchResultDTO> path;
+    private final String error;
+
+    /**
+     * Constructs a new PathResultDTO object.
+     *
+     * @param path The best path, null if the request failed.
+     * @param error The error message, null if the request succeeded.
+     */
+    public PathResultDTO(List<DjikstraSearchResultDTO> path, String error) {
+        this.path = path;
+        this.error = error;
+    }
+
+    /**
+     * Returns the best path.
+     *
+     * @return The best path, null if the request failed.
+     */
+    public List<DjikstraSearchResultDTO> getPath() { return path; }
+
+    /**
+     * Returns the error message.
+     *
+     * @return The error message, null if the request succeeded.
+     */
+    public String getError() { return error; }
+}
@@ -0,0 +1,41 @@
+package com.planifcarbon.backend.dtos;
+
+import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+
+/**
+ * Used to store a station reached by an isochrone search.
+ */
+@ExcludeFromJacocoGeneratedReport
+public class ReachableStationDTO {
+    private final NodeDTO station;
+    private final double weight;
+
+    /**
+     * Constructs a new ReachableStationDTO object.
+     *
+     * @param station The NodeDTO object representing the station reached.
+     * @param weight The best arrival time / distance at the station.
+     */
+    public ReachableStationDTO(NodeDTO station, double weight) {
+        this.station = station;
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the station reached.
+     *
+     * @return The station reached.
+     */
+    public NodeDTO getStation() {
+        return station;
+    }
+
+    /**
+     * Returns the best arrival time / distance at the station.
+     *
+     * @return The weight of the best path to the station.
+     */
+    public double getWeight() {
+        return weight;
+    }
+}
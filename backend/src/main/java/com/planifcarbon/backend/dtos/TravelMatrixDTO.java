@@ -0,0 +1,48 @@
+package com.planifcarbon.backend.dtos;
+
+import java.util.List;
+import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+
+/**
+ * Used to store a travel matrix between origins and destinations.
+ */
+@ExcludeFromJacocoGeneratedReport
+public class TravelMatrixDTO {
+    private final List<String> origins;
+    private final List<String> destinations;
+    private final Double[][] weights;
+
+    /**
+     * Constructs a new TravelMatrixDTO object.
+     *
+     * @param origins The starting positions, one per row.
+     * @param destinations The destination stations, one per column.
+     * @param weights The travel time / distance from each origin to each destination, null if it is not reachable.
+     */
+    public TravelMatrixDTO(List<String> origins, List<String> destinations, Double[][] weights) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the starting positions, one per row.
+     *
+     * @return The starting positions.
+     */
+    public List<String> getOrigins() { return origins; }
+
+    /**
+     * Returns the destination stations, one per column.
+     *
+     * @return The destination stations.
+     */
+    public List<String> getDestinations() { return destinations; }
+
+    /**
+     * Returns the travel time / distance from each origin to each destination, null if it is not reachable.
+     *
+     * @return The matrix of the travel times / distances.
+     */
+    public Double[][] getWeights() { return weights; }
+}
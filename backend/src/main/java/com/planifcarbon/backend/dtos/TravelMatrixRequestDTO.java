@@ -0,0 +1,86 @@
+package com.planifcarbon.backend.dtos;
+
+import java.util.List;
+import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+
+/**
+ * Used to receive a travel matrix request.
+ */
+@ExcludeFromJacocoGeneratedReport
+public class TravelMatrixRequestDTO {
+    private List<String> origins;
+    private List<String> destinations;
+    private int time;
+    private String method = "TIME";
+    private String transportation = "METRO_FOOT";
+
+    /**
+     * Returns the starting positions, stations or coordinates.
+     *
+     * @return The starting positions.
+     */
+    public List<String> getOrigins() { return origins; }
+
+    /**
+     * Sets the starting positions, stations or coordinates.
+     *
+     * @param origins The starting positions.
+     */
+    public void setOrigins(List<String> origins) { this.origins = origins; }
+
+    /**
+     * Returns the names of the destination stations.
+     *
+     * @return The destination stations.
+     */
+    public List<String> getDestinations() { return destinations; }
+
+    /**
+     * Sets the names of the destination stations.
+     *
+     * @param destinations The destination stations.
+     */
+    public void setDestinations(List<String> destinations) { this.destinations = destinations; }
+
+    /**
+     * Returns the departure time.
+     *
+     * @return The departure time.
+     */
+    public int getTime() { return time; }
+
+    /**
+     * Sets the departure time.
+     *
+     * @param time The departure time.
+     */
+    public void setTime(int time) { this.time = time; }
+
+    /**
+     * Returns the method of the matrix (time / distance).
+     *
+     * @return The method of the matrix.
+     */
+    public String getMethod() { return method; }
+
+    /**
+     * Sets the method of the matrix (time / distance).
+     *
+     * @param method The method of the matrix.
+     */
+    public void setMethod(String method) { this.method = method; }
+
+    /**
+     * Returns the transportation (metro, metro and walk, walk).
+     *
+     * @return The transportation.
+     */
+    public String getTransportation() { return transportation; }
+
+    /**
+     * Sets the transportation (metro, metro and walk, walk).
+     *
+     * @param transportation The transportation.
+     */
+    public void setTransportation(String transportation) { this.transportation = transportation; }
+}
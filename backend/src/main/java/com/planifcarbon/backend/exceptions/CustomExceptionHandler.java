@@ -1,6 +1,8 @@
 package com.planifcarbon.backend.exceptions;
 
 import com.planifcarbon.backend.config.ExcludeFromJacocoGeneratedReport;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -25,4 +27,44 @@ public class CustomExceptionHandler {
     public ResponseEntity<Object> exception(Exception ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
+
+    /**
+     * Exception handler method that catches the searches rejected because the routing executor is full, and returns
+     * a ResponseEntity object containing the exception message and HTTP status code 503 (Service Unavailable).
+     *
+     * @param ex the exception that was thrown
+     * @return a ResponseEntity object containing the exception message and HTTP status code 503 (Service Unavailable)
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Object> rejected(RejectedExecutionException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .body("too many searches in progress, retry later");
+    }
+
+    /**
+     * Exception handler method that catches the searches refused by the admission controller, and returns a
+     * ResponseEntity object containing the exception message, the time to wait in the Retry-After header and HTTP
+     * status code 503 (Service Unavailable).
+     *
+     * @param ex the exception that was thrown
+     * @return a ResponseEntity object containing the exception message and HTTP status code 503 (Service Unavailable)
+     */
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<Object> overloaded(OverloadedException ex) {
+        long seconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Exception handler method that catches the searches which ran out of time, and returns a ResponseEntity object
+     * containing the exception message and HTTP status code 504 (Gateway Timeout).
+     *
+     * @param ex the exception that was thrown
+     * @return a ResponseEntity object containing the exception message and HTTP status code 504 (Gateway Timeout)
+     */
+    @ExceptionHandler(SearchTimeoutException.class)
+    public ResponseEntity<Object> timeout(SearchTimeoutException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+    }
 }
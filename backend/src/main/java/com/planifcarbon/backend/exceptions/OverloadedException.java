@@ -0,0 +1,30 @@
+package com.planifcarbon.backend.exceptions;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is refused because the server is running as many searches as it can.
+ */
+public class OverloadedException extends RuntimeException {
+    private final transient Duration retryAfter;
+
+    /**
+     * Constructs a new OverloadedException.
+     *
+     * @param message the detail message.
+     * @param retryAfter the time after which the request can be retried.
+     */
+    public OverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the time after which the request can be retried.
+     *
+     * @return the time to wait before retrying.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
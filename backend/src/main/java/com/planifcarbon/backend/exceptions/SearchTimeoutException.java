@@ -0,0 +1,15 @@
+package com.planifcarbon.backend.exceptions;
+
+/**
+ * Thrown when a search runs out of time before finding a path.
+ */
+public class SearchTimeoutException extends RuntimeException {
+    /**
+     * Constructs a new SearchTimeoutException.
+     *
+     * @param message the detail message.
+     */
+    public SearchTimeoutException(String message) {
+        super(message);
+    }
+}
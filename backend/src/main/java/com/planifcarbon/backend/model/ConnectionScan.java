@@ -0,0 +1,588 @@
+package com.planifcarbon.backend.model;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * {@summary Connection Scan Algorithm (CSA) on the metro lines of a {@link GraphSnapshot}.}
+ * Every trip of every route is cut into elementary connections, from one station to the next one, which are stored in
+ * flat arrays sorted by departure time. A query scans the connections once, from the departure time until the
+ * departures pass the best known arrival at the end node. Walks use the transitive closure of the walk segments, up
+ * to a max walking duration so that the footpaths grow with the stops near each stop instead of with every pair of
+ * stops. Without a bound a single footpath relaxation after each improved arrival is enough, otherwise the footpaths
+ * are chained from the improved stop by a small dijkstra, so that longer walks are still found.
+ */
+final class ConnectionScan {
+    private static final String ENGINE = "CSA";
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int NONE = -1;
+    private static final byte SOURCE = 1;
+    private static final byte TRIP = 2;
+    private static final byte WALK = 3;
+
+    private final GraphSnapshot graph;
+    private final RoutePatterns patterns;
+    /** Connections, sorted by departure time. */
+    private final int[] departureStops;
+    private final int[] arrivalStops;
+    private final int[] departureTimes;
+    private final int[] arrivalTimes;
+    private final int[] connectionTrips;
+    /** Route and terminus departure time of each trip. */
+    private final int[] tripRoutes;
+    private final int[] tripDepartures;
+    /** Shortest walks from each stop are [footOffsets[p], footOffsets[p + 1]) of footTargets and footDurations. */
+    private final int[] footOffsets;
+    private final int[] footTargets;
+    private final int[] footDurations;
+    /** If the footpaths are the closure of every chain of walk segments, a single footpath is then enough to walk. */
+    private final boolean closedFootpaths;
+
+    /**
+     * {Main constructor.}
+     * Build the sorted connections of all the trips of the routes and the closure of the walk segments.
+     *
+     * @param patterns stop patterns of the metro lines, their node ids are used as stop ids.
+     * @param maxWalkDuration max duration of a chain of walk segments closed into a footpath, a single walk segment
+     *                        is always a footpath.
+     */
+    ConnectionScan(RoutePatterns patterns, int maxWalkDuration) {
+        this(patterns, Tables.build(patterns, maxWalkDuration), maxWalkDuration);
+    }
+
+    /**
+     * {Constructor with the tables of a previous build, read from a {@link NetworkSnapshot}.}
+     *
+     * @param patterns stop patterns of the metro lines, their node ids are used as stop ids.
+     * @param tables connections and walks built on the same patterns.
+     * @param maxWalkDuration max duration of the chains of walk segments the footpaths of the tables were closed with.
+     * @throws IllegalArgumentException if the tables do not have the trips and the stops of the patterns.
+     */
+    ConnectionScan(RoutePatterns patterns, Tables tables, int maxWalkDuration) {
+        if (!tables.matches(patterns)) {
+            throw new IllegalArgumentException("the tables are not built on these stop patterns");
+        }
+        this.graph = patterns.graph();
+        this.patterns = patterns;
+        this.departureStops = tables.departureStops();
+        this.arrivalStops = tables.arrivalStops();
+        this.departureTimes = tables.departureTimes();
+        this.arrivalTimes = tables.arrivalTimes();
+        this.connectionTrips = tables.connectionTrips();
+        this.tripRoutes = tables.tripRoutes();
+        this.tripDepartures = tables.tripDepartures();
+        this.footOffsets = tables.footOffsets();
+        this.footTargets = tables.footTargets();
+        this.footDurations = tables.footDurations();
+        this.closedFootpaths = maxWalkDuration == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the connections and walks of the engine, to be written in a {@link NetworkSnapshot}.
+     *
+     * @return the tables of the engine, they must not be changed.
+     */
+    Tables tables() {
+        return new Tables(departureStops, arrivalStops, departureTimes, arrivalTimes, connectionTrips, tripRoutes,
+                tripDepartures, footOffsets, footTargets, footDurations);
+    }
+
+    /**
+     * Flat arrays of the engine, the part of its build which does not depend on the node objects.
+     *
+     * @param departureStops departure stop of each connection, sorted by departure time.
+     * @param arrivalStops arrival stop of each connection.
+     * @param departureTimes departure time of each connection.
+     * @param arrivalTimes arrival time of each connection.
+     * @param connectionTrips trip of each connection.
+     * @param tripRoutes route of each trip.
+     * @param tripDepartures departure time from the terminus of each trip.
+     * @param footOffsets shortest walks from each stop are [footOffsets[p], footOffsets[p + 1]) of the foot arrays.
+     * @param footTargets end stop of each shortest walk.
+     * @param footDurations duration of each shortest walk.
+     */
+    record Tables(int[] departureStops, int[] arrivalStops, int[] departureTimes, int[] arrivalTimes,
+                  int[] connectionTrips, int[] tripRoutes, int[] tripDepartures, int[] footOffsets, int[] footTargets,
+                  int[] footDurations) {
+        /**
+         * Build the sorted connections of all the trips of the routes and the closure of the walk segments, up to a
+         * max walking duration so that the footpaths of each stop stay near it.
+         *
+         * @param patterns stop patterns of the metro lines.
+         * @param maxWalkDuration max duration of a chain of walk segments closed into a footpath, a single walk
+         *                        segment is always a footpath.
+         * @return the tables.
+         */
+        static Tables build(RoutePatterns patterns, int maxWalkDuration) {
+            GraphSnapshot graph = patterns.graph();
+            int nbTrips = 0;
+            int nbConnections = 0;
+            for (int route = 0; route < patterns.routeCount(); route++) {
+                nbTrips += patterns.departures(route).length;
+                nbConnections += patterns.departures(route).length * (patterns.stops(route).length - 1);
+            }
+            int[] tripRoutes = new int[nbTrips];
+            int[] tripDepartures = new int[nbTrips];
+            int[] trips = new int[nbConnections];
+            int[] indexes = new int[nbConnections];
+            long[] keys = new long[nbConnections];
+            int trip = 0;
+            int connection = 0;
+            for (int route = 0; route < patterns.routeCount(); route++) {
+                int[] offsets = patterns.offsets(route);
+                for (int departure : patterns.departures(route)) {
+                    tripRoutes[trip] = route;
+                    tripDepartures[trip] = departure;
+                    for (int i = 0; i < offsets.length - 1; i++) {
+                        trips[connection] = trip;
+                        indexes[connection] = i;
+                        keys[connection] = ((long) (departure + offsets[i]) << 32) | connection;
+                        connection++;
+                    }
+                    trip++;
+                }
+            }
+            Arrays.sort(keys);
+
+            int[] departureStops = new int[nbConnections];
+            int[] arrivalStops = new int[nbConnections];
+            int[] departureTimes = new int[nbConnections];
+            int[] arrivalTimes = new int[nbConnections];
+            int[] connectionTrips = new int[nbConnections];
+            for (int c = 0; c < nbConnections; c++) {
+                int unsorted = (int) keys[c];
+                int t = trips[unsorted];
+                int i = indexes[unsorted];
+                int[] stops = patterns.stops(tripRoutes[t]);
+                int[] offsets = patterns.offsets(tripRoutes[t]);
+                departureStops[c] = stops[i];
+                arrivalStops[c] = stops[i + 1];
+                departureTimes[c] = tripDepartures[t] + offsets[i];
+                arrivalTimes[c] = tripDepartures[t] + offsets[i + 1];
+                connectionTrips[c] = t;
+            }
+
+            int nbNodes = graph.nodeCount();
+            int[] footOffsets = new int[nbNodes + 1];
+            int[] footTargets = new int[nbNodes];
+            int[] footDurations = new int[nbNodes];
+            int[] durations = new int[nbNodes];
+            int[] reached = new int[nbNodes];
+            Arrays.fill(durations, INFINITY);
+            IndexedMinHeap heap = new IndexedMinHeap(nbNodes);
+            for (int p = 0; p < nbNodes; p++) {
+                int count = closeWalks(graph, p, maxWalkDuration, durations, reached, heap);
+                Arrays.sort(reached, 0, count);
+                int offset = footOffsets[p];
+                if (offset + count > footTargets.length) {
+                    int length = Math.max(2 * footTargets.length, offset + count);
+                    footTargets = Arrays.copyOf(footTargets, length);
+                    footDurations = Arrays.copyOf(footDurations, length);
+                }
+                for (int i = 0; i < count; i++) {
+                    footTargets[offset + i] = reached[i];
+                    footDurations[offset + i] = durations[reached[i]];
+                    durations[reached[i]] = INFINITY;
+                }
+                footOffsets[p + 1] = offset + count;
+            }
+            footTargets = Arrays.copyOf(footTargets, footOffsets[nbNodes]);
+            footDurations = Arrays.copyOf(footDurations, footOffsets[nbNodes]);
+            return new Tables(departureStops, arrivalStops, departureTimes, arrivalTimes, connectionTrips, tripRoutes,
+                    tripDepartures, footOffsets, footTargets, footDurations);
+        }
+
+        /**
+         * Returns true if the tables have the stops and the trips of the patterns, in the same order.
+         *
+         * @param patterns stop patterns of the metro lines.
+         * @return true if the tables can be used with the patterns.
+         */
+        boolean matches(RoutePatterns patterns) {
+            if (footOffsets.length != patterns.graph().nodeCount() + 1) {
+                return false;
+            }
+            int trip = 0;
+            for (int route = 0; route < patterns.routeCount(); route++) {
+                for (int departure : patterns.departures(route)) {
+                    if (trip >= tripRoutes.length || tripRoutes[trip] != route || tripDepartures[trip] != departure) {
+                        return false;
+                    }
+                    trip++;
+                }
+            }
+            return trip == tripRoutes.length;
+        }
+    }
+
+    /**
+     * Compute the shortest walking durations from a stop over the walk segments, up to a max duration. The walk
+     * segments leaving the stop are always followed, the chains of walk segments only up to the max duration.
+     *
+     * @param graph graph of the walk segments.
+     * @param from stop the walks start from.
+     * @param maxWalkDuration max duration of a chain of walk segments.
+     * @param durations walking duration to each stop, INFINITY for all of them when it is called; the durations of
+     *                  the reached stops are set, the caller resets them.
+     * @param reached filled with the stops reached, the start stop excluded.
+     * @param heap empty heap, left empty.
+     * @return the number of stops reached.
+     */
+    private static int closeWalks(GraphSnapshot graph, int from, int maxWalkDuration, int[] durations, int[] reached,
+                                  IndexedMinHeap heap) {
+        int count = 0;
+        durations[from] = 0;
+        heap.insert(from, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            for (int edge = graph.firstWalkEdge(current); edge < graph.endEdge(current); edge++) {
+                int next = graph.target(edge);
+                int duration = durations[current] + graph.duration(edge);
+                if (duration >= durations[next] || (current != from && duration > maxWalkDuration)) {
+                    continue;
+                }
+                if (durations[next] == INFINITY) {
+                    reached[count++] = next;
+                }
+                durations[next] = duration;
+                if (heap.contains(next)) {
+                    heap.decreaseKey(next, duration);
+                } else {
+                    heap.insert(next, duration);
+                }
+            }
+        }
+        durations[from] = INFINITY;
+        return count;
+    }
+
+    /**
+     * Returns the number of connections.
+     *
+     * @return the number of connections.
+     */
+    int connectionCount() { return departureTimes.length; }
+
+    /**
+     * Returns the index of the first connection departing at or after the given time.
+     *
+     * @param time departure time.
+     * @return the index of the first connection to scan.
+     */
+    private int firstConnection(int time) {
+        int low = 0;
+        int high = departureTimes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departureTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * {Find the earliest arrival path between two nodes.}
+     *
+     * @param startNode node to start from, a station or a personalized node.
+     * @param endNode node to go to, a station or a personalized node.
+     * @param startTime departure time.
+     * @param metro if (true) trains can be used.
+     * @param walk if (true) walk segments can be used.
+     * @return the data segments of the path, empty if there is no path.
+     */
+    List<DataSegment> route(Node startNode, Node endNode, int startTime, boolean metro, boolean walk) {
+        return route(startNode, endNode, startTime, metro, walk, SearchListener.NONE);
+    }
+
+    /**
+     * {Find the earliest arrival path between two nodes, and give the cost of the search to a listener.}
+     * The settled nodes are the connections scanned, the relaxed segments are the rides and the walks tried, the
+     * schedule lookup is the search of the first connection. The heap is only used to chain bounded footpaths.
+     *
+     * @param startNode node to start from, a station or a personalized node.
+     * @param endNode node to go to, a station or a personalized node.
+     * @param startTime departure time.
+     * @param metro if (true) trains can be used.
+     * @param walk if (true) walk segments can be used.
+     * @param listener listener called once the path is found.
+     * @return the data segments of the path, empty if there is no path.
+     */
+    List<DataSegment> route(Node startNode, Node endNode, int startTime, boolean metro, boolean walk,
+                            SearchListener listener) {
+        long start = System.nanoTime();
+        if (null == startNode || null == endNode) {
+            throw new IllegalArgumentException("input should not be null");
+        }
+        if (startTime < 0) {
+            throw new IllegalArgumentException("weight has to be positive");
+        }
+        int source = startNode instanceof PersonalizedNode ? ShortestPathTree.personalizedStartId(graph) : graph.indexOf(startNode);
+        if (source == -1) {
+            throw new IllegalArgumentException("start node is not in the graph");
+        }
+        int target;
+        if (startNode.equals(endNode)) {
+            listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, 0, 0, 0, 0, 0));
+            return new LinkedList<>();
+        } else if (endNode instanceof PersonalizedNode) {
+            target = ShortestPathTree.personalizedEndId(graph);
+        } else {
+            target = graph.indexOf(endNode);
+            if (target == -1) {
+                listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, 0, 0, 0, 0, 0));
+                return new LinkedList<>();
+            }
+        }
+        Search search = new Search(startNode, endNode, source, target, !metro || walk);
+        search.run(startTime, metro);
+        List<DataSegment> path = search.toDataSegments(startTime);
+        listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, search.scannedCount,
+                search.relaxedCount, search.pushCount, search.decreaseKeyCount, search.scheduleLookupCount));
+        return path;
+    }
+
+    /**
+     * State of one query.
+     */
+    private final class Search {
+        private final Node startNode;
+        private final Node endNode;
+        private final int source;
+        private final int target;
+        private final boolean walk;
+        private final int[] arrival;
+        private final byte[] kind;
+        /** Stop walked from, or arrival connection of the trip. */
+        private final int[] parent;
+        /** First connection of each trip which has been caught, or NONE. */
+        private final int[] tripBoarding;
+        /** Walking duration from each stop to a personalized end node, or NONE if the stop is not linked to it. */
+        private final int[] walkToTarget;
+        /** Stops whose footpaths are to be walked from, when the footpaths are chained. */
+        private final IndexedMinHeap heap;
+        private int scannedCount;
+        private int relaxedCount;
+        private int pushCount;
+        private int decreaseKeyCount;
+        private int scheduleLookupCount;
+
+        /**
+         * {Main constructor.}
+         *
+         * @param startNode node to start from.
+         * @param endNode node to go to.
+         * @param source id of the start node.
+         * @param target id of the end node.
+         * @param walk if (true) walk segments can be used.
+         */
+        Search(Node startNode, Node endNode, int source, int target, boolean walk) {
+            this.startNode = startNode;
+            this.endNode = endNode;
+            this.source = source;
+            this.target = target;
+            this.walk = walk;
+            int size = graph.nodeCount() + 2;
+            this.arrival = new int[size];
+            this.kind = new byte[size];
+            this.parent = new int[size];
+            this.tripBoarding = new int[tripRoutes.length];
+            this.heap = walk && !closedFootpaths ? new IndexedMinHeap(graph.nodeCount()) : null;
+            Arrays.fill(arrival, INFINITY);
+            Arrays.fill(tripBoarding, NONE);
+            if (walk && target == ShortestPathTree.personalizedEndId(graph)) {
+                walkToTarget = new int[graph.nodeCount()];
+                Arrays.fill(walkToTarget, NONE);
+                for (int p : graph.walkLinks(endNode)) {
+                    walkToTarget[p] = virtualWalkDuration(p, target);
+                }
+                if (source < graph.nodeCount()) {
+                    walkToTarget[source] = virtualWalkDuration(source, target);
+                }
+            } else {
+                walkToTarget = null;
+            }
+        }
+
+        /**
+         * Returns the node with the given id, including personalized start and end nodes.
+         *
+         * @param id node id.
+         * @return the node.
+         */
+        private Node node(int id) {
+            if (id == ShortestPathTree.personalizedStartId(graph)) {
+                return startNode;
+            } else if (id == ShortestPathTree.personalizedEndId(graph)) {
+                return endNode;
+            }
+            return graph.node(id);
+        }
+
+        /**
+         * Returns the walking time between two nodes, used to link personalized nodes to the graph.
+         *
+         * @param from node the walk starts from.
+         * @param to node the walk goes to.
+         * @return the walking duration.
+         */
+        private int virtualWalkDuration(int from, int to) {
+            return SegmentWalk.durationFor(node(from).distanceTo(node(to)));
+        }
+
+        /**
+         * Walk from the start node, then scan the connections until they depart after the arrival at the end node.
+         *
+         * @param startTime departure time.
+         * @param metro if (true) trains can be used.
+         */
+        void run(int startTime, boolean metro) {
+            arrival[source] = startTime;
+            kind[source] = SOURCE;
+            if (source == ShortestPathTree.personalizedStartId(graph)) {
+                if (!walk) {
+                    return;
+                }
+                improve(target, startTime + virtualWalkDuration(source, target), WALK, source);
+                int[] startLinks = graph.walkLinks(startNode);
+                for (int p : startLinks) {
+                    improve(p, startTime + virtualWalkDuration(source, p), WALK, source);
+                }
+                for (int p : startLinks) {
+                    walkFrom(p);
+                }
+                if (target < graph.nodeCount()) {
+                    walkFrom(target);
+                }
+            } else {
+                improveTarget(source);
+                walkFrom(source);
+            }
+            if (!metro) {
+                return;
+            }
+            scheduleLookupCount++;
+            for (int c = firstConnection(startTime); c < departureTimes.length && departureTimes[c] < arrival[target]; c++) {
+                scannedCount++;
+                int trip = connectionTrips[c];
+                if (tripBoarding[trip] == NONE) {
+                    if (arrival[departureStops[c]] > departureTimes[c]) {
+                        continue;
+                    }
+                    tripBoarding[trip] = c;
+                }
+                int stop = arrivalStops[c];
+                if (improve(stop, arrivalTimes[c], TRIP, c)) {
+                    walkFrom(stop);
+                }
+            }
+        }
+
+        /**
+         * Set the arrival at a stop if it is better than the known one.
+         *
+         * @param stop stop reached.
+         * @param time arrival time at the stop.
+         * @param how TRIP or WALK.
+         * @param from arrival connection or stop walked from.
+         * @return true if the arrival has been improved.
+         */
+        private boolean improve(int stop, int time, byte how, int from) {
+            relaxedCount++;
+            if (time >= arrival[stop]) {
+                return false;
+            }
+            arrival[stop] = time;
+            kind[stop] = how;
+            parent[stop] = from;
+            improveTarget(stop);
+            return true;
+        }
+
+        /**
+         * Walk from a stop to a personalized end node if it improves the arrival at the end node.
+         *
+         * @param stop stop the walk starts from.
+         */
+        private void improveTarget(int stop) {
+            if (walkToTarget != null && stop < walkToTarget.length && walkToTarget[stop] != NONE) {
+                improve(target, arrival[stop] + walkToTarget[stop], WALK, stop);
+            }
+        }
+
+        /**
+         * Relax the shortest walks from a stop, chaining the footpaths of the stops they improve if they are bounded.
+         *
+         * @param stop stop the walks start from.
+         */
+        private void walkFrom(int stop) {
+            if (!walk) {
+                return;
+            }
+            if (heap == null) {
+                for (int f = footOffsets[stop]; f < footOffsets[stop + 1]; f++) {
+                    improve(footTargets[f], arrival[stop] + footDurations[f], WALK, stop);
+                }
+                return;
+            }
+            heap.insert(stop, arrival[stop]);
+            pushCount++;
+            while (!heap.isEmpty()) {
+                int current = heap.poll();
+                for (int f = footOffsets[current]; f < footOffsets[current + 1]; f++) {
+                    int next = footTargets[f];
+                    int time = arrival[current] + footDurations[f];
+                    if (time >= arrival[target] || !improve(next, time, WALK, current)) {
+                        continue;
+                    }
+                    if (heap.contains(next)) {
+                        heap.decreaseKey(next, time);
+                        decreaseKeyCount++;
+                    } else {
+                        heap.insert(next, time);
+                        pushCount++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the segments of the path from the start node to the end node, one segment by station and one by walk.
+         *
+         * @param startTime departure time.
+         * @return the data segments of the path, empty if the end node has not been reached.
+         */
+        List<DataSegment> toDataSegments(int startTime) {
+            LinkedList<DataSegment> segments = new LinkedList<>();
+            if (arrival[target] == INFINITY) {
+                return segments;
+            }
+            int current = target;
+            double departureTime = startTime;
+            while (kind[current] != SOURCE) {
+                if (kind[current] == WALK) {
+                    segments.addFirst(new DataSegment(node(parent[current]), node(current), arrival[current],
+                            departureTime, null, 0));
+                    departureTime = arrival[current];
+                    current = parent[current];
+                } else {
+                    int trip = connectionTrips[parent[current]];
+                    int route = tripRoutes[trip];
+                    int boardStop = departureStops[tripBoarding[trip]];
+                    int[] stops = patterns.stops(route);
+                    MetroLine line = patterns.line(route);
+                    for (int i = patterns.indexOf(route, current); stops[i] != boardStop; i--) {
+                        double arrivalTime = tripDepartures[trip] + patterns.offsets(route)[i];
+                        segments.addFirst(new DataSegment(node(stops[i - 1]), node(stops[i]), arrivalTime, departureTime, line, 0));
+                        departureTime = arrivalTime;
+                    }
+                    current = boardStop;
+                }
+            }
+            return segments;
+        }
+    }
+}
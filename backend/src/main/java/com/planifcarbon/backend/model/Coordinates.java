@@ -6,7 +6,7 @@ package com.planifcarbon.backend.model;
 public class Coordinates {
     private final double latitude;
     private final double longitude;
-    private static final double EARTH_RADIUS = 6378.127;
+    static final double EARTH_RADIUS = 6378.127;
 
     /**
      * { Main constructor.}
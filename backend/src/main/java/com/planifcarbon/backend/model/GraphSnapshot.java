@@ -0,0 +1,373 @@
+package com.planifcarbon.backend.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@summary Immutable compressed-sparse-row copy of the graph of a {@link MetroMap}.}
+ * Each node gets a dense id, and the segments leaving node u are the edges [offsets[u], offsets[u + 1]) of the
+ * primitive arrays, so a search reads contiguous memory instead of hash buckets and segment objects.
+ * The metro edges of a node come before its walking edges, so a search restricted to one transport mode iterates only
+ * the edges of that mode.
+ */
+final class GraphSnapshot {
+    /** Kind of an edge built from a {@link SegmentMetro}. */
+    static final byte METRO = 0;
+    /** Kind of an edge built from a {@link SegmentWalk}. */
+    static final byte WALK = 1;
+    /** Line id of edges which are not on a metro line. */
+    static final int NO_LINE = -1;
+    /** Default radius of the walk links of personalized nodes, in km. */
+    static final double DEFAULT_WALK_LINK_RADIUS = 1.0;
+    /** Default min number of walk links of personalized nodes. */
+    static final int DEFAULT_WALK_LINK_COUNT = 5;
+    /** Max number of search contexts kept for reuse, more searches at once allocate contexts which are then dropped. */
+    static final int MAX_POOLED_CONTEXTS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final int[] NO_DEPARTURES = new int[0];
+
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    private final int[] offsets;
+    /** First walking edge of each node, the metro edges of u are [offsets[u], walkOffsets[u]). */
+    private final int[] walkOffsets;
+    private final int[] targets;
+    private final int[] durations;
+    private final float[] distances;
+    private final byte[] edgeKind;
+    private final int[] lineId;
+    private final MetroLine[] lines;
+    /** Sorted departure times of the trains of each metro edge at its start station, empty for walking edges. */
+    private final int[][] departures;
+    /** Smallest ratio between the distance of an edge and the straight line distance of its nodes, at most 1. */
+    private final double distanceFactor;
+    /** Largest straight line distance covered by an edge per unit of time. */
+    private final double maxSpeed;
+    private final SpatialIndex spatialIndex;
+    /** Personalized nodes are linked by walk to the nodes within this radius, in km. */
+    private final double walkLinkRadius;
+    /** Personalized nodes are linked by walk to at least this number of nearest nodes. */
+    private final int walkLinkCount;
+    /** Search states free to be reused, the last released first since its arrays are the most likely to be cached. */
+    private final ConcurrentLinkedDeque<SearchContext> searchContexts = new ConcurrentLinkedDeque<>();
+    /** Number of search states in the pool. */
+    private final AtomicInteger pooledContexts = new AtomicInteger();
+
+    /**
+     * {Secondary constructor.}
+     * Copy the given graph with the default walk links of personalized nodes.
+     *
+     * @param graph graph to copy, from nodes to the segments leaving them.
+     * @param metroLines metro lines of the network keyed by their names, used to resolve the line of metro segments.
+     */
+    GraphSnapshot(Map<Node, Set<Segment>> graph, Map<String, MetroLine> metroLines) {
+        this(graph, metroLines, DEFAULT_WALK_LINK_RADIUS, DEFAULT_WALK_LINK_COUNT);
+    }
+
+    /**
+     * {Main constructor.}
+     * Copy the given graph, every start or end point of a segment becomes a node of the snapshot.
+     *
+     * @param graph graph to copy, from nodes to the segments leaving them.
+     * @param metroLines metro lines of the network keyed by their names, used to resolve the line of metro segments.
+     * @param walkLinkRadius personalized nodes are linked by walk to the nodes within this radius, in km.
+     * @param walkLinkCount personalized nodes are linked by walk to at least this number of nearest nodes.
+     */
+    GraphSnapshot(Map<Node, Set<Segment>> graph, Map<String, MetroLine> metroLines, double walkLinkRadius,
+            int walkLinkCount) {
+        this.walkLinkRadius = walkLinkRadius;
+        this.walkLinkCount = walkLinkCount;
+        Set<Node> allNodes = new LinkedHashSet<>(graph.keySet());
+        int nbEdges = 0;
+        for (Set<Segment> segments : graph.values()) {
+            for (Segment segment : segments) {
+                allNodes.add(segment.getEndPoint());
+            }
+            nbEdges += segments.size();
+        }
+        this.nodes = allNodes.toArray(new Node[0]);
+        this.spatialIndex = new SpatialIndex(Arrays.asList(nodes));
+        this.ids = new HashMap<>();
+        for (int i = 0; i < nodes.length; i++) {
+            ids.put(nodes[i], i);
+        }
+
+        Map<String, Integer> lineIds = new HashMap<>();
+        List<MetroLine> linesById = new ArrayList<>();
+        this.offsets = new int[nodes.length + 1];
+        this.targets = new int[nbEdges];
+        this.durations = new int[nbEdges];
+        this.distances = new float[nbEdges];
+        this.edgeKind = new byte[nbEdges];
+        this.lineId = new int[nbEdges];
+        this.departures = new int[nbEdges][];
+        this.walkOffsets = new int[nodes.length];
+        int edge = 0;
+        for (int u = 0; u < nodes.length; u++) {
+            offsets[u] = edge;
+            Set<Segment> segments = graph.getOrDefault(nodes[u], Set.of());
+            for (Segment segment : segments) {
+                if (segment instanceof SegmentMetro segmentMetro) {
+                    Integer id = lineIds.get(segmentMetro.getLine());
+                    if (id == null) {
+                        id = linesById.size();
+                        lineIds.put(segmentMetro.getLine(), id);
+                        linesById.add(metroLines.get(segmentMetro.getLine()));
+                    }
+                    setEdge(edge, segment, METRO, id);
+                    departures[edge] = departuresAt(nodes[u], linesById.get(id));
+                    edge++;
+                }
+            }
+            walkOffsets[u] = edge;
+            for (Segment segment : segments) {
+                if (!(segment instanceof SegmentMetro)) {
+                    setEdge(edge, segment, WALK, NO_LINE);
+                    departures[edge] = NO_DEPARTURES;
+                    edge++;
+                }
+            }
+        }
+        offsets[nodes.length] = edge;
+        this.lines = linesById.toArray(new MetroLine[0]);
+
+        double factor = 1;
+        double speed = 0;
+        for (int u = 0; u < nodes.length; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                double straightLine = nodes[u].distanceTo(nodes[targets[e]]);
+                if (straightLine > 0) {
+                    factor = Math.min(factor, distances[e] / straightLine);
+                    speed = Math.max(speed, durations[e] == 0 ? Double.POSITIVE_INFINITY : straightLine / durations[e]);
+                }
+            }
+        }
+        // Keep the bounds below the edge weights despite rounding errors.
+        this.distanceFactor = factor * (1 - 1e-9);
+        this.maxSpeed = speed * (1 + 1e-9);
+    }
+
+    /**
+     * Copy a segment into an edge.
+     *
+     * @param edge edge id.
+     * @param segment segment to copy.
+     * @param kind kind of the edge.
+     * @param line line id of the edge.
+     */
+    private void setEdge(int edge, Segment segment, byte kind, int line) {
+        targets[edge] = ids.get(segment.getEndPoint());
+        durations[edge] = segment.getDuration();
+        distances[edge] = (float) segment.getDistance();
+        edgeKind[edge] = kind;
+        lineId[edge] = line;
+    }
+
+    /**
+     * Compute the departure times of the trains of a line at a station.
+     *
+     * @param node station the trains leave from.
+     * @param line metro line of the trains, can be null.
+     * @return the sorted departure times, empty if the node is not a station or the line is unknown.
+     */
+    private static int[] departuresAt(Node node, MetroLine line) {
+        if (!(node instanceof Station station) || line == null) {
+            return NO_DEPARTURES;
+        }
+        int offset = station.getScheduleForKey(new ScheduleKey(line.getTerminusStation(), line));
+        return line.getSchedules().stream().mapToInt(departure -> departure + offset).sorted().toArray();
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes.
+     */
+    int nodeCount() { return nodes.length; }
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return the number of edges.
+     */
+    int edgeCount() { return targets.length; }
+
+    /**
+     * Returns the dense id of a node.
+     *
+     * @param node node to look for.
+     * @return the id of the node, or -1 if it is not in the snapshot.
+     */
+    int indexOf(Node node) { return ids.getOrDefault(node, -1); }
+
+    /**
+     * Returns the node with the given id.
+     *
+     * @param id dense id of the node.
+     * @return the node.
+     */
+    Node node(int id) { return nodes[id]; }
+
+    /**
+     * Returns the first edge leaving a node.
+     *
+     * @param u id of the node.
+     * @return the first edge leaving u.
+     */
+    int firstEdge(int u) { return offsets[u]; }
+
+    /**
+     * Returns the edge following the last edge leaving a node.
+     *
+     * @param u id of the node.
+     * @return the end (exclusive) of the edges leaving u.
+     */
+    int endEdge(int u) { return offsets[u + 1]; }
+
+    /**
+     * Returns the first walking edge leaving a node.
+     * The metro edges of u are [firstEdge(u), firstWalkEdge(u)) and its walking edges [firstWalkEdge(u), endEdge(u)).
+     *
+     * @param u id of the node.
+     * @return the first walking edge leaving u, or the end of its edges if it has none.
+     */
+    int firstWalkEdge(int u) { return walkOffsets[u]; }
+
+    /**
+     * Returns the id of the node an edge is going to.
+     *
+     * @param edge edge id.
+     * @return the target of the edge.
+     */
+    int target(int edge) { return targets[edge]; }
+
+    /**
+     * Returns the travel time of an edge.
+     *
+     * @param edge edge id.
+     * @return the duration of the edge.
+     */
+    int duration(int edge) { return durations[edge]; }
+
+    /**
+     * Returns the length of an edge.
+     *
+     * @param edge edge id.
+     * @return the distance of the edge in km.
+     */
+    float distance(int edge) { return distances[edge]; }
+
+    /**
+     * Returns true if the edge is a walking segment.
+     *
+     * @param edge edge id.
+     * @return true if the edge is walked.
+     */
+    boolean isWalk(int edge) { return edgeKind[edge] == WALK; }
+
+    /**
+     * Returns the line id of an edge.
+     *
+     * @param edge edge id.
+     * @return the line id, or {@link #NO_LINE} for walking edges.
+     */
+    int lineId(int edge) { return lineId[edge]; }
+
+    /**
+     * Returns the metro line with the given line id.
+     *
+     * @param id line id, or {@link #NO_LINE}.
+     * @return the metro line, or null for {@link #NO_LINE} or for a line unknown to the network.
+     */
+    MetroLine line(int id) { return id == NO_LINE ? null : lines[id]; }
+
+    /**
+     * Returns the nodes a personalized node is linked to by walk: the nodes within the walk link radius, or the
+     * walk link count nearest ones if there are fewer of them.
+     *
+     * @param node personalized node.
+     * @return the ids of the linked nodes, nearest first.
+     */
+    int[] walkLinks(Node node) { return spatialIndex.near(node, walkLinkCount, walkLinkRadius); }
+
+    /**
+     * Take a search context from the pool, or allocate one sized for the nodes and the two personalized nodes if the
+     * pool is empty. Contexts are not bound to a thread, so many short-lived threads share a few of them.
+     *
+     * @return a context which is not used by another search until it is released.
+     */
+    SearchContext acquireSearchContext() {
+        SearchContext context = searchContexts.pollFirst();
+        if (context == null) {
+            return new SearchContext(nodeCount() + 2);
+        }
+        pooledContexts.decrementAndGet();
+        return context;
+    }
+
+    /**
+     * Give a search context back to the pool, it is dropped if the pool already holds {@link #MAX_POOLED_CONTEXTS}.
+     *
+     * @param context a context taken with {@link #acquireSearchContext()} which is not used anymore.
+     */
+    void releaseSearchContext(SearchContext context) {
+        if (pooledContexts.incrementAndGet() <= MAX_POOLED_CONTEXTS) {
+            searchContexts.offerFirst(context);
+        } else {
+            pooledContexts.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of search contexts free to be reused.
+     *
+     * @return the size of the pool.
+     */
+    int pooledSearchContexts() { return pooledContexts.get(); }
+
+    /**
+     * Returns a lower bound of the distance of any path between two nodes.
+     *
+     * @param straightLine straight line distance between the nodes.
+     * @return a distance which is not greater than the one of any path.
+     */
+    double distanceLowerBound(double straightLine) { return straightLine * distanceFactor; }
+
+    /**
+     * Returns a lower bound of the duration of any path between two nodes, waiting times included.
+     *
+     * @param straightLine straight line distance between the nodes.
+     * @return a duration which is not greater than the one of any path.
+     */
+    double durationLowerBound(double straightLine) {
+        return maxSpeed == 0 || maxSpeed == Double.POSITIVE_INFINITY ? 0 : straightLine / maxSpeed;
+    }
+
+    /**
+     * Returns the first departure of a train on a metro edge at or after the given time.
+     *
+     * @param edge edge id.
+     * @param time earliest departure time.
+     * @return the departure time, or -1 if there is no train left.
+     */
+    int nextDeparture(int edge, int time) {
+        int[] times = departures[edge];
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < times.length ? times[low] : -1;
+    }
+}
@@ -0,0 +1,198 @@
+package com.planifcarbon.backend.model;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * {@summary Binary min-heap of node ids with a position index.}
+ * Every id in [0, capacity) has at most one slot in the heap, and the index id -> slot makes
+ * membership tests O(1) and decrease-key O(log n), which dijkstra needs on each relaxation.
+ */
+final class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    /** Ids stored in heap order. */
+    private final int[] heap;
+    /** Slot of each id in the heap, or ABSENT. */
+    private final int[] slots;
+    /** Current key of each id present in the heap. */
+    private final double[] keys;
+    private int size;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param capacity number of distinct ids the heap can hold, ids are in [0, capacity).
+     */
+    IndexedMinHeap(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.heap = new int[capacity];
+        this.slots = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(this.slots, ABSENT);
+    }
+
+    /**
+     * Returns the number of ids the heap can hold.
+     *
+     * @return the capacity of the heap.
+     */
+    int capacity() { return heap.length; }
+
+    /**
+     * Returns the number of ids currently in the heap.
+     *
+     * @return the size of the heap.
+     */
+    int size() { return size; }
+
+    /**
+     * Returns true if the heap contains no id.
+     *
+     * @return true if the heap is empty.
+     */
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * Test if the given id is in the heap.
+     *
+     * @param id id to test.
+     * @return true if the id is in the heap.
+     */
+    boolean contains(int id) { return slots[id] != ABSENT; }
+
+    /**
+     * Returns the key of an id in the heap.
+     *
+     * @param id id present in the heap.
+     * @return the current key of the id.
+     */
+    double keyOf(int id) {
+        if (!contains(id)) {
+            throw new NoSuchElementException("id " + id + " is not in the heap");
+        }
+        return keys[id];
+    }
+
+    /**
+     * Insert an id which is not yet in the heap.
+     *
+     * @param id id to insert.
+     * @param key key of the id.
+     */
+    void insert(int id, double key) {
+        if (contains(id)) {
+            throw new IllegalArgumentException("id " + id + " is already in the heap");
+        }
+        keys[id] = key;
+        heap[size] = id;
+        slots[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lower the key of an id already in the heap.
+     *
+     * @param id id to update.
+     * @param key new key, it must not be greater than the current one.
+     */
+    void decreaseKey(int id, double key) {
+        if (key > keyOf(id)) {
+            throw new IllegalArgumentException("new key must not be greater than the current one");
+        }
+        keys[id] = key;
+        siftUp(slots[id]);
+    }
+
+    /**
+     * Returns the id with the smallest key without removing it.
+     *
+     * @return the id with the smallest key.
+     */
+    int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * Remove and return the id with the smallest key.
+     *
+     * @return the id with the smallest key.
+     */
+    int poll() {
+        int min = peek();
+        int last = heap[--size];
+        slots[min] = ABSENT;
+        if (size > 0) {
+            heap[0] = last;
+            slots[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Remove all ids from the heap.
+     * Only the slots that are in use are reset, so the cost is the current size and not the capacity.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            slots[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /**
+     * Move the id at the given slot up until its parent has a smaller or equal key.
+     *
+     * @param slot slot to move up.
+     */
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            int parent = heap[parentSlot];
+            if (key >= keys[parent]) {
+                break;
+            }
+            heap[slot] = parent;
+            slots[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = id;
+        slots[id] = slot;
+    }
+
+    /**
+     * Move the id at the given slot down until its children have greater or equal keys.
+     *
+     * @param slot slot to move down.
+     */
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        int half = size >>> 1;
+        while (slot < half) {
+            int childSlot = (slot << 1) + 1;
+            int child = heap[childSlot];
+            int rightSlot = childSlot + 1;
+            if (rightSlot < size && keys[child] > keys[heap[rightSlot]]) {
+                childSlot = rightSlot;
+                child = heap[childSlot];
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            heap[slot] = child;
+            slots[child] = slot;
+            slot = childSlot;
+        }
+        heap[slot] = id;
+        slots[id] = slot;
+    }
+}
@@ -3,21 +3,26 @@ package com.planifcarbon.backend.model;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import com.planifcarbon.backend.dtos.NodeDTO;
 import com.planifcarbon.backend.dtos.SegmentMetroDTO;
+import com.planifcarbon.backend.parser.ParseResult;
 import com.planifcarbon.backend.parser.Parser;
 import jakarta.annotation.PostConstruct;
 
@@ -26,9 +31,43 @@ import jakarta.annotation.PostConstruct;
  */
 @Component
 public final class MetroMap {
+    private static final Logger logger = LoggerFactory.getLogger(MetroMap.class);
+
     private final Map<Node, Set<Segment>> graph;
     private final Map<String, MetroLine> lines;
     private final Map<String, Station> stations;
+    /** Compact copy of the graph used by the searches, rebuilt after the graph changes. */
+    private volatile GraphSnapshot snapshot;
+    /** Stop patterns of the metro lines used by the timetable engines, rebuilt with the snapshot. */
+    private volatile RoutePatterns routePatterns;
+    /** RAPTOR engine, rebuilt with the snapshot. */
+    private volatile Raptor raptor;
+    /** Connection Scan engine, built on first use on the current snapshot. */
+    private volatile ConnectionScan connectionScan;
+    /** Incremented each time the network data is loaded or changed. */
+    private volatile long dataVersion;
+    /** Immutable metro segments of each node, rebuilt with the snapshot. */
+    private volatile Map<Node, Set<Segment>> metroGraph;
+    /** Listener given the cost of each search. */
+    private volatile SearchListener searchListener = SearchListener.NONE;
+    /** Walk segments link stations up to this distance in km, every pair of stations if infinite. */
+    private double maxWalkDistance = Double.POSITIVE_INFINITY;
+    /** Number of nearest stations linked by walk to each station whatever their distance, when walks are bounded. */
+    private int walkNeighbours = 0;
+    /** If walks are bounded, link stations reachable by a chain of walk segments. */
+    private boolean walkTransitiveClosure = false;
+    /** Max length in km of the chains of walk segments replaced by a segment with the transitive closure. */
+    private double walkClosureDistance = Double.POSITIVE_INFINITY;
+    /** Personalized nodes are linked by walk to the nodes within this radius, in km. */
+    private double walkLinkRadius = GraphSnapshot.DEFAULT_WALK_LINK_RADIUS;
+    /** Personalized nodes are linked by walk to at least this number of nearest nodes. */
+    private int walkLinkCount = GraphSnapshot.DEFAULT_WALK_LINK_COUNT;
+    /** Max number of trains in a path of the RAPTOR engine, the rounds of its search. */
+    private int raptorMaxTrips = Integer.MAX_VALUE;
+    /** Snapshot file of the built network, null to always build the network from the CSV files. */
+    private Path snapshotFile;
+    /** If the network was loaded from the snapshot file instead of being built. */
+    private boolean loadedFromSnapshot;
 
     /**
      * {Main constructor.}
@@ -39,6 +78,118 @@ public final class MetroMap {
         stations = new HashMap<String, Station>();
     }
 
+    /**
+     * Set the max distance of walk segments, used by {@link #initializeFields()}.
+     *
+     * @param maxWalkDistance max distance in km, infinite to link every pair of stations.
+     */
+    @Value("${metro-map.walk.max-distance:Infinity}")
+    public void setMaxWalkDistance(double maxWalkDistance) {
+        if (maxWalkDistance < 0) {
+            throw new IllegalArgumentException("max walk distance has to be positive");
+        }
+        this.maxWalkDistance = maxWalkDistance;
+    }
+
+    /**
+     * Set the number of nearest stations linked by walk to each station when walks are bounded, used by
+     * {@link #initializeFields()}.
+     *
+     * @param walkNeighbours number of nearest stations.
+     */
+    @Value("${metro-map.walk.nearest:0}")
+    public void setWalkNeighbours(int walkNeighbours) {
+        if (walkNeighbours < 0) {
+            throw new IllegalArgumentException("number of nearest stations has to be positive");
+        }
+        this.walkNeighbours = walkNeighbours;
+    }
+
+    /**
+     * Set if stations linked by a chain of walk segments get a direct walk segment when walks are bounded, used by
+     * {@link #initializeFields()}.
+     *
+     * @param walkTransitiveClosure true to add the segments.
+     */
+    @Value("${metro-map.walk.transitive-closure:false}")
+    public void setWalkTransitiveClosure(boolean walkTransitiveClosure) {
+        this.walkTransitiveClosure = walkTransitiveClosure;
+    }
+
+    /**
+     * Set the max length of the chains of walk segments replaced by a direct segment with the transitive closure, used
+     * by {@link #initializeFields()}.
+     *
+     * @param walkClosureDistance max length in km, infinite to close every chain.
+     */
+    @Value("${metro-map.walk.closure-max-distance:Infinity}")
+    public void setWalkClosureDistance(double walkClosureDistance) {
+        if (walkClosureDistance < 0) {
+            throw new IllegalArgumentException("max closure distance has to be positive");
+        }
+        this.walkClosureDistance = walkClosureDistance;
+    }
+
+    /**
+     * Set the radius of the walk links of the personalized nodes of a search, used by {@link #initializeFields()}.
+     *
+     * @param walkLinkRadius radius in km, the nodes within it are linked.
+     */
+    @Value("${metro-map.walk.link-radius:1.0}")
+    public void setWalkLinkRadius(double walkLinkRadius) {
+        if (walkLinkRadius < 0) {
+            throw new IllegalArgumentException("walk link radius has to be positive");
+        }
+        this.walkLinkRadius = walkLinkRadius;
+    }
+
+    /**
+     * Set the min number of walk links of the personalized nodes of a search, used by {@link #initializeFields()}.
+     *
+     * @param walkLinkCount number of nearest nodes linked even if they are outside of the walk link radius.
+     */
+    @Value("${metro-map.walk.link-count:5}")
+    public void setWalkLinkCount(int walkLinkCount) {
+        if (walkLinkCount < 0) {
+            throw new IllegalArgumentException("number of walk links has to be positive");
+        }
+        this.walkLinkCount = walkLinkCount;
+    }
+
+    /**
+     * Set the snapshot file of the network, used by {@link #initializeFields()}. When it is set the network is loaded
+     * from the file if it was built from the same CSV files with the same walk settings, else it is built and written
+     * to the file.
+     *
+     * @param snapshotPath path of the snapshot file, empty to always build the network.
+     */
+    @Value("${metro-map.snapshot.path:}")
+    public void setSnapshotPath(String snapshotPath) {
+        this.snapshotFile = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    }
+
+    /**
+     * Set the max number of trains in a path of the RAPTOR engine, used by {@link #getSegmentsFromRaptor}.
+     *
+     * @param raptorMaxTrips max number of trains, 0 to not bound them.
+     */
+    @Value("${metro-map.raptor.max-trips:0}")
+    public void setRaptorMaxTrips(int raptorMaxTrips) {
+        if (raptorMaxTrips < 0) {
+            throw new IllegalArgumentException("max number of trains has to be positive");
+        }
+        this.raptorMaxTrips = raptorMaxTrips == 0 ? Integer.MAX_VALUE : raptorMaxTrips;
+    }
+
+    /**
+     * Set the listener given the cost of each search.
+     *
+     * @param searchListener the listener, null to remove it.
+     */
+    public void setSearchListener(SearchListener searchListener) {
+        this.searchListener = searchListener == null ? SearchListener.NONE : searchListener;
+    }
+
     /**
      * Returns a map of all stations in the network, keyed by their names.
      *
@@ -85,6 +236,111 @@ public final class MetroMap {
         return this.stations.getOrDefault(stationName, null);
     }
 
+    /**
+     * Returns the version of the network data, it changes each time the data is loaded or the graph changes.
+     * Results computed on the network are only valid as long as the version is the same.
+     *
+     * @return the version of the network data.
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * Returns the time of the first train leaving a node at or after the given time, on any line.
+     *
+     * @param node node the trains leave from.
+     * @param time earliest departure time.
+     * @return the departure time of the next train, or -1 if there is none or if the node is not in the graph.
+     */
+    public int getNextDepartureTime(Node node, int time) {
+        GraphSnapshot current = getSnapshot();
+        int id = current.indexOf(node);
+        int next = -1;
+        if (id == -1) {
+            return next;
+        }
+        for (int edge = current.firstEdge(id); edge < current.firstWalkEdge(id); edge++) {
+            int departure = current.nextDeparture(edge, time);
+            if (departure != -1 && (next == -1 || departure < next)) {
+                next = departure;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the compact snapshot of the graph used by the searches.
+     * It is built at the end of {@link #initializeFields()} and again after each change of the graph.
+     *
+     * @return the snapshot of the current graph.
+     */
+    GraphSnapshot getSnapshot() {
+        GraphSnapshot current = snapshot;
+        if (current == null) {
+            current = new GraphSnapshot(graph, lines, walkLinkRadius, walkLinkCount);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the stop patterns of the metro lines built on the current snapshot.
+     *
+     * @return the stop patterns of the current graph.
+     */
+    RoutePatterns getRoutePatterns() {
+        RoutePatterns current = routePatterns;
+        if (current == null) {
+            current = new RoutePatterns(getSnapshot(), lines.values());
+            routePatterns = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the RAPTOR engine built on the current snapshot.
+     *
+     * @return the RAPTOR engine of the current graph.
+     */
+    Raptor getRaptor() {
+        Raptor current = raptor;
+        if (current == null) {
+            current = new Raptor(getRoutePatterns());
+            raptor = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the Connection Scan engine built on the current snapshot, it is built by the first call.
+     *
+     * @return the Connection Scan engine of the current graph.
+     */
+    ConnectionScan getConnectionScan() {
+        ConnectionScan current = connectionScan;
+        if (current == null) {
+            current = new ConnectionScan(getRoutePatterns(), footpathMaxDuration());
+            connectionScan = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the max duration of the chains of walk segments closed into footpaths by the Connection Scan engine: the
+     * walk radius, or the max closure distance if the walks are closed, so that the footpaths of each stop stay near
+     * it. Without a bound every pair of stations is already linked by a walk segment.
+     *
+     * @return the max walking duration in seconds.
+     */
+    private int footpathMaxDuration() {
+        double distance = walkTransitiveClosure ? Math.max(maxWalkDistance, walkClosureDistance) : maxWalkDistance;
+        if (maxWalkDistance == Double.POSITIVE_INFINITY || distance == Double.POSITIVE_INFINITY) {
+            return Integer.MAX_VALUE;
+        }
+        return SegmentWalk.durationFor(distance);
+    }
+
     /**
      * Get the nodes from dijkstra graphs.
      *
@@ -106,34 +362,32 @@ public final class MetroMap {
 
     /**
      * Get set of metro segments.
+     * The sets are built at the end of {@link #initializeFields()} and again after each change of the graph.
      *
      * @param node to have all his segments.
-     * @return set of metro segments for the node.
+     * @return immutable set of metro segments for the node, or null if the node is not in the graph.
      */
     public Set<Segment> getSegmentsMetro(Node node) {
-        return graph.get(node).stream().filter(SegmentMetro.class::isInstance).collect(Collectors.toSet());
+        Map<Node, Set<Segment>> current = metroGraph;
+        if (current == null) {
+            current = buildMetroGraph();
+            metroGraph = current;
+        }
+        return current.get(node);
     }
 
     /**
-     * {Finds the nearest trains departing from the given station after given time.}
+     * Copy the metro segments of each node of the graph into immutable sets.
      *
-     * @param arrivalTime time after which need to find nearest trains.
-     * @param currentStation station for which need to find nearest trains.
-     * @param lineName metro line.
-     * @return minimal arrival time on given station for the given line.
+     * @return the metro segments of each node.
      */
-    private int getNearestDepartureTime(int arrivalTime, Station currentStation, String lineName) {
-        if (null == currentStation) {
-            throw new IllegalArgumentException("input should not be null");
+    private Map<Node, Set<Segment>> buildMetroGraph() {
+        Map<Node, Set<Segment>> metroSegments = new HashMap<>();
+        for (Map.Entry<Node, Set<Segment>> entry : graph.entrySet()) {
+            metroSegments.put(entry.getKey(), entry.getValue().stream().filter(SegmentMetro.class::isInstance)
+                    .collect(Collectors.toUnmodifiableSet()));
         }
-        MetroLine line = this.lines.get(lineName);
-        int duration = currentStation.getScheduleForKey(new ScheduleKey(line.getTerminusStation(), line));
-        return line.getSchedules()
-                .stream()
-                .filter((departureTime) -> departureTime + duration >= arrivalTime)
-                .findFirst()
-                .map((departureTime) -> departureTime + duration)
-                .orElse(-1);
+        return metroSegments;
     }
 
     /**
@@ -148,154 +402,435 @@ public final class MetroMap {
      * @return the map of pairs of nodes (Node Child, Node Parent) which represent the path of most optimized.
      */
     public Map<Node, SearchResultBestWeight> dijkstra(Node startNode, Node endNode, int weight, boolean metro, boolean walk, boolean bestTimePath) {
-        if (null == startNode) {
-            throw new IllegalArgumentException("input should not be null");
-        }
-        if (weight < 0) {
-            throw new IllegalArgumentException("weight has to be positive");
+        ShortestPathTree tree = search(startNode, endNode, weight, metro, walk, bestTimePath, false);
+        try {
+            return tree.toMap();
+        } finally {
+            tree.release();
         }
+    }
 
-        // ============ 0. Create returned structure ===================================================================
-        Map<Node, SearchResultBestWeight> path = new HashMap<>();
+    /**
+     * Get the shortest path between two nodes with dijkstra algorithm and return the segments of the path
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startWeight the start time / distance
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @return a list of segments data easy to use
+     */
+    public List<DataSegment> getSegmentsFromPath(Node startNode, Node endNode, int startWeight, boolean metro, boolean walk, boolean bestTimePath) {
+        return getSegmentsFromPath(startNode, endNode, startWeight, metro, walk, bestTimePath, SearchBudget.unlimited());
+    }
 
-        // ============ 1. Set initial weight for all vertex = ꚙ ======================================================
-        Set<Node> allNodes = getNodes();
-        // Add start and end nodes if they are personalized
-        if (startNode instanceof PersonalizedNode || endNode instanceof PersonalizedNode) {
-            allNodes = new HashSet<>(allNodes); // make set mutable
-        }
-        if (startNode instanceof PersonalizedNode && !allNodes.contains(startNode)) {
-            allNodes.add(startNode);
+    /**
+     * Get the shortest path between two nodes with dijkstra algorithm within a time budget and return the segments of
+     * the path. If the budget is exhausted the path is the best one found so far, it may not be the shortest.
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startWeight the start time / distance
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @param budget    the time budget of the search.
+     * @return a list of segments data easy to use, empty if no path has been found.
+     */
+    public List<DataSegment> getSegmentsFromPath(Node startNode, Node endNode, int startWeight, boolean metro, boolean walk,
+            boolean bestTimePath, SearchBudget budget) {
+        ShortestPathTree tree = search(startNode, endNode, startWeight, metro, walk, bestTimePath, false,
+                Double.POSITIVE_INFINITY, budget);
+        try {
+            return tree.toDataSegments(startWeight);
+        } finally {
+            tree.release();
         }
-        if (endNode instanceof PersonalizedNode && !allNodes.contains(endNode)) {
-            allNodes.add(endNode);
+    }
+
+    /**
+     * Get the shortest path between two nodes with A* algorithm and return the segments of the path.
+     * It gives the same weight as {@link #getSegmentsFromPath} but settles fewer nodes, the straight line distance to
+     * the end node is used to search in its direction first.
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startWeight the start time / distance
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @return a list of segments data easy to use
+     */
+    public List<DataSegment> getSegmentsFromAStar(Node startNode, Node endNode, int startWeight, boolean metro, boolean walk,
+            boolean bestTimePath) {
+        return getSegmentsFromAStar(startNode, endNode, startWeight, metro, walk, bestTimePath, SearchBudget.unlimited());
+    }
+
+    /**
+     * Get the shortest path between two nodes with A* algorithm within a time budget and return the segments of the
+     * path. If the budget is exhausted the path is the best one found so far, it may not be the shortest.
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startWeight the start time / distance
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @param budget    the time budget of the search.
+     * @return a list of segments data easy to use, empty if no path has been found.
+     */
+    public List<DataSegment> getSegmentsFromAStar(Node startNode, Node endNode, int startWeight, boolean metro, boolean walk,
+            boolean bestTimePath, SearchBudget budget) {
+        ShortestPathTree tree = search(startNode, endNode, startWeight, metro, walk, bestTimePath, true,
+                Double.POSITIVE_INFINITY, budget);
+        try {
+            return tree.toDataSegments(startWeight);
+        } finally {
+            tree.release();
         }
+    }
 
-        // =========== 2. Create structure of vertex (let’s call it ‘parens’), which size = nb of vertex ===============
-        path.put(startNode, new SearchResultBestWeight(startNode, weight, null)); // (node, parent)
+    /**
+     * Get the earliest arrival path between two nodes with the RAPTOR engine and return the segments of the path.
+     * It gives the same arrival time as {@link #getSegmentsFromPath} with bestTimePath when the number of trains is
+     * not bounded by {@link #setRaptorMaxTrips}, otherwise the earliest arrival using at most that many trains.
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startTime the start time
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @return a list of segments data easy to use
+     */
+    public List<DataSegment> getSegmentsFromRaptor(Node startNode, Node endNode, int startTime, boolean metro, boolean walk) {
+        return getRaptor().route(startNode, endNode, startTime, metro, walk, raptorMaxTrips, searchListener);
+    }
 
-        // =========== 3. Create and init structure of visited vertex ==================================================
-        Map<Node, Boolean> visited = new HashMap<>();
-        allNodes.forEach(node -> {
-            visited.put(node, false);
-        });
+    /**
+     * Get the earliest arrival path between two nodes with the Connection Scan engine and return the segments of the
+     * path. It gives the same arrival time as {@link #getSegmentsFromPath} with bestTimePath.
+     *
+     * @param startNode the start node
+     * @param endNode   the end node
+     * @param startTime the start time
+     * @param metro     if metro segments are allowed
+     * @param walk      if walk segments are allowed
+     * @return a list of segments data easy to use
+     */
+    public List<DataSegment> getSegmentsFromConnectionScan(Node startNode, Node endNode, int startTime, boolean metro,
+            boolean walk) {
+        return getConnectionScan().route(startNode, endNode, startTime, metro, walk, searchListener);
+    }
 
-        // ============= 4. Create priorityQueue where will be stocked pairs (Station, time) ===========================
-        PriorityQueue<DjikstraInfo> priorityQueue = new PriorityQueue<>(Comparator.comparingDouble(DjikstraInfo::getWeight));
+    /**
+     * Get the stations reachable from a node within a max weight, with one search which is not bound to an end node.
+     *
+     * @param startNode the start node, a station or a personalized node.
+     * @param startWeight the start time / distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param bestTimePath if true the weight is the arrival time else the distance.
+     * @param maxWeight the max arrival time / distance.
+     * @return the best arrival time / distance of each station reached within the max weight.
+     */
+    public Map<Station, Double> getReachableStations(Node startNode, int startWeight, boolean metro, boolean walk,
+                                                     boolean bestTimePath, double maxWeight) {
+        return getReachableStations(startNode, startWeight, metro, walk, bestTimePath, maxWeight, SearchBudget.unlimited());
+    }
 
-        // ----------------- add start station -------------------------------------------------------------------------
-        priorityQueue.add(new DjikstraInfo(startNode, weight));
+    /**
+     * Get the stations reachable from a node within a max weight and a time budget, with one search which is not bound
+     * to an end node. If the budget is exhausted the weights are not final, the caller has to check it.
+     *
+     * @param startNode the start node, a station or a personalized node.
+     * @param startWeight the start time / distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param bestTimePath if true the weight is the arrival time else the distance.
+     * @param maxWeight the max arrival time / distance.
+     * @param budget the time budget of the search.
+     * @return the best arrival time / distance of each station reached within the max weight.
+     */
+    public Map<Station, Double> getReachableStations(Node startNode, int startWeight, boolean metro, boolean walk,
+                                                     boolean bestTimePath, double maxWeight, SearchBudget budget) {
+        ShortestPathTree tree = search(startNode, null, startWeight, metro, walk, bestTimePath, false, maxWeight, budget);
+        try {
+            GraphSnapshot current = tree.graph();
+            Map<Station, Double> reachable = new HashMap<>();
+            for (int id = 0; id < current.nodeCount(); id++) {
+                double weight = tree.weight(id);
+                if (weight <= maxWeight && current.node(id) instanceof Station station) {
+                    reachable.put(station, weight);
+                }
+            }
+            return reachable;
+        } finally {
+            tree.release();
+        }
+    }
 
-        // ================= 5. Graph traversal ========================================================================
+    /**
+     * Get the best weights from a node to a list of stations, with one search which is not bound to an end node.
+     * It only reads the graph snapshot, so it can run on several threads at once.
+     *
+     * @param startNode the start node, a station or a personalized node.
+     * @param endNodes the stations to reach.
+     * @param startWeight the start time / distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param bestTimePath if true the weight is the arrival time else the distance.
+     * @return the best arrival time / distance of each station, in the order of the list, infinite if it is not reached.
+     */
+    public double[] getWeightsToStations(Node startNode, List<Station> endNodes, int startWeight, boolean metro,
+                                         boolean walk, boolean bestTimePath) {
+        return getWeightsToStations(startNode, endNodes, startWeight, metro, walk, bestTimePath, SearchBudget.unlimited());
+    }
 
-        while (!priorityQueue.isEmpty()) {
-            DjikstraInfo current = priorityQueue.poll();
+    /**
+     * Get the best weights from a node to a list of stations within a time budget, with one search which is not bound
+     * to an end node. If the budget is exhausted the weights are not final, the caller has to check it.
+     *
+     * @param startNode the start node, a station or a personalized node.
+     * @param endNodes the stations to reach.
+     * @param startWeight the start time / distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param bestTimePath if true the weight is the arrival time else the distance.
+     * @param budget the time budget of the search.
+     * @return the best arrival time / distance of each station, in the order of the list, infinite if it is not reached.
+     */
+    public double[] getWeightsToStations(Node startNode, List<Station> endNodes, int startWeight, boolean metro,
+                                         boolean walk, boolean bestTimePath, SearchBudget budget) {
+        ShortestPathTree tree = search(startNode, null, startWeight, metro, walk, bestTimePath, false,
+                Double.POSITIVE_INFINITY, budget);
+        try {
+            GraphSnapshot current = tree.graph();
+            double[] weights = new double[endNodes.size()];
+            for (int i = 0; i < weights.length; i++) {
+                int id = current.indexOf(endNodes.get(i));
+                weights[i] = id == -1 ? Double.POSITIVE_INFINITY : tree.weight(id);
+            }
+            return weights;
+        } finally {
+            tree.release();
+        }
+    }
 
-            double currentWeight = current.getWeight();
-            Node currentNode = current.getNode();
+    /**
+     * {Run Dikjstra or A* algorithm on the graph snapshot, without max weight.}
+     *
+     * @param startNode node from which Dikjstra will be launched
+     * @param endNode node where we are going, if null the whole graph is explored.
+     * @param weight time/distance for launching the dijkstra.
+     * @param metro if (true) include metro segments in the search.
+     * @param walk if (true) include walk segments in the search.
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @param aStar if true use the lower bounds to the end node.
+     * @return the tree of best paths from the start node.
+     */
+    ShortestPathTree search(Node startNode, Node endNode, int weight, boolean metro, boolean walk, boolean bestTimePath,
+                            boolean aStar) {
+        return search(startNode, endNode, weight, metro, walk, bestTimePath, aStar, Double.POSITIVE_INFINITY,
+                SearchBudget.unlimited());
+    }
 
-            visited.replace(currentNode, true);
+    /**
+     * {Run Dikjstra or A* algorithm on the graph snapshot.}
+     * Personalized start and end nodes are not in the snapshot, they are linked by walk to their nearest nodes of the
+     * graph (see {@link GraphSnapshot#walkLinks}) and to each other.
+     * A* orders the nodes by their weight plus a lower bound of the weight left to the end node, computed from the
+     * straight line distance, so it settles the nodes in the direction of the end node first.
+     *
+     * @param startNode node from which Dikjstra will be launched
+     * @param endNode node where we are going, if null the whole graph is explored.
+     * @param weight time/distance for launching the dijkstra.
+     * @param metro if (true) include metro segments in the search.
+     * @param walk if (true) include walk segments in the search.
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @param aStar if true use the lower bounds to the end node.
+     * @param maxWeight the search stops once the nodes left cannot reach the end node within this weight, the weights
+     *                  above it in the tree are then not final.
+     * @param budget the search stops once the budget is exhausted, the weights of the nodes which are not settled are
+     *               then not final but each of them is the weight of a path from the start node.
+     * @return the tree of best paths from the start node.
+     */
+    ShortestPathTree search(Node startNode, Node endNode, int weight, boolean metro, boolean walk, boolean bestTimePath,
+                            boolean aStar, double maxWeight, SearchBudget budget) {
+        long start = System.nanoTime();
+        ShortestPathTree tree = runSearch(startNode, endNode, weight, metro, walk, bestTimePath, aStar, maxWeight, budget);
+        searchListener.onSearch(tree.stats(aStar ? "ASTAR" : "DIJKSTRA", bestTimePath, metro, walk,
+                System.nanoTime() - start));
+        return tree;
+    }
 
-            if (currentNode.equals(endNode)) {
-                return path;
-            }
+    /**
+     * {Body of {@link #search(Node, Node, int, boolean, boolean, boolean, boolean, double, SearchBudget)}.}
+     *
+     * @param startNode node from which Dikjstra will be launched
+     * @param endNode node where we are going, if null the whole graph is explored.
+     * @param weight time/distance for launching the dijkstra.
+     * @param metro if (true) include metro segments in the search.
+     * @param walk if (true) include walk segments in the search.
+     * @param bestTimePath  if true get the best path using time else using distance.
+     * @param aStar if true use the lower bounds to the end node.
+     * @param maxWeight the max weight of the search.
+     * @param budget the time budget of the search.
+     * @return the tree of best paths from the start node.
+     */
+    private ShortestPathTree runSearch(Node startNode, Node endNode, int weight, boolean metro, boolean walk,
+                                       boolean bestTimePath, boolean aStar, double maxWeight, SearchBudget budget) {
+        if (null == startNode) {
+            throw new IllegalArgumentException("input should not be null");
+        }
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight has to be positive");
+        }
+        GraphSnapshot snapshot = getSnapshot();
+        int nbNodes = snapshot.nodeCount();
 
-            Set<Segment> neighbors;
-            if (startNode.equals(currentNode) && startNode instanceof PersonalizedNode) {
-                neighbors = new HashSet<>();
-                for (Node node : allNodes) {
-                    if (!node.equals(startNode)) {
-                        neighbors.add(new SegmentWalk(startNode, node));
-                    }
-                }
-            } else if (endNode.equals(currentNode) && endNode instanceof PersonalizedNode) {
-                neighbors = new HashSet<>();
-                for (Node node : allNodes) {
-                    if (!node.equals(endNode)) {
-                        neighbors.add(new SegmentWalk(endNode, node));
-                    }
+        // ============ 0. Find ids of start and end nodes =============================================================
+        int source = startNode instanceof PersonalizedNode ? ShortestPathTree.personalizedStartId(snapshot) : snapshot.indexOf(startNode);
+        if (source == -1) {
+            throw new IllegalArgumentException("start node is not in the graph");
+        }
+        int target;
+        if (startNode.equals(endNode)) {
+            target = source;
+        } else if (endNode instanceof PersonalizedNode) {
+            target = ShortestPathTree.personalizedEndId(snapshot);
+        } else {
+            target = endNode == null ? -1 : snapshot.indexOf(endNode);
+        }
+        boolean personalizedStart = source == ShortestPathTree.personalizedStartId(snapshot);
+        boolean personalizedEnd = target == ShortestPathTree.personalizedEndId(snapshot);
+        // Walk segments are only removed when metro is allowed but walk is not.
+        boolean walkAllowed = !metro || walk;
+
+        // ============ 1. Begin a new search in a context of the pool, all weights are ꚙ ============================
+        SearchContext context = snapshot.acquireSearchContext();
+        context.begin();
+        ShortestPathTree tree = new ShortestPathTree(snapshot, context, startNode, endNode, source, target);
+
+        // =========== 2. Set lower bounds and personalized end node links =============================================
+        if (aStar && target != -1) {
+            for (int node = 0; node < context.size(); node++) {
+                double bound = 0;
+                if (node != target && (node < nbNodes || (node == source && personalizedStart))) {
+                    double straightLine = tree.node(node).distanceTo(endNode);
+                    bound = bestTimePath ? snapshot.durationLowerBound(straightLine) : snapshot.distanceLowerBound(straightLine);
                 }
-            } else {
-                neighbors = new HashSet<>(this.getSegments(currentNode)); // copy of set
+                context.bound(node, bound);
             }
-            // Add personalized nodes segments if start and end node is personalized
-            if (startNode instanceof PersonalizedNode && !startNode.equals(currentNode)) {
-                neighbors.add(new SegmentWalk(currentNode, startNode));
-            }
-            if (endNode instanceof PersonalizedNode && !endNode.equals(currentNode)) {
-                neighbors.add(new SegmentWalk(currentNode, endNode));
+        }
+        IndexedMinHeap heap = context.heap();
+        // Personalized end node is only reached by walk from its nearest nodes and from the start node.
+        boolean linkToEnd = personalizedEnd && walkAllowed;
+        if (linkToEnd) {
+            for (int node : snapshot.walkLinks(endNode)) {
+                context.link(node);
             }
+            context.link(source);
+        }
+
+        // ----------------- add start station -------------------------------------------------------------------------
+        context.label(source, weight, ShortestPathTree.NO_PARENT, GraphSnapshot.NO_LINE);
+        context.push(source, weight + context.bound(source));
 
-            // Remove segments if only metro or only walk is allowed
-            if (!metro) {
-                neighbors = neighbors.stream().filter(segment -> !(segment instanceof SegmentMetro)).collect(Collectors.toSet());
-            } else if (!walk) {
-                neighbors = neighbors.stream().filter(segment -> !(segment instanceof SegmentWalk)).collect(Collectors.toSet());
+        // ================= 3. Graph traversal ========================================================================
+        while (!heap.isEmpty() && !budget.tick()) {
+            int current = heap.poll();
+            double currentWeight = context.weight(current);
+            if (currentWeight + context.bound(current) > maxWeight) {
+                break;
             }
+            context.settle(current);
 
-            for (Segment neighbor : neighbors) {
-                // Time to wait for the next train
-                double minimalWeight = 0;
-                if (bestTimePath) {
-                    minimalWeight = neighbor instanceof SegmentMetro
-                            ? this.getNearestDepartureTime((int) currentWeight, (Station) neighbor.getStartPoint(), ((SegmentMetro) neighbor).getLine())
-                            : currentWeight;
+            if (current == target) {
+                return tree;
+            }
 
-                } else {
-                    minimalWeight = neighbor.getDistance();
+            if (personalizedStart && current == source) {
+                // Personalized start node is linked by walk to its nearest nodes and to the end node.
+                if (walkAllowed) {
+                    for (int node : snapshot.walkLinks(startNode)) {
+                        relaxWalk(tree, context, current, node, bestTimePath);
+                    }
+                    if (target != -1 && target < nbNodes) {
+                        relaxWalk(tree, context, current, target, bestTimePath);
+                    }
                 }
-                if (minimalWeight == -1) { // is SegmentMetro and no trains
-                    continue;
+            } else {
+                if (metro) {
+                    for (int edge = snapshot.firstEdge(current); edge < snapshot.firstWalkEdge(current); edge++) {
+                        double newWeight;
+                        if (bestTimePath) {
+                            // Time to wait for the next train
+                            context.countScheduleLookup();
+                            int departureTime = snapshot.nextDeparture(edge, (int) currentWeight);
+                            if (departureTime == -1) { // no trains
+                                continue;
+                            }
+                            newWeight = departureTime + snapshot.duration(edge);
+                        } else {
+                            newWeight = currentWeight + snapshot.distance(edge);
+                        }
+                        relax(context, current, snapshot.target(edge), newWeight, snapshot.lineId(edge));
+                    }
                 }
-                double addingValue = bestTimePath ? neighbor.getDuration() : currentWeight;
-                DjikstraInfo djToTest = new DjikstraInfo(neighbor.getEndPoint(), minimalWeight + addingValue);
-                Optional<DjikstraInfo> djikstraInfo = priorityQueue.stream().filter((dj) -> dj.equals(djToTest)).findFirst();
-                if (djikstraInfo.isPresent()) {
-                    int compareValue = djikstraInfo.get().compareTo(djToTest);
-                    if (compareValue > 0) {
-                        djikstraInfo.get().setWeight(djToTest.getWeight());
-                        priorityQueue.remove(djikstraInfo.get());
-                        priorityQueue.add(djikstraInfo.get());
-                        path.replace(neighbor.getEndPoint(),
-                                new SearchResultBestWeight(currentNode, djToTest.getWeight(), getLineFromSegment(neighbor)));
+                if (walkAllowed) {
+                    for (int edge = snapshot.firstWalkEdge(current); edge < snapshot.endEdge(current); edge++) {
+                        double newWeight = currentWeight + (bestTimePath ? snapshot.duration(edge) : snapshot.distance(edge));
+                        relax(context, current, snapshot.target(edge), newWeight, GraphSnapshot.NO_LINE);
                     }
-                } else if (!visited.get(neighbor.getEndPoint())) {
-                    priorityQueue.add(djToTest);
-                    path.put(neighbor.getEndPoint(),
-                            new SearchResultBestWeight(currentNode, djToTest.getWeight(), getLineFromSegment(neighbor)));
                 }
             }
+            // Add personalized end node segment
+            if (linkToEnd && context.isLinked(current)) {
+                relaxWalk(tree, context, current, target, bestTimePath);
+            }
         }
-        return path;
+        return tree;
     }
 
     /**
-     * Get the shortest path between two nodes with dijkstra algorithm and return the segments of the path
+     * Relax the walk segment between two nodes, it is used to link personalized nodes to the graph.
      *
-     * @param startNode the start node
-     * @param endNode   the end node
-     * @param startWeight the start time / distance
-     * @param metro     if metro segments are allowed
-     * @param walk      if walk segments are allowed
-     * @param bestTimePath  if true get the best path using time else using distance.
-     * @return a list of segments data easy to use
+     * @param tree tree of the current search.
+     * @param context context of the current search.
+     * @param current node the walk starts from.
+     * @param next node the walk goes to.
+     * @param bestTimePath if true the weight is a time else it is a distance.
      */
-    public List<DataSegment> getSegmentsFromPath(Node startNode, Node endNode, int startWeight, boolean metro, boolean walk, boolean bestTimePath) {
-        Map<Node, SearchResultBestWeight> map = dijkstra(startNode, endNode, startWeight, metro, walk, bestTimePath);
-
-        LinkedList<DataSegment> segments = new LinkedList<>();
-        Node current = endNode;
-        double departureTime = startWeight;
+    private static void relaxWalk(ShortestPathTree tree, SearchContext context, int current, int next, boolean bestTimePath) {
+        double distance = tree.node(current).distanceTo(tree.node(next));
+        double newWeight = context.weight(current) + (bestTimePath ? SegmentWalk.durationFor(distance) : distance);
+        relax(context, current, next, newWeight, GraphSnapshot.NO_LINE);
+    }
 
-        while (!current.equals(startNode) && map.get(current) != null) {
-            Node next = map.get(current).getNodeDestination();
-            double arrivalTime = map.get(current).getWeight();
-            segments.addFirst(new DataSegment(next, current, arrivalTime, departureTime, map.get(current).getMetroLine(), 0));
-            departureTime = arrivalTime;
-            current = next;
+    /**
+     * Update the weight of a node if the given path to it is better.
+     * The lower bounds of the context are added to the keys of the heap.
+     *
+     * @param context context of the current search.
+     * @param current node the segment starts from.
+     * @param next node the segment goes to.
+     * @param newWeight weight of next when coming from current.
+     * @param lineId line of the segment.
+     */
+    private static void relax(SearchContext context, int current, int next, double newWeight, int lineId) {
+        context.countRelaxed();
+        if (context.heap().contains(next)) {
+            if (context.weight(next) <= newWeight) {
+                return;
+            }
+            context.decreaseKey(next, newWeight + context.bound(next));
+        } else if (!context.isSettled(next)) {
+            context.push(next, newWeight + context.bound(next));
+        } else {
+            return;
         }
-
-        return segments;
+        context.label(next, newWeight, current, lineId);
     }
 
     // ================================== Dikjstra and it's auxiliary functions =======================================
@@ -316,26 +851,47 @@ public final class MetroMap {
      */
     @PostConstruct
     public void initializeFields() {
+        initializeFieldsFrom("data/map_data.csv", "data/timetables.csv");
+    }
+
+    /**
+     * It initializes all the fields from the given network files, classpath resources or paths of the file system.
+     *
+     * @param metroFile file of the metro segments, in the format of map_data.csv.
+     * @param scheduleFile file of the departures from the terminus, in the format of timetables.csv.
+     */
+    public void initializeFieldsFrom(String metroFile, String scheduleFile) {
+        loadedFromSnapshot = false;
+        Long snapshotKey = null;
+        if (snapshotFile != null) {
+            try {
+                snapshotKey = snapshotKey(metroFile, scheduleFile);
+                if (loadSnapshot(snapshotKey)) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Cannot load the network snapshot {}, building the network", snapshotFile, e);
+            }
+        }
         // get values from parser
-        String metroFile = "data/map_data.csv";
-        String scheduleFile = "data/timetables.csv";
+        ParseResult parsed;
         try {
-            Parser.instance.parse(metroFile, scheduleFile);
+            parsed = new Parser().parse(metroFile, scheduleFile);
         } catch (FileNotFoundException e) {
-            System.out.println("File not found when parsing files " + e);
+            logger.error("File not found when parsing files {} and {}", metroFile, scheduleFile, e);
             return;
         } catch (IOException e) {
-            System.out.println("IO error when parsing files " + e);
+            logger.error("IO error when parsing files {} and {}", metroFile, scheduleFile, e);
             return;
         }
-        Set<NodeDTO> stationsDTO = Parser.getStations(); // To be used for walk segments.
-        Map<String, String> metroLinesTerminus = Parser.getMetroLines();
+        Set<NodeDTO> stationsDTO = parsed.stations(); // To be used for walk segments.
+        Map<String, String> metroLinesTerminus = parsed.metroLines();
         stationsDTO.forEach(stationDTO -> {
             Station station = this.stationDTOtoStation(stationDTO);
             this.stations.put(station.getName(), station);
         });
-        Set<SegmentMetroDTO> segmentMetroDTOS = Parser.getSegmentMetro();
-        Map<String, List<Integer>> schedules = Parser.getMetroLineSchedules();
+        Set<SegmentMetroDTO> segmentMetroDTOS = parsed.segmentMetro();
+        Map<String, List<Integer>> schedules = parsed.metroLineSchedules();
         Map<String, Set<Station>> metroLines = new HashMap<>();
 
         // use values from parser to build this
@@ -344,6 +900,116 @@ public final class MetroMap {
         diffuseTrainTimeFromTerminus(metroLinesTerminus);
 
         addAllWalkSegments(getAllStations());
+        buildEngines();
+        if (snapshotKey != null) {
+            try {
+                List<Node> nodes = new ArrayList<>();
+                for (int i = 0; i < snapshot.nodeCount(); i++) {
+                    nodes.add(snapshot.node(i));
+                }
+                // The footpaths are bounded by the walk settings, their tables grow with the stations near each one.
+                NetworkSnapshot.write(snapshotFile, snapshotKey, new NetworkSnapshot.Content(stations, lines, graph,
+                        nodes, getConnectionScan().tables()));
+                logger.info("Network snapshot written to {}", snapshotFile);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Cannot write the network snapshot {}", snapshotFile, e);
+            }
+        }
+    }
+
+    /**
+     * Build the snapshot of the graph and the engines on it, once the network is built or loaded.
+     */
+    private void buildEngines() {
+        buildEngines(null);
+    }
+
+    /**
+     * Build the snapshot of the graph and the engines on it, once the network is built or loaded. The Connection Scan
+     * engine is built on first use, unless the snapshot the network was loaded from has its tables.
+     *
+     * @param content snapshot the network was loaded from, its connection scan tables are used if they were built
+     *                on the same graph snapshot, null if the network was built.
+     */
+    private void buildEngines(NetworkSnapshot.Content content) {
+        snapshot = new GraphSnapshot(graph, lines, walkLinkRadius, walkLinkCount);
+        routePatterns = new RoutePatterns(snapshot, lines.values());
+        raptor = new Raptor(routePatterns);
+        if (content != null && content.connectionScan() != null && hasNodes(snapshot, content.nodes())
+                && content.connectionScan().matches(routePatterns)) {
+            connectionScan = new ConnectionScan(routePatterns, content.connectionScan(), footpathMaxDuration());
+        } else {
+            connectionScan = null;
+        }
+        metroGraph = buildMetroGraph();
+        dataVersion++;
+    }
+
+    /**
+     * Returns true if a graph snapshot has the given nodes, in the order of their ids.
+     *
+     * @param graphSnapshot the graph snapshot.
+     * @param nodes the nodes.
+     * @return true if the node of each id is the one of the list.
+     */
+    private static boolean hasNodes(GraphSnapshot graphSnapshot, List<Node> nodes) {
+        if (graphSnapshot.nodeCount() != nodes.size()) {
+            return false;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (graphSnapshot.node(i) != nodes.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key of the data a snapshot has to be built from: the content of the CSV files and the walk settings.
+     *
+     * @param metroFile file of the metro segments.
+     * @param scheduleFile file of the departures from the terminus.
+     * @return the key of the snapshot.
+     * @throws IOException if a file cannot be read.
+     */
+    private long snapshotKey(String metroFile, String scheduleFile) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(8 + 8 + 4 + 1 + 8 + 8 + 4).putLong(Parser.checksum(metroFile, scheduleFile))
+                .putDouble(maxWalkDistance).putInt(walkNeighbours).put((byte) (walkTransitiveClosure ? 1 : 0))
+                .putDouble(walkClosureDistance).putDouble(walkLinkRadius).putInt(walkLinkCount).flip();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Load the network from the snapshot file if it was built from the same data.
+     *
+     * @param snapshotKey key of the data the network has to be built from.
+     * @return true if the network was loaded, false if there is no up to date snapshot.
+     * @throws IOException if the file cannot be read.
+     */
+    private boolean loadSnapshot(long snapshotKey) throws IOException {
+        NetworkSnapshot.Content content = NetworkSnapshot.read(snapshotFile, snapshotKey);
+        if (content == null) {
+            logger.info("No up to date network snapshot in {}", snapshotFile);
+            return false;
+        }
+        stations.putAll(content.stations());
+        lines.putAll(content.lines());
+        graph.putAll(content.graph());
+        buildEngines(content);
+        loadedFromSnapshot = true;
+        logger.info("Network loaded from the snapshot {}", snapshotFile);
+        return true;
+    }
+
+    /**
+     * Returns true if the network was loaded from the snapshot file by the last initialization.
+     *
+     * @return true if the network was loaded from the snapshot file.
+     */
+    boolean isLoadedFromSnapshot() {
+        return loadedFromSnapshot;
     }
 
     /**
@@ -379,7 +1045,8 @@ public final class MetroMap {
     private void setMetroLineSchedules(Map<String, Set<Station>> metroLines, Map<String, String> metroLinesTerminus,
                                        Map<String, List<Integer>> schedules) {
         metroLines.forEach((key, value) -> {
-            List<Integer> schedule = schedules.getOrDefault(key, new ArrayList<>());
+            // A mutable copy, the metro line sorts its schedules.
+            List<Integer> schedule = new ArrayList<>(schedules.getOrDefault(key, List.of()));
             this.lines.put(key, new MetroLine(key, value, schedule, this.stations.get(metroLinesTerminus.get(key))));
         });
     }
@@ -416,19 +1083,105 @@ public final class MetroMap {
 
     /**
      * Create walk segments &#38; add it to the graph.
+     * Without a bound every pair of stations is linked. Otherwise each station is linked to the stations closer than
+     * the max walk distance and to its nearest stations, found with a {@link SpatialIndex}. With the transitive closure,
+     * stations linked by a chain of walk segments no longer than the max closure distance also get a direct segment
+     * with the length of the chain.
      *
      * @param stations all metro stations in the given network.
      */
     private void addAllWalkSegments(Set<Station> stations) {
-        stations.forEach(station -> {
-            Station start = this.stations.get(station.getName());
-            stations.forEach(station2 -> {
-                Station end = this.stations.get(station2.getName());
-                if (start != end) {
-                    this.addSegmentWalk(start, end, start.distanceTo(end));
+        List<Station> list = stations.stream().map(station -> this.stations.get(station.getName())).distinct()
+                .sorted(Comparator.comparing(Station::getName)).collect(Collectors.toList());
+        int nbSegments = 0;
+        if (maxWalkDistance == Double.POSITIVE_INFINITY) {
+            for (Station start : list) {
+                for (Station end : list) {
+                    if (start != end) {
+                        this.addSegmentWalk(start, end, start.distanceTo(end));
+                        nbSegments++;
+                    }
                 }
-            });
-        });
+            }
+        } else {
+            SpatialIndex index = new SpatialIndex(list);
+            List<int[]> neighbours = new ArrayList<>();
+            for (Station station : list) {
+                // The station itself is the nearest one.
+                neighbours.add(IntStream.concat(Arrays.stream(index.withinRadius(station, maxWalkDistance)),
+                        Arrays.stream(index.nearest(station, walkNeighbours + 1))).distinct().sorted().toArray());
+            }
+            double[] distances = new double[list.size()];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            int[] reached = new int[list.size()];
+            boolean[] linked = new boolean[list.size()];
+            IndexedMinHeap heap = new IndexedMinHeap(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                for (int j : neighbours.get(i)) {
+                    if (j != i) {
+                        this.addSegmentWalk(list.get(i), list.get(j), list.get(i).distanceTo(list.get(j)));
+                        nbSegments++;
+                    }
+                    linked[j] = true;
+                }
+                if (walkTransitiveClosure) {
+                    int count = closeWalks(list, neighbours, i, distances, reached, heap);
+                    for (int k = 0; k < count; k++) {
+                        int j = reached[k];
+                        if (!linked[j]) {
+                            this.addSegmentWalk(list.get(i), list.get(j), distances[j]);
+                            nbSegments++;
+                        }
+                        distances[j] = Double.POSITIVE_INFINITY;
+                    }
+                }
+                for (int j : neighbours.get(i)) {
+                    linked[j] = false;
+                }
+            }
+        }
+        logger.info("{} walk segments for {} stations, {} for all pairs", nbSegments, list.size(),
+                (long) list.size() * (list.size() - 1));
+    }
+
+    /**
+     * Compute the length of the shortest chains of walk segments from a station, up to the max closure distance. Only
+     * the stations reached are visited, so that the closure grows with the stations near each station.
+     *
+     * @param stations stations, sorted.
+     * @param neighbours stations linked by walk to each station.
+     * @param from station the chains start from.
+     * @param distances walking distance to each station, infinite for all of them when it is called; the distances of
+     *                  the reached stations are set, the caller resets them.
+     * @param reached filled with the stations reached, the start station excluded.
+     * @param heap empty heap, left empty.
+     * @return the number of stations reached.
+     */
+    private int closeWalks(List<Station> stations, List<int[]> neighbours, int from, double[] distances, int[] reached,
+                           IndexedMinHeap heap) {
+        int count = 0;
+        distances[from] = 0;
+        heap.insert(from, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            for (int next : neighbours.get(current)) {
+                double distance = distances[current] + stations.get(current).distanceTo(stations.get(next));
+                if (distance >= distances[next] || distance > walkClosureDistance) {
+                    continue;
+                }
+                if (distances[next] == Double.POSITIVE_INFINITY) {
+                    reached[count++] = next;
+                }
+                distances[next] = distance;
+                if (heap.contains(next)) {
+                    heap.decreaseKey(next, distance);
+                } else {
+                    heap.insert(next, distance);
+                }
+            }
+        }
+        distances[from] = Double.POSITIVE_INFINITY;
+        return count;
     }
 
     /**
@@ -446,12 +1199,25 @@ public final class MetroMap {
         try {
             Node node = nodeClass.getDeclaredConstructor(String.class, double.class, double.class).newInstance(name, latitude, longitude);
             graph.put(node, new HashSet<Segment>());
+            invalidateSnapshot();
         } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
                 | NoSuchMethodException | SecurityException e) {
             throw new IllegalArgumentException("Error while creating a new node " + e);
         }
     }
 
+    /**
+     * Drop the snapshot and the engines built on it after a change of the graph.
+     */
+    private void invalidateSnapshot() {
+        snapshot = null;
+        routePatterns = null;
+        raptor = null;
+        connectionScan = null;
+        metroGraph = null;
+        dataVersion++;
+    }
+
     /**
      * Add a new segment to the graph.
      * It need both nodes to be in the graph.
@@ -459,6 +1225,7 @@ public final class MetroMap {
      * @param segment segment to add
      */
     private void addSegment(Segment segment) {
+        invalidateSnapshot();
         if (graph.containsKey(segment.getStartPoint())) {
             graph.get(segment.getStartPoint()).add(segment);
         } else {
@@ -505,86 +1272,4 @@ public final class MetroMap {
     Station stationDTOtoStation(NodeDTO dto) {
         return new Station(dto.getName(), dto.getLatitude(), dto.getLongitude());
     }
-
-    /**
-     * Class which is used to simulate dijkstra nodes.
-     */
-    // Dijkstra classes.
-    private static class DjikstraInfo implements Comparable<DjikstraInfo> {
-        private final Node node;
-        private double weight;
-
-        /**
-         * Constructs a new `DjikstraInfo` instance with the given node and weight.
-         *
-         * @param node the node represented by this instance
-         * @param weight the weight from the source node to this node
-         */
-        public DjikstraInfo(Node node, double weight) {
-            this.node = node;
-            this.weight = weight;
-        }
-
-        /**
-         * Gets the weight from the source node to this node.
-         *
-         * @return the weight from the source node to this node
-         */
-        public double getWeight() {
-            return weight;
-        }
-
-        /**
-         * Sets the weight from the source node to this node.
-         *
-         * @param weight the new weight from the source node to this node
-         */
-        public void setWeight(double weight) {
-            this.weight = weight;
-        }
-
-        /**
-         * Gets the node represented by this instance.
-         *
-         * @return the node represented by this instance
-         */
-        public Node getNode() {
-            return node;
-        }
-
-        /**
-         * Checks whether this instance is equal to the specified object.
-         *
-         * @param o the object to compare to
-         * @return true if this instance is equal to the specified object, false otherwise
-         */
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            DjikstraInfo that = (DjikstraInfo) o;
-            return Objects.equals(node, that.node);
-        }
-
-        /**
-         * Computes the hash code for this instance.
-         *
-         * @return the hash code for this instance
-         */
-        @Override
-        public int hashCode() {
-            return Objects.hash(node);
-        }
-
-        /**
-         * Compares this instance to the specified `DjikstraInfo` instance based on their weights.
-         *
-         * @param o the `DjikstraInfo` instance to compare to
-         * @return a negative integer, zero, or a positive integer as this instance is less than, equal to, or greater than the specified instance
-         */
-        @Override
-        public int compareTo(DjikstraInfo o) {
-            return Double.compare(weight, o.weight);
-        }
-    }
 }
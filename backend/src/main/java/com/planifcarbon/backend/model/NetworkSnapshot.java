@@ -0,0 +1,321 @@
+package com.planifcarbon.backend.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * {@summary Binary file holding a network built by {@link MetroMap}, so a later start loads it instead of building it.}
+ * The file holds the stations and their coordinates, the metro lines with their stations, terminus and departures,
+ * the time from the terminus of each line to each station, the metro and walk segments of the graph, and the tables of
+ * the {@link ConnectionScan} engine: the connections of the stop patterns sorted by departure and the footpaths, the
+ * closure of the walk segments up to the walk radius. It starts with a header:
+ * <ul>
+ * <li>the magic number and the version of the format,</li>
+ * <li>the key of the data it was built from, a checksum of the CSV files and of the walk settings,</li>
+ * <li>a CRC-32 of the rest of the file.</li>
+ * </ul>
+ * The file is memory-mapped when it is read. A file with another version, another key or a wrong CRC is not read.
+ * The graph and the segments of each node are written in their iteration order and read back in the same order, so
+ * the rebuilt maps iterate as the original ones and the engines built on them give the same ids. The ids of the nodes
+ * of the {@link GraphSnapshot} the tables were built on are written too, so that tables which would not match the
+ * rebuilt graph are not used.
+ */
+final class NetworkSnapshot {
+    /** "PCNS", first bytes of a snapshot file. */
+    static final int MAGIC = 0x50434E53;
+    /** Version of the format, incremented when the layout changes. */
+    static final int FORMAT_VERSION = 2;
+    /** Size of the header: magic, version, key and CRC. */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final byte METRO = 0;
+    private static final byte WALK = 1;
+    private static final int NONE = -1;
+
+    private NetworkSnapshot() {}
+
+    /**
+     * Network read from a snapshot file.
+     *
+     * @param stations stations keyed by their names.
+     * @param lines metro lines keyed by their names.
+     * @param graph segments leaving each node.
+     * @param nodes nodes of the graph snapshot the tables were built on, in the order of their ids.
+     * @param connectionScan tables of the connection scan engine, null if there are none.
+     */
+    record Content(Map<String, Station> stations, Map<String, MetroLine> lines, Map<Node, Set<Segment>> graph,
+                   List<Node> nodes, ConnectionScan.Tables connectionScan) {
+    }
+
+    /**
+     * Write a network to a snapshot file. The file is written next to the target then moved on it, so a reader never
+     * sees a partial file.
+     *
+     * @param file the snapshot file.
+     * @param key key of the data the network was built from.
+     * @param content the network, every node of the graph has to be one of its stations.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if a node of the graph is not a station of the network.
+     */
+    static void write(Path file, long key, Content content) throws IOException {
+        List<Station> stations = new ArrayList<>(content.stations().values());
+        Map<Node, Integer> stationIds = new IdentityHashMap<>();
+        for (Station station : stations) {
+            stationIds.put(station, stationIds.size());
+        }
+        List<MetroLine> lines = new ArrayList<>(content.lines().values());
+        Map<MetroLine, Integer> lineIds = new IdentityHashMap<>();
+        for (MetroLine line : lines) {
+            lineIds.put(line, lineIds.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(stations.size());
+        for (Station station : stations) {
+            writeString(out, station.getName());
+            out.writeDouble(station.getCoordinates().getLatitude());
+            out.writeDouble(station.getCoordinates().getLongitude());
+        }
+        out.writeInt(lines.size());
+        for (MetroLine line : lines) {
+            writeString(out, line.getName());
+            out.writeInt(line.getTerminusStation() == null ? NONE : id(stationIds, line.getTerminusStation()));
+            out.writeInt(line.getStations().size());
+            for (Station station : line.getStations()) {
+                out.writeInt(id(stationIds, station));
+            }
+            out.writeInt(line.getSchedules().size());
+            for (int departure : line.getSchedules()) {
+                out.writeInt(departure);
+            }
+        }
+        for (Station station : stations) {
+            out.writeInt(station.getSchedules().size());
+            for (Map.Entry<ScheduleKey, Integer> schedule : station.getSchedules().entrySet()) {
+                Integer lineId = lineIds.get(schedule.getKey().getMetroLine());
+                if (lineId == null) {
+                    throw new IllegalStateException("schedule of a line which is not in the network");
+                }
+                out.writeInt(lineId);
+                out.writeInt(id(stationIds, schedule.getKey().getTerminusStation()));
+                out.writeInt(schedule.getValue());
+            }
+        }
+        out.writeInt(content.graph().size());
+        for (Map.Entry<Node, Set<Segment>> entry : content.graph().entrySet()) {
+            out.writeInt(id(stationIds, entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for (Segment segment : entry.getValue()) {
+                out.writeInt(id(stationIds, segment.getEndPoint()));
+                out.writeDouble(segment.getDistance());
+                if (segment instanceof SegmentMetro metro) {
+                    out.writeByte(METRO);
+                    out.writeInt(segment.getDuration());
+                    writeString(out, metro.getLine());
+                } else {
+                    out.writeByte(WALK);
+                }
+            }
+        }
+        out.writeInt(content.nodes().size());
+        for (Node node : content.nodes()) {
+            out.writeInt(id(stationIds, node));
+        }
+        ConnectionScan.Tables tables = content.connectionScan();
+        out.writeBoolean(tables != null);
+        if (tables != null) {
+            for (int[] table : new int[][]{tables.departureStops(), tables.arrivalStops(), tables.departureTimes(),
+                    tables.arrivalTimes(), tables.connectionTrips(), tables.tripRoutes(), tables.tripDepartures(),
+                    tables.footOffsets(), tables.footTargets(), tables.footDurations()}) {
+                writeInts(out, table);
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).putLong(key)
+                .putLong(crc.getValue()).flip();
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.write(new ByteBuffer[]{header, ByteBuffer.wrap(payload)});
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Read a network from a snapshot file.
+     *
+     * @param file the snapshot file.
+     * @param key key of the data the network has to be built from.
+     * @return the network, or null if there is no file or if it has another version, another key or a wrong CRC.
+     * @throws IOException if the file cannot be read.
+     */
+    static Content read(Path file, long key) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                || buffer.getLong() != key) {
+            return null;
+        }
+        long expectedCrc = buffer.getLong();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if (crc.getValue() != expectedCrc) {
+            return null;
+        }
+
+        Station[] stations = new Station[buffer.getInt()];
+        Map<String, Station> stationsByName = new HashMap<>();
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = new Station(readString(buffer), buffer.getDouble(), buffer.getDouble());
+            stationsByName.put(stations[i].getName(), stations[i]);
+        }
+        MetroLine[] lines = new MetroLine[buffer.getInt()];
+        Map<String, MetroLine> linesByName = new HashMap<>();
+        for (int i = 0; i < lines.length; i++) {
+            String name = readString(buffer);
+            int terminus = buffer.getInt();
+            Set<Station> lineStations = new HashSet<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                lineStations.add(stations[buffer.getInt()]);
+            }
+            List<Integer> departures = new ArrayList<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                departures.add(buffer.getInt());
+            }
+            lines[i] = new MetroLine(name, lineStations, departures, terminus == NONE ? null : stations[terminus]);
+            linesByName.put(name, lines[i]);
+        }
+        for (Station station : stations) {
+            for (int j = buffer.getInt(); j > 0; j--) {
+                MetroLine line = lines[buffer.getInt()];
+                Station terminus = stations[buffer.getInt()];
+                station.addSchedule(new ScheduleKey(terminus, line), buffer.getInt());
+            }
+        }
+        Map<Node, Set<Segment>> graph = new HashMap<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            Station start = stations[buffer.getInt()];
+            Set<Segment> segments = new HashSet<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                Station end = stations[buffer.getInt()];
+                double distance = buffer.getDouble();
+                if (buffer.get() == METRO) {
+                    segments.add(new SegmentMetro(start, end, distance, buffer.getInt(), readString(buffer)));
+                } else {
+                    segments.add(new SegmentWalk(start, end, distance));
+                }
+            }
+            graph.put(start, segments);
+        }
+        List<Node> nodes = new ArrayList<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            nodes.add(stations[buffer.getInt()]);
+        }
+        ConnectionScan.Tables tables = null;
+        if (buffer.get() != 0) {
+            tables = new ConnectionScan.Tables(readInts(buffer), readInts(buffer), readInts(buffer), readInts(buffer),
+                    readInts(buffer), readInts(buffer), readInts(buffer), readInts(buffer), readInts(buffer),
+                    readInts(buffer));
+        }
+        return new Content(stationsByName, linesByName, graph, nodes, tables);
+    }
+
+    /**
+     * Returns the id of a station.
+     *
+     * @param ids ids of the stations of the network.
+     * @param node a node of the graph.
+     * @return the id of the node.
+     * @throws IllegalStateException if the node is not a station of the network.
+     */
+    private static int id(Map<Node, Integer> ids, Node node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            throw new IllegalStateException(node.getName() + " is not a station of the network");
+        }
+        return id;
+    }
+
+    /**
+     * Write a string as its length and its UTF-8 bytes.
+     *
+     * @param out the output.
+     * @param value the string.
+     * @throws IOException if the output fails.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Write an array of integers as its length and its values.
+     *
+     * @param out the output.
+     * @param values the array.
+     * @throws IOException if the output fails.
+     */
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * Integer.BYTES);
+        bytes.asIntBuffer().put(values);
+        out.writeInt(values.length);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Read an array of integers written by {@link #writeInts}.
+     *
+     * @param buffer the input.
+     * @return the array.
+     */
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Read a string written by {@link #writeString}.
+     *
+     * @param buffer the input.
+     * @return the string.
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
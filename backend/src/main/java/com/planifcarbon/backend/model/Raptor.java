@@ -0,0 +1,443 @@
+package com.planifcarbon.backend.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * {@summary Round-based public transit routing (RAPTOR) on the metro lines of a {@link GraphSnapshot}.}
+ * Routes are the {@link RoutePatterns} of the metro lines. Round k finds the earliest arrivals using at most k trains,
+ * then extends them with walks, so the number of trains is bounded by the number of rounds.
+ */
+final class Raptor {
+    private static final String ENGINE = "RAPTOR";
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final byte SOURCE = 1;
+    private static final byte TRIP = 2;
+    private static final byte WALK = 3;
+
+    private final GraphSnapshot graph;
+    private final RoutePatterns patterns;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param patterns stop patterns of the metro lines, their node ids are used as stop ids.
+     */
+    Raptor(RoutePatterns patterns) {
+        this.graph = patterns.graph();
+        this.patterns = patterns;
+    }
+
+    /**
+     * Returns the number of routes.
+     *
+     * @return the number of routes.
+     */
+    int routeCount() { return patterns.routeCount(); }
+
+    /**
+     * {Find the earliest arrival path between two nodes.}
+     *
+     * @param startNode node to start from, a station or a personalized node.
+     * @param endNode node to go to, a station or a personalized node.
+     * @param startTime departure time.
+     * @param metro if (true) trains can be used.
+     * @param walk if (true) walk segments can be used.
+     * @param maxTrips maximum number of trains in the path.
+     * @return the data segments of the path, empty if there is no path.
+     */
+    List<DataSegment> route(Node startNode, Node endNode, int startTime, boolean metro, boolean walk, int maxTrips) {
+        return route(startNode, endNode, startTime, metro, walk, maxTrips, SearchListener.NONE);
+    }
+
+    /**
+     * {Find the earliest arrival path between two nodes, and give the cost of the search to a listener.}
+     * The settled nodes are the stops visited by the route scans and the nodes settled by the walks, the relaxed
+     * segments are the rides and the walks tried, the schedule lookups are the searches of the earliest trip.
+     *
+     * @param startNode node to start from, a station or a personalized node.
+     * @param endNode node to go to, a station or a personalized node.
+     * @param startTime departure time.
+     * @param metro if (true) trains can be used.
+     * @param walk if (true) walk segments can be used.
+     * @param maxTrips maximum number of trains in the path.
+     * @param listener listener called once the path is found.
+     * @return the data segments of the path, empty if there is no path.
+     */
+    List<DataSegment> route(Node startNode, Node endNode, int startTime, boolean metro, boolean walk, int maxTrips,
+                            SearchListener listener) {
+        long start = System.nanoTime();
+        if (null == startNode || null == endNode) {
+            throw new IllegalArgumentException("input should not be null");
+        }
+        if (startTime < 0) {
+            throw new IllegalArgumentException("weight has to be positive");
+        }
+        int source = startNode instanceof PersonalizedNode ? ShortestPathTree.personalizedStartId(graph) : graph.indexOf(startNode);
+        if (source == -1) {
+            throw new IllegalArgumentException("start node is not in the graph");
+        }
+        int target;
+        if (startNode.equals(endNode)) {
+            listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, 0, 0, 0, 0, 0));
+            return new LinkedList<>();
+        } else if (endNode instanceof PersonalizedNode) {
+            target = ShortestPathTree.personalizedEndId(graph);
+        } else {
+            target = graph.indexOf(endNode);
+            if (target == -1) {
+                listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, 0, 0, 0, 0, 0));
+                return new LinkedList<>();
+            }
+        }
+        Search search = new Search(startNode, endNode, source, target, metro, !metro || walk);
+        search.run(startTime, maxTrips);
+        List<DataSegment> path = search.toDataSegments(startTime);
+        listener.onSearch(new SearchStats(ENGINE, true, metro, walk, System.nanoTime() - start, search.settledCount,
+                search.relaxedCount, search.pushCount, search.decreaseKeyCount, search.scheduleLookupCount));
+        return path;
+    }
+
+    /**
+     * Labels of one round: for each node its arrival time and how it was reached.
+     */
+    private static final class Round {
+        final int[] arrival;
+        final byte[] kind;
+        /** Node walked from, or boarding stop of the trip. */
+        final int[] parent;
+        /** Round of the parent label. */
+        final int[] parentRound;
+        final int[] route;
+        final int[] tripDeparture;
+
+        /**
+         * {Main constructor.}
+         *
+         * @param size number of nodes.
+         */
+        Round(int size) {
+            arrival = new int[size];
+            kind = new byte[size];
+            parent = new int[size];
+            parentRound = new int[size];
+            route = new int[size];
+            tripDeparture = new int[size];
+            Arrays.fill(arrival, INFINITY);
+        }
+    }
+
+    /**
+     * State of one query.
+     */
+    private final class Search {
+        private final Node startNode;
+        private final Node endNode;
+        private final int source;
+        private final int target;
+        private final boolean metro;
+        private final boolean walk;
+        private final int size;
+        private final List<Round> rounds = new ArrayList<>();
+        private final int[] best;
+        private final int[] bestRound;
+        private final boolean[] marked;
+        private final IndexedMinHeap heap;
+        /** Nodes linked by walk to a personalized start node, or null. */
+        private final int[] startLinks;
+        /** Nodes linked by walk to a personalized end node, or null. */
+        private final boolean[] linkedToEnd;
+        private int settledCount;
+        private int relaxedCount;
+        private int pushCount;
+        private int decreaseKeyCount;
+        private int scheduleLookupCount;
+
+        /**
+         * {Main constructor.}
+         *
+         * @param startNode node to start from.
+         * @param endNode node to go to.
+         * @param source id of the start node.
+         * @param target id of the end node.
+         * @param metro if (true) trains can be used.
+         * @param walk if (true) walk segments can be used.
+         */
+        Search(Node startNode, Node endNode, int source, int target, boolean metro, boolean walk) {
+            this.startNode = startNode;
+            this.endNode = endNode;
+            this.source = source;
+            this.target = target;
+            this.metro = metro;
+            this.walk = walk;
+            this.size = graph.nodeCount() + 2;
+            this.best = new int[size];
+            this.bestRound = new int[size];
+            this.marked = new boolean[size];
+            this.heap = new IndexedMinHeap(size);
+            Arrays.fill(best, INFINITY);
+            this.startLinks = source == ShortestPathTree.personalizedStartId(graph) ? graph.walkLinks(startNode) : null;
+            if (target == ShortestPathTree.personalizedEndId(graph)) {
+                linkedToEnd = new boolean[size];
+                for (int node : graph.walkLinks(endNode)) {
+                    linkedToEnd[node] = true;
+                }
+                linkedToEnd[source] = true;
+            } else {
+                linkedToEnd = null;
+            }
+        }
+
+        /**
+         * Returns the node with the given id, including personalized start and end nodes.
+         *
+         * @param id node id.
+         * @return the node.
+         */
+        private Node node(int id) {
+            if (id == ShortestPathTree.personalizedStartId(graph)) {
+                return startNode;
+            } else if (id == ShortestPathTree.personalizedEndId(graph)) {
+                return endNode;
+            }
+            return graph.node(id);
+        }
+
+        /**
+         * Run the rounds until no arrival is improved.
+         *
+         * @param startTime departure time.
+         * @param maxTrips maximum number of rounds using trains.
+         */
+        void run(int startTime, int maxTrips) {
+            Round first = new Round(size);
+            rounds.add(first);
+            first.arrival[source] = startTime;
+            first.kind[source] = SOURCE;
+            best[source] = startTime;
+            marked[source] = true;
+            walkFrom(0);
+
+            for (int k = 1; k <= maxTrips && metro; k++) {
+                int[] routeFirstIndex = collectRoutes();
+                if (routeFirstIndex == null) {
+                    break;
+                }
+                int[] roundStart = Arrays.copyOf(best, size);
+                int[] roundStartRound = Arrays.copyOf(bestRound, size);
+                Round round = new Round(size);
+                rounds.add(round);
+                for (int route = 0; route < routeFirstIndex.length; route++) {
+                    if (routeFirstIndex[route] != -1) {
+                        scanRoute(k, round, route, routeFirstIndex[route], roundStart, roundStartRound);
+                    }
+                }
+                walkFrom(k);
+            }
+        }
+
+        /**
+         * Find the routes serving the marked stops and unmark them.
+         *
+         * @return for each route the first index to scan or -1, or null if no stop is marked.
+         */
+        private int[] collectRoutes() {
+            int[] routeFirstIndex = null;
+            for (int p = 0; p < graph.nodeCount(); p++) {
+                if (!marked[p]) {
+                    continue;
+                }
+                marked[p] = false;
+                for (int slot = patterns.firstStopRoute(p); slot < patterns.endStopRoute(p); slot++) {
+                    if (routeFirstIndex == null) {
+                        routeFirstIndex = new int[patterns.routeCount()];
+                        Arrays.fill(routeFirstIndex, -1);
+                    }
+                    int route = patterns.stopRoute(slot);
+                    int index = patterns.stopIndex(slot);
+                    if (routeFirstIndex[route] == -1 || index < routeFirstIndex[route]) {
+                        routeFirstIndex[route] = index;
+                    }
+                }
+            }
+            for (int p = graph.nodeCount(); p < size; p++) {
+                marked[p] = false;
+            }
+            return routeFirstIndex;
+        }
+
+        /**
+         * Ride the earliest catchable trips of a route.
+         *
+         * @param k current round.
+         * @param round labels of the current round.
+         * @param route route to scan.
+         * @param firstIndex index of the first marked stop of the route.
+         * @param roundStart arrivals at the beginning of the round.
+         * @param roundStartRound round of the arrivals at the beginning of the round.
+         */
+        private void scanRoute(int k, Round round, int route, int firstIndex, int[] roundStart, int[] roundStartRound) {
+            int[] stops = patterns.stops(route);
+            int[] offsets = patterns.offsets(route);
+            int[] departures = patterns.departures(route);
+            int trip = -1;
+            int boardStop = -1;
+            int boardRound = -1;
+            for (int i = firstIndex; i < stops.length; i++) {
+                int stop = stops[i];
+                settledCount++;
+                if (trip != -1) {
+                    relaxedCount++;
+                    int arrival = departures[trip] + offsets[i];
+                    if (arrival < best[stop] && arrival < bestAtTarget()) {
+                        round.arrival[stop] = arrival;
+                        round.kind[stop] = TRIP;
+                        round.parent[stop] = boardStop;
+                        round.parentRound[stop] = boardRound;
+                        round.route[stop] = route;
+                        round.tripDeparture[stop] = departures[trip];
+                        best[stop] = arrival;
+                        bestRound[stop] = k;
+                        marked[stop] = true;
+                    }
+                }
+                if (roundStart[stop] != INFINITY && (trip == -1 || roundStart[stop] < departures[trip] + offsets[i])) {
+                    scheduleLookupCount++;
+                    int earliest = patterns.earliestTrip(route, i, roundStart[stop]);
+                    if (earliest != -1 && (trip == -1 || earliest < trip)) {
+                        trip = earliest;
+                        boardStop = stop;
+                        boardRound = roundStartRound[stop];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the best known arrival at the end node, used to prune the search.
+         *
+         * @return the best arrival at the end node.
+         */
+        private int bestAtTarget() { return best[target]; }
+
+        /**
+         * Extend the arrivals improved in the round with walks, a walk can use several walk segments.
+         *
+         * @param k current round.
+         */
+        private void walkFrom(int k) {
+            if (!walk) {
+                return;
+            }
+            Round round = rounds.get(k);
+            for (int p = 0; p < size; p++) {
+                if (marked[p]) {
+                    heap.insert(p, best[p]);
+                    pushCount++;
+                }
+            }
+            int personalizedStart = ShortestPathTree.personalizedStartId(graph);
+            int personalizedEnd = ShortestPathTree.personalizedEndId(graph);
+            while (!heap.isEmpty()) {
+                int current = heap.poll();
+                settledCount++;
+                if (current == personalizedStart) {
+                    for (int next : startLinks) {
+                        relaxWalk(k, round, current, next, virtualWalkDuration(current, next));
+                    }
+                    if (target < graph.nodeCount()) {
+                        relaxWalk(k, round, current, target, virtualWalkDuration(current, target));
+                    }
+                } else if (current < graph.nodeCount()) {
+                    for (int edge = graph.firstWalkEdge(current); edge < graph.endEdge(current); edge++) {
+                        relaxWalk(k, round, current, graph.target(edge), graph.duration(edge));
+                    }
+                }
+                if (linkedToEnd != null && linkedToEnd[current]) {
+                    relaxWalk(k, round, current, personalizedEnd, virtualWalkDuration(current, personalizedEnd));
+                }
+            }
+        }
+
+        /**
+         * Returns the walking time between two nodes, used to link personalized nodes to the graph.
+         *
+         * @param from node the walk starts from.
+         * @param to node the walk goes to.
+         * @return the walking duration.
+         */
+        private int virtualWalkDuration(int from, int to) {
+            return SegmentWalk.durationFor(node(from).distanceTo(node(to)));
+        }
+
+        /**
+         * Walk from a node to another if it improves the arrival at the other node.
+         *
+         * @param k current round.
+         * @param round labels of the current round.
+         * @param current node the walk starts from.
+         * @param next node the walk goes to.
+         * @param duration walking duration.
+         */
+        private void relaxWalk(int k, Round round, int current, int next, int duration) {
+            relaxedCount++;
+            int arrival = best[current] + duration;
+            if (arrival >= best[next] || arrival >= bestAtTarget()) {
+                return;
+            }
+            best[next] = arrival;
+            bestRound[next] = k;
+            marked[next] = true;
+            round.arrival[next] = arrival;
+            round.kind[next] = WALK;
+            round.parent[next] = current;
+            round.parentRound[next] = k;
+            if (heap.contains(next)) {
+                heap.decreaseKey(next, arrival);
+                decreaseKeyCount++;
+            } else {
+                heap.insert(next, arrival);
+                pushCount++;
+            }
+        }
+
+        /**
+         * Returns the segments of the path from the start node to the end node, one segment by station.
+         *
+         * @param startTime departure time.
+         * @return the data segments of the path, empty if the end node has not been reached.
+         */
+        List<DataSegment> toDataSegments(int startTime) {
+            LinkedList<DataSegment> segments = new LinkedList<>();
+            if (best[target] == INFINITY) {
+                return segments;
+            }
+            int current = target;
+            int k = bestRound[target];
+            double departureTime = startTime;
+            while (rounds.get(k).kind[current] != SOURCE) {
+                Round round = rounds.get(k);
+                if (round.kind[current] == WALK) {
+                    segments.addFirst(new DataSegment(node(round.parent[current]), node(current), round.arrival[current],
+                            departureTime, null, 0));
+                    departureTime = round.arrival[current];
+                } else {
+                    int route = round.route[current];
+                    int[] stops = patterns.stops(route);
+                    MetroLine line = patterns.line(route);
+                    for (int i = patterns.indexOf(route, current); stops[i] != round.parent[current]; i--) {
+                        double arrivalTime = round.tripDeparture[current] + patterns.offsets(route)[i];
+                        segments.addFirst(new DataSegment(node(stops[i - 1]), node(stops[i]), arrivalTime, departureTime, line, 0));
+                        departureTime = arrivalTime;
+                    }
+                }
+                int parent = round.parent[current];
+                k = round.parentRound[current];
+                current = parent;
+            }
+            return segments;
+        }
+    }
+}
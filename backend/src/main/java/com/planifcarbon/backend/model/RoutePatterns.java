@@ -0,0 +1,238 @@
+package com.planifcarbon.backend.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@summary Stop patterns of the metro lines of a {@link GraphSnapshot}, shared by the timetable engines.}
+ * Each metro line variant is a route: its stops in order from the terminus, the offset of each stop from the terminus
+ * departure and the sorted terminus departures.
+ */
+final class RoutePatterns {
+    private final GraphSnapshot graph;
+    /** Stops of each route, in the order served by the trains. */
+    private final int[][] routeStops;
+    /** Time to reach each stop of each route from its terminus. */
+    private final int[][] routeOffsets;
+    /** Sorted departure times from the terminus of each route. */
+    private final int[][] routeDepartures;
+    /** Line id in the snapshot of each route. */
+    private final int[] routeLines;
+    /** Routes serving each stop are [stopRoutesOffsets[p], stopRoutesOffsets[p + 1]) of stopRoutes and stopIndexes. */
+    private final int[] stopRoutesOffsets;
+    private final int[] stopRoutes;
+    private final int[] stopIndexes;
+
+    /**
+     * {Main constructor.}
+     * Build the routes by following the metro edges of each line from its terminus station, the offsets are the ones
+     * stored in the station schedules.
+     *
+     * @param graph snapshot of the graph, its node ids are used as stop ids.
+     * @param metroLines metro lines of the network.
+     */
+    RoutePatterns(GraphSnapshot graph, Collection<MetroLine> metroLines) {
+        this.graph = graph;
+        Map<MetroLine, Integer> lineIds = new HashMap<>();
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            for (int edge = graph.firstEdge(u); edge < graph.firstWalkEdge(u); edge++) {
+                MetroLine line = graph.line(graph.lineId(edge));
+                if (line != null) {
+                    lineIds.putIfAbsent(line, graph.lineId(edge));
+                }
+            }
+        }
+        List<int[]> stops = new ArrayList<>();
+        List<int[]> offsets = new ArrayList<>();
+        List<int[]> departures = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        for (MetroLine line : metroLines) {
+            Integer lineId = lineIds.get(line);
+            if (lineId == null || line.getTerminusStation() == null) {
+                continue;
+            }
+            int[] pattern = stopPattern(graph.indexOf(line.getTerminusStation()), lineId);
+            ScheduleKey key = new ScheduleKey(line.getTerminusStation(), line);
+            int[] patternOffsets = new int[pattern.length];
+            for (int i = 0; i < pattern.length; i++) {
+                patternOffsets[i] = ((Station) graph.node(pattern[i])).getScheduleForKey(key);
+            }
+            stops.add(pattern);
+            offsets.add(patternOffsets);
+            departures.add(line.getSchedules().stream().mapToInt(Integer::intValue).sorted().toArray());
+            lines.add(lineId);
+        }
+        this.routeStops = stops.toArray(new int[0][]);
+        this.routeOffsets = offsets.toArray(new int[0][]);
+        this.routeDepartures = departures.toArray(new int[0][]);
+        this.routeLines = lines.stream().mapToInt(Integer::intValue).toArray();
+
+        this.stopRoutesOffsets = new int[graph.nodeCount() + 1];
+        for (int[] pattern : routeStops) {
+            for (int stop : pattern) {
+                stopRoutesOffsets[stop + 1]++;
+            }
+        }
+        for (int p = 0; p < graph.nodeCount(); p++) {
+            stopRoutesOffsets[p + 1] += stopRoutesOffsets[p];
+        }
+        this.stopRoutes = new int[stopRoutesOffsets[graph.nodeCount()]];
+        this.stopIndexes = new int[stopRoutes.length];
+        int[] fill = Arrays.copyOf(stopRoutesOffsets, graph.nodeCount());
+        for (int route = 0; route < routeStops.length; route++) {
+            for (int i = 0; i < routeStops[route].length; i++) {
+                int slot = fill[routeStops[route][i]]++;
+                stopRoutes[slot] = route;
+                stopIndexes[slot] = i;
+            }
+        }
+    }
+
+    /**
+     * Follow the metro edges of a line from its terminus.
+     *
+     * @param terminus id of the terminus station.
+     * @param lineId line id in the snapshot.
+     * @return the ids of the stations served by the line, in order.
+     */
+    private int[] stopPattern(int terminus, int lineId) {
+        List<Integer> pattern = new ArrayList<>();
+        boolean[] seen = new boolean[graph.nodeCount()];
+        int current = terminus;
+        while (current != -1 && !seen[current]) {
+            seen[current] = true;
+            pattern.add(current);
+            int next = -1;
+            for (int edge = graph.firstEdge(current); edge < graph.firstWalkEdge(current); edge++) {
+                if (graph.lineId(edge) == lineId) {
+                    next = graph.target(edge);
+                    break;
+                }
+            }
+            current = next;
+        }
+        return pattern.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the snapshot the routes are built on.
+     *
+     * @return the graph snapshot.
+     */
+    GraphSnapshot graph() { return graph; }
+
+    /**
+     * Returns the number of routes.
+     *
+     * @return the number of routes.
+     */
+    int routeCount() { return routeStops.length; }
+
+    /**
+     * Returns the stops of a route.
+     *
+     * @param route route id.
+     * @return the stop ids of the route, in order.
+     */
+    int[] stops(int route) { return routeStops[route]; }
+
+    /**
+     * Returns the offsets of the stops of a route.
+     *
+     * @param route route id.
+     * @return the time to reach each stop of the route from its terminus.
+     */
+    int[] offsets(int route) { return routeOffsets[route]; }
+
+    /**
+     * Returns the terminus departures of a route.
+     *
+     * @param route route id.
+     * @return the sorted departure times from the terminus.
+     */
+    int[] departures(int route) { return routeDepartures[route]; }
+
+    /**
+     * Returns the metro line of a route.
+     *
+     * @param route route id.
+     * @return the metro line of the route.
+     */
+    MetroLine line(int route) { return graph.line(routeLines[route]); }
+
+    /**
+     * Returns the first slot of the routes serving a stop.
+     *
+     * @param stop stop id.
+     * @return the first slot of the routes serving the stop.
+     */
+    int firstStopRoute(int stop) { return stopRoutesOffsets[stop]; }
+
+    /**
+     * Returns the end (exclusive) of the slots of the routes serving a stop.
+     *
+     * @param stop stop id.
+     * @return the end of the slots of the routes serving the stop.
+     */
+    int endStopRoute(int stop) { return stopRoutesOffsets[stop + 1]; }
+
+    /**
+     * Returns the route of a slot.
+     *
+     * @param slot slot of a route serving a stop.
+     * @return the route id.
+     */
+    int stopRoute(int slot) { return stopRoutes[slot]; }
+
+    /**
+     * Returns the index of the stop in the route of a slot.
+     *
+     * @param slot slot of a route serving a stop.
+     * @return the index of the stop in the route.
+     */
+    int stopIndex(int slot) { return stopIndexes[slot]; }
+
+    /**
+     * Returns the index of a stop in a route, searching from the end of the route.
+     *
+     * @param route route id.
+     * @param stop stop id.
+     * @return the index of the stop in the route, or -1 if the route does not serve it.
+     */
+    int indexOf(int route, int stop) {
+        int[] stops = routeStops[route];
+        int i = stops.length - 1;
+        while (i >= 0 && stops[i] != stop) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the first trip of a route which is at the given stop at or after the given time.
+     *
+     * @param route route id.
+     * @param index index of the stop in the route.
+     * @param time earliest time at the stop.
+     * @return the index of the trip in the route departures, or -1 if there is none.
+     */
+    int earliestTrip(int route, int index, int time) {
+        int[] departures = routeDepartures[route];
+        int wanted = time - routeOffsets[route][index];
+        int low = 0;
+        int high = departures.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[middle] < wanted) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < departures.length ? low : -1;
+    }
+}
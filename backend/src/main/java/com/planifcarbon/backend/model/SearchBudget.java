@@ -0,0 +1,82 @@
+package com.planifcarbon.backend.model;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * {@summary Time budget of one search.}
+ * The search checks its budget every {@link #CHECK_INTERVAL} nodes taken from its heap, and stops once the deadline
+ * has passed: the budget is then exhausted and the weights of the search are not final. A budget belongs to one query,
+ * it is not shared between threads.
+ */
+public final class SearchBudget {
+    /** Number of nodes settled between two reads of the clock. */
+    static final int CHECK_INTERVAL = 256;
+
+    private final boolean limited;
+    private final long deadline;
+    private final LongSupplier clock;
+    private int checks;
+    private boolean exhausted;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param timeout time left to the search in nanoseconds, or a negative value for no limit.
+     * @param clock current time in nanoseconds.
+     */
+    SearchBudget(long timeout, LongSupplier clock) {
+        this.limited = timeout >= 0;
+        this.clock = clock;
+        this.deadline = this.limited ? clock.getAsLong() + timeout : 0;
+    }
+
+    /**
+     * Returns a budget which is never exhausted.
+     *
+     * @return a budget without deadline.
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(-1, System::nanoTime);
+    }
+
+    /**
+     * Returns a budget which is exhausted after the given time, starting now.
+     *
+     * @param timeout time given to the search, zero or negative for no limit.
+     * @return a budget with a deadline.
+     */
+    public static SearchBudget of(Duration timeout) {
+        return timeout.isZero() || timeout.isNegative() ? unlimited() : new SearchBudget(timeout.toNanos(), System::nanoTime);
+    }
+
+    /**
+     * Count a node taken from the heap, the clock is read for the first one and then every {@link #CHECK_INTERVAL}.
+     *
+     * @return true if the search has to stop.
+     */
+    boolean tick() {
+        if (limited && !exhausted && checks++ % CHECK_INTERVAL == 0) {
+            exhausted = clock.getAsLong() - deadline >= 0;
+        }
+        return exhausted;
+    }
+
+    /**
+     * Returns the time left before the deadline, read from the clock.
+     *
+     * @return the time left in nanoseconds, 0 once the deadline has passed, {@link Long#MAX_VALUE} if there is no limit.
+     */
+    public long remainingNanos() {
+        return limited ? Math.max(0, deadline - clock.getAsLong()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if a search stopped because the deadline passed.
+     *
+     * @return true if the budget is exhausted.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,235 @@
+package com.planifcarbon.backend.model;
+
+import java.util.Arrays;
+
+/**
+ * {@summary Reusable state of the searches on a {@link GraphSnapshot}, used by one search at a time.}
+ * Labels are stamped with the epoch of the search which wrote them, a label with an older stamp reads as unset, so
+ * starting a new search only increments the epoch and empties the heap instead of allocating and filling new arrays.
+ */
+final class SearchContext {
+    private final double[] weights;
+    private final int[] parents;
+    private final int[] parentLines;
+    private final double[] bounds;
+    /** Epoch of the search which last set the weight, the parent and the line of each node. */
+    private final int[] reached;
+    /** Epoch of the search which last settled each node. */
+    private final int[] settled;
+    /** Epoch of the search which last linked each node to a personalized end node. */
+    private final int[] linked;
+    private final IndexedMinHeap heap;
+    private int epoch;
+    private boolean useBounds;
+    private int settledCount;
+    private int relaxedCount;
+    private int pushCount;
+    private int decreaseKeyCount;
+    private int scheduleLookupCount;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param size number of node ids.
+     */
+    SearchContext(int size) {
+        this.weights = new double[size];
+        this.parents = new int[size];
+        this.parentLines = new int[size];
+        this.bounds = new double[size];
+        this.reached = new int[size];
+        this.settled = new int[size];
+        this.linked = new int[size];
+        this.heap = new IndexedMinHeap(size);
+    }
+
+    /**
+     * Start a new search, every label of the previous one is dropped.
+     *
+     * @return the epoch of the new search.
+     */
+    int begin() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            Arrays.fill(linked, 0);
+            epoch = 0;
+        }
+        epoch++;
+        heap.clear();
+        useBounds = false;
+        settledCount = 0;
+        relaxedCount = 0;
+        pushCount = 0;
+        decreaseKeyCount = 0;
+        scheduleLookupCount = 0;
+        return epoch;
+    }
+
+    /**
+     * Returns the epoch of the current search.
+     *
+     * @return the current epoch.
+     */
+    int epoch() { return epoch; }
+
+    /**
+     * Returns the number of node ids.
+     *
+     * @return the number of node ids.
+     */
+    int size() { return weights.length; }
+
+    /**
+     * Returns the heap of the current search.
+     *
+     * @return the heap, empty when the search begins.
+     */
+    IndexedMinHeap heap() { return heap; }
+
+    /**
+     * Returns the weight of a node.
+     *
+     * @param id node id.
+     * @return the weight of the node, or infinity if it has not been reached.
+     */
+    double weight(int id) { return reached[id] == epoch ? weights[id] : Double.POSITIVE_INFINITY; }
+
+    /**
+     * Returns the parent of a node.
+     *
+     * @param id node id.
+     * @return the parent of the node, or {@link ShortestPathTree#NO_PARENT}.
+     */
+    int parent(int id) { return reached[id] == epoch ? parents[id] : ShortestPathTree.NO_PARENT; }
+
+    /**
+     * Returns the line used to reach a node.
+     *
+     * @param id node id.
+     * @return the line id, or {@link GraphSnapshot#NO_LINE}.
+     */
+    int parentLine(int id) { return reached[id] == epoch ? parentLines[id] : GraphSnapshot.NO_LINE; }
+
+    /**
+     * Set the weight, the parent and the line of a node.
+     *
+     * @param id node id.
+     * @param weight weight of the node.
+     * @param parent parent of the node.
+     * @param lineId line used to reach the node.
+     */
+    void label(int id, double weight, int parent, int lineId) {
+        reached[id] = epoch;
+        weights[id] = weight;
+        parents[id] = parent;
+        parentLines[id] = lineId;
+    }
+
+    /**
+     * Returns true if the node has been settled.
+     *
+     * @param id node id.
+     * @return true if the node has been settled.
+     */
+    boolean isSettled(int id) { return settled[id] == epoch; }
+
+    /**
+     * Settle a node.
+     *
+     * @param id node id.
+     */
+    void settle(int id) {
+        settled[id] = epoch;
+        settledCount++;
+    }
+
+    /**
+     * Returns the number of nodes settled by the current search.
+     *
+     * @return the number of nodes settled.
+     */
+    int settledCount() { return settledCount; }
+
+    /**
+     * Insert a node in the heap of the current search.
+     *
+     * @param id node id.
+     * @param key key of the node.
+     */
+    void push(int id, double key) {
+        heap.insert(id, key);
+        pushCount++;
+    }
+
+    /**
+     * Decrease the key of a node in the heap of the current search.
+     *
+     * @param id node id.
+     * @param key new key of the node.
+     */
+    void decreaseKey(int id, double key) {
+        heap.decreaseKey(id, key);
+        decreaseKeyCount++;
+    }
+
+    /**
+     * Count a segment relaxed by the current search.
+     */
+    void countRelaxed() { relaxedCount++; }
+
+    /**
+     * Count a lookup of the next train in a schedule by the current search.
+     */
+    void countScheduleLookup() { scheduleLookupCount++; }
+
+    /**
+     * Returns the counters of the current search.
+     *
+     * @param engine name of the engine.
+     * @param bestTimePath if true the weight is a time else it is a distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param nanos wall time of the search in nanoseconds.
+     * @return the statistics of the search.
+     */
+    SearchStats stats(String engine, boolean bestTimePath, boolean metro, boolean walk, long nanos) {
+        return new SearchStats(engine, bestTimePath, metro, walk, nanos, settledCount, relaxedCount, pushCount,
+                decreaseKeyCount, scheduleLookupCount);
+    }
+
+    /**
+     * Set the lower bound of the weight left to the end node, bounds are used once one is set.
+     * The bound of every node has to be set then.
+     *
+     * @param id node id.
+     * @param bound lower bound.
+     */
+    void bound(int id, double bound) {
+        useBounds = true;
+        bounds[id] = bound;
+    }
+
+    /**
+     * Returns the lower bound of the weight left to the end node.
+     *
+     * @param id node id.
+     * @return the lower bound, 0 if no bound is used.
+     */
+    double bound(int id) { return useBounds ? bounds[id] : 0; }
+
+    /**
+     * Link a node by walk to a personalized end node.
+     *
+     * @param id node id.
+     */
+    void link(int id) { linked[id] = epoch; }
+
+    /**
+     * Returns true if the node is linked by walk to a personalized end node.
+     *
+     * @param id node id.
+     * @return true if the node is linked.
+     */
+    boolean isLinked(int id) { return linked[id] == epoch; }
+}
@@ -0,0 +1,17 @@
+package com.planifcarbon.backend.model;
+
+/**
+ * Listener of the searches run by a {@link MetroMap}, it is called on the thread of each search once it is done.
+ */
+@FunctionalInterface
+public interface SearchListener {
+    /** Listener which ignores the searches. */
+    SearchListener NONE = stats -> { };
+
+    /**
+     * Called after each search.
+     *
+     * @param stats cost of the search.
+     */
+    void onSearch(SearchStats stats);
+}
@@ -0,0 +1,39 @@
+package com.planifcarbon.backend.model;
+
+/**
+ * {@summary Cost of one search, given to the {@link SearchListener} of the {@link MetroMap}.}
+ * The timetable engines have no graph search, their counters measure the nearest work: RAPTOR counts the stops visited
+ * by its route scans as settled nodes, CSA counts its scanned connections and only uses a heap to chain bounded
+ * footpaths.
+ *
+ * @param engine DIJKSTRA, ASTAR, RAPTOR or CSA.
+ * @param bestTimePath if true the weight is a time else it is a distance.
+ * @param metro if metro segments were allowed.
+ * @param walk if walk segments were allowed.
+ * @param nanos wall time of the search in nanoseconds.
+ * @param settled number of nodes settled.
+ * @param relaxed number of segments relaxed.
+ * @param pushes number of nodes inserted in the heap.
+ * @param decreaseKeys number of keys decreased in the heap.
+ * @param scheduleLookups number of lookups of the next train in a schedule.
+ */
+public record SearchStats(String engine, boolean bestTimePath, boolean metro, boolean walk, long nanos, int settled,
+                          int relaxed, int pushes, int decreaseKeys, int scheduleLookups) {
+    /**
+     * Returns the method of the search.
+     *
+     * @return TIME or DISTANCE.
+     */
+    public String method() {
+        return bestTimePath ? "TIME" : "DISTANCE";
+    }
+
+    /**
+     * Returns the transportation of the search, a search without metro walks.
+     *
+     * @return METRO, METRO_FOOT or FOOT.
+     */
+    public String transportation() {
+        return metro ? (walk ? "METRO_FOOT" : "METRO") : "FOOT";
+    }
+}
@@ -27,7 +27,7 @@ public final class SegmentWalk extends Segment {
      * @param node2    second point of walking segment
      * @param distance distance between two points
      */
-    public SegmentWalk(Node node1, Node node2, double distance) { super(node1, node2, distance, (int) (distance * HTOS / SPEED)); }
+    public SegmentWalk(Node node1, Node node2, double distance) { super(node1, node2, distance, durationFor(distance)); }
 
     /**
      * {Main constructor.}
@@ -39,6 +39,14 @@ public final class SegmentWalk extends Segment {
      */
     public SegmentWalk(Node node1, Node node2) { this(node1, node2, node1.distanceTo(node2)); }
 
+    /**
+     * Calculate the time needed to walk a distance at the average walking speed.
+     *
+     * @param distance distance to walk in km
+     * @return walking duration in seconds
+     */
+    static int durationFor(double distance) { return (int) (distance * HTOS / SPEED); }
+
     /**
      * Function for tests only.
      *
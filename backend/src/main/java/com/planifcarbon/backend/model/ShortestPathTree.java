@@ -0,0 +1,219 @@
+package com.planifcarbon.backend.model;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@summary Result of a search on a {@link GraphSnapshot}.}
+ * Weights, parents and lines are read from the {@link SearchContext} the search took from the pool of the snapshot,
+ * indexed by the node ids of the snapshot. Two extra ids follow the snapshot nodes: one for a personalized start node
+ * and one for a personalized end node. Once the tree is read it is released, its context goes back to the pool and can
+ * be reused by any search, the tree cannot be read anymore then.
+ */
+final class ShortestPathTree {
+    /** Parent of the nodes which have not been reached or of the source. */
+    static final int NO_PARENT = -1;
+
+    private final GraphSnapshot graph;
+    private final Node startNode;
+    private final Node endNode;
+    private final int source;
+    private final int target;
+    private final SearchContext context;
+    /** Epoch of the search in the context. */
+    private final int epoch;
+    private boolean released;
+
+    /**
+     * {Main constructor.}
+     * The tree reads the current search of the context, which has to be begun.
+     *
+     * @param graph snapshot the search runs on.
+     * @param context context of the search.
+     * @param startNode node the search starts from.
+     * @param endNode node the search is going to, can be null.
+     * @param source id of the start node.
+     * @param target id of the end node, or -1 if it is not in the graph.
+     */
+    ShortestPathTree(GraphSnapshot graph, SearchContext context, Node startNode, Node endNode, int source, int target) {
+        this.graph = graph;
+        this.context = context;
+        this.epoch = context.epoch();
+        this.startNode = startNode;
+        this.endNode = endNode;
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Returns the id given to a personalized start node.
+     *
+     * @param graph snapshot the search runs on.
+     * @return the id of a personalized start node.
+     */
+    static int personalizedStartId(GraphSnapshot graph) { return graph.nodeCount(); }
+
+    /**
+     * Returns the id given to a personalized end node.
+     *
+     * @param graph snapshot the search runs on.
+     * @return the id of a personalized end node.
+     */
+    static int personalizedEndId(GraphSnapshot graph) { return graph.nodeCount() + 1; }
+
+    /**
+     * Returns the snapshot the search ran on.
+     *
+     * @return the snapshot of the search.
+     */
+    GraphSnapshot graph() { return graph; }
+
+    /**
+     * Give the context of the search back to the pool of the snapshot, once the tree has been read.
+     * Releasing a tree twice has no effect.
+     */
+    void release() {
+        if (!released) {
+            released = true;
+            graph.releaseSearchContext(context);
+        }
+    }
+
+    /**
+     * Returns the id of the start node.
+     *
+     * @return the id of the start node.
+     */
+    int source() { return source; }
+
+    /**
+     * Returns the id of the end node.
+     *
+     * @return the id of the end node, or -1 if there is none.
+     */
+    int target() { return target; }
+
+    /**
+     * Returns the number of nodes settled by the search, the start and end nodes included.
+     *
+     * @return the number of nodes settled.
+     */
+    int settledCount() { return checkedContext().settledCount(); }
+
+    /**
+     * Returns the counters of the search.
+     *
+     * @param engine name of the engine.
+     * @param bestTimePath if true the weight is a time else it is a distance.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param nanos wall time of the search in nanoseconds.
+     * @return the statistics of the search.
+     */
+    SearchStats stats(String engine, boolean bestTimePath, boolean metro, boolean walk, long nanos) {
+        return checkedContext().stats(engine, bestTimePath, metro, walk, nanos);
+    }
+
+    /**
+     * Returns the context of the search, if it has not been reused by another search.
+     *
+     * @return the context of the search.
+     * @throws IllegalStateException if another search has used the context since.
+     */
+    private SearchContext checkedContext() {
+        if (context.epoch() != epoch) {
+            throw new IllegalStateException("the search context has been reused by another search");
+        }
+        return context;
+    }
+
+    /**
+     * Returns the weight of a node.
+     *
+     * @param id node id.
+     * @return the weight of the node, or infinity if it has not been reached.
+     */
+    double weight(int id) { return checkedContext().weight(id); }
+
+    /**
+     * Returns the parent of a node.
+     *
+     * @param id node id.
+     * @return the parent of the node, or {@link #NO_PARENT}.
+     */
+    int parent(int id) { return checkedContext().parent(id); }
+
+    /**
+     * Returns the node with the given id, including personalized start and end nodes.
+     *
+     * @param id node id.
+     * @return the node.
+     */
+    Node node(int id) {
+        if (id == personalizedStartId(graph)) {
+            return startNode;
+        } else if (id == personalizedEndId(graph)) {
+            return endNode;
+        }
+        return graph.node(id);
+    }
+
+    /**
+     * Returns true if the search found a path to the node.
+     *
+     * @param id node id.
+     * @return true if the node has been reached.
+     */
+    boolean isReached(int id) { return id >= 0 && weight(id) != Double.POSITIVE_INFINITY; }
+
+    /**
+     * Returns the map of nodes reached, with for each node its parent, its weight and the line used to reach it.
+     * The start node is its own parent.
+     *
+     * @return the map of nodes reached.
+     */
+    Map<Node, SearchResultBestWeight> toMap() {
+        SearchContext context = checkedContext();
+        Map<Node, SearchResultBestWeight> path = new HashMap<>();
+        for (int id = 0; id < context.size(); id++) {
+            double weight = context.weight(id);
+            if (weight == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (id == source) {
+                path.put(startNode, new SearchResultBestWeight(startNode, weight, null));
+            } else {
+                path.put(node(id), new SearchResultBestWeight(node(context.parent(id)), weight,
+                        graph.line(context.parentLine(id))));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns the segments of the path from the start node to the end node.
+     *
+     * @param startWeight the start time / distance.
+     * @return the data segments of the path, empty if the end node has not been reached.
+     */
+    List<DataSegment> toDataSegments(double startWeight) {
+        LinkedList<DataSegment> segments = new LinkedList<>();
+        if (!isReached(target)) {
+            return segments;
+        }
+        SearchContext context = checkedContext();
+        int current = target;
+        double departureTime = startWeight;
+        while (current != source) {
+            int next = context.parent(current);
+            double arrivalTime = context.weight(current);
+            segments.addFirst(new DataSegment(node(next), node(current), arrivalTime, departureTime,
+                    graph.line(context.parentLine(current)), 0));
+            departureTime = arrivalTime;
+            current = next;
+        }
+        return segments;
+    }
+}
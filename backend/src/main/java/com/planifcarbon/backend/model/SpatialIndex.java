@@ -0,0 +1,267 @@
+package com.planifcarbon.backend.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@summary Static k-d tree over the coordinates of a list of nodes.}
+ * Each node is a point of the unit sphere, so the straight (chord) distance between two points grows with their
+ * great-circle distance: the nearest points for the chord distance are the nearest ones for {@link Node#distanceTo}.
+ * Queries return the indexes of the nodes in the list given to the constructor, nearest first.
+ */
+final class SpatialIndex {
+    private final List<? extends Node> nodes;
+    /** Unit vector of each node, by index in the list. */
+    private final double[][] vectors;
+    /** Indexes of the nodes, the median of a range splits it along the axis given by its depth. */
+    private final int[] tree;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param nodes nodes to index.
+     */
+    SpatialIndex(List<? extends Node> nodes) {
+        this.nodes = nodes;
+        this.vectors = new double[3][nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            double[] vector = toVector(nodes.get(i));
+            for (int axis = 0; axis < 3; axis++) {
+                vectors[axis][i] = vector[axis];
+            }
+        }
+        this.tree = new int[nodes.size()];
+        for (int i = 0; i < tree.length; i++) {
+            tree[i] = i;
+        }
+        build(0, tree.length, 0);
+    }
+
+    /**
+     * Returns the point of the unit sphere of a node.
+     *
+     * @param node node to convert.
+     * @return the unit vector of the node.
+     */
+    private static double[] toVector(Node node) {
+        double latitude = Math.toRadians(node.getCoordinates().getLatitude());
+        double longitude = Math.toRadians(node.getCoordinates().getLongitude());
+        return new double[] {Math.cos(latitude) * Math.cos(longitude), Math.cos(latitude) * Math.sin(longitude),
+                Math.sin(latitude)};
+    }
+
+    /**
+     * Sort a range of the tree so that its median splits it along the axis of its depth, then build both halves.
+     *
+     * @param low first position of the range.
+     * @param high end (exclusive) of the range.
+     * @param depth depth of the range in the tree.
+     */
+    private void build(int low, int high, int depth) {
+        if (high - low <= 1) {
+            return;
+        }
+        double[] coordinate = vectors[depth % 3];
+        Integer[] range = new Integer[high - low];
+        for (int i = low; i < high; i++) {
+            range[i - low] = tree[i];
+        }
+        Arrays.sort(range, Comparator.comparingDouble(i -> coordinate[i]));
+        for (int i = low; i < high; i++) {
+            tree[i] = range[i - low];
+        }
+        int middle = (low + high) >>> 1;
+        build(low, middle, depth + 1);
+        build(middle + 1, high, depth + 1);
+    }
+
+    /**
+     * Returns the number of indexed nodes.
+     *
+     * @return the number of nodes.
+     */
+    int size() { return tree.length; }
+
+    /**
+     * Returns the indexes of the nodes within a radius of a point, or the k nearest ones if there are fewer of them.
+     *
+     * @param point point to search around.
+     * @param count minimal number of nodes to return, if there are enough nodes.
+     * @param radius radius in km.
+     * @return the indexes of the nodes found, nearest first.
+     */
+    int[] near(Node point, int count, double radius) {
+        int[] inRadius = withinRadius(point, radius);
+        return inRadius.length >= count ? inRadius : nearest(point, count);
+    }
+
+    /**
+     * Returns the indexes of the k nearest nodes of a point.
+     *
+     * @param point point to search around.
+     * @param count number of nodes to return.
+     * @return the indexes of the nearest nodes, nearest first.
+     */
+    int[] nearest(Node point, int count) {
+        int k = Math.min(count, tree.length);
+        Nearest nearest = new Nearest(toVector(point), k);
+        if (k > 0) {
+            nearest.visit(0, tree.length, 0);
+        }
+        return sortByDistance(point, Arrays.copyOf(nearest.found, nearest.size));
+    }
+
+    /**
+     * Returns the indexes of the nodes within a radius of a point.
+     *
+     * @param point point to search around.
+     * @param radius radius in km.
+     * @return the indexes of the nodes found, nearest first.
+     */
+    int[] withinRadius(Node point, double radius) {
+        if (radius < 0) {
+            return new int[0];
+        }
+        double angle = Math.min(radius / Coordinates.EARTH_RADIUS, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        List<Integer> found = new ArrayList<>();
+        // The chord bound is slightly widened against rounding errors, the exact distance decides.
+        collect(toVector(point), chord * chord * (1 + 1e-9) + 1e-15, 0, tree.length, 0, found);
+        return sortByDistance(point, found.stream().filter(i -> point.distanceTo(nodes.get(i)) <= radius)
+                .mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Add the nodes of a range of the tree which are in a ball.
+     *
+     * @param center center of the ball.
+     * @param squaredChord squared radius of the ball.
+     * @param low first position of the range.
+     * @param high end (exclusive) of the range.
+     * @param depth depth of the range in the tree.
+     * @param found list of the nodes found.
+     */
+    private void collect(double[] center, double squaredChord, int low, int high, int depth, List<Integer> found) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        int node = tree[middle];
+        if (squaredDistance(center, node) <= squaredChord) {
+            found.add(node);
+        }
+        double difference = center[depth % 3] - vectors[depth % 3][node];
+        if (difference <= 0 || difference * difference <= squaredChord) {
+            collect(center, squaredChord, low, middle, depth + 1, found);
+        }
+        if (difference >= 0 || difference * difference <= squaredChord) {
+            collect(center, squaredChord, middle + 1, high, depth + 1, found);
+        }
+    }
+
+    /**
+     * Returns the squared chord distance between a point and a node.
+     *
+     * @param point unit vector of the point.
+     * @param node index of the node.
+     * @return the squared chord distance.
+     */
+    private double squaredDistance(double[] point, int node) {
+        double dx = point[0] - vectors[0][node];
+        double dy = point[1] - vectors[1][node];
+        double dz = point[2] - vectors[2][node];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Sort indexes of nodes by their distance to a point, ties by index.
+     *
+     * @param point point to measure from.
+     * @param indexes indexes of nodes.
+     * @return the sorted indexes.
+     */
+    private int[] sortByDistance(Node point, int[] indexes) {
+        return Arrays.stream(indexes).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> point.distanceTo(nodes.get(i))).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Bounded search of the nearest nodes of a point.
+     */
+    private final class Nearest {
+        private final double[] point;
+        private final int[] found;
+        private final double[] distances;
+        private int size;
+
+        /**
+         * {Main constructor.}
+         *
+         * @param point unit vector of the point.
+         * @param count number of nodes to find.
+         */
+        Nearest(double[] point, int count) {
+            this.point = point;
+            this.found = new int[count];
+            this.distances = new double[count];
+        }
+
+        /**
+         * Returns the squared chord distance of the farthest node kept, or infinity while fewer nodes are kept.
+         *
+         * @return the distance a node has to beat to be kept.
+         */
+        private double worst() { return size < found.length ? Double.POSITIVE_INFINITY : distances[size - 1]; }
+
+        /**
+         * Visit a range of the tree, nearest half first.
+         *
+         * @param low first position of the range.
+         * @param high end (exclusive) of the range.
+         * @param depth depth of the range in the tree.
+         */
+        void visit(int low, int high, int depth) {
+            if (low >= high) {
+                return;
+            }
+            int middle = (low + high) >>> 1;
+            int node = tree[middle];
+            keep(node, squaredDistance(point, node));
+            double difference = point[depth % 3] - vectors[depth % 3][node];
+            if (difference <= 0) {
+                visit(low, middle, depth + 1);
+                if (difference * difference <= worst()) {
+                    visit(middle + 1, high, depth + 1);
+                }
+            } else {
+                visit(middle + 1, high, depth + 1);
+                if (difference * difference <= worst()) {
+                    visit(low, middle, depth + 1);
+                }
+            }
+        }
+
+        /**
+         * Keep a node if it is nearer than the farthest node kept, found and distances stay sorted.
+         *
+         * @param node index of the node.
+         * @param distance squared chord distance of the node.
+         */
+        private void keep(int node, double distance) {
+            if (distance >= worst()) {
+                return;
+            }
+            int i = size < found.length ? size++ : size - 1;
+            while (i > 0 && distances[i - 1] > distance) {
+                found[i] = found[i - 1];
+                distances[i] = distances[i - 1];
+                i--;
+            }
+            found[i] = node;
+            distances[i] = distance;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.planifcarbon.backend.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * {@summary Streaming reader of the fields of a CSV file held in a {@link ByteBuffer}.}
+ * Files on disk are memory-mapped, resources packed in a jar are read in a heap buffer. Fields are read in place, one
+ * after the other: numbers and times are parsed from the bytes without intermediate strings, and the strings which
+ * repeat, like station and line names, are decoded once and then shared.
+ */
+final class CsvReader {
+    /** Powers of ten exactly represented by a double. */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /** Greatest mantissa exactly represented by a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    /** Open addressing table of the decoded strings, keyed by their bytes. */
+    private byte[][] cacheKeys = new byte[256][];
+    private String[] cacheValues = new String[256];
+    private int cacheSize;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param buffer content of the file, read from its position to its limit.
+     */
+    CsvReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Open a CSV file, a resource of the classpath or else a path of the file system.
+     *
+     * @param filePath the path of the CSV file.
+     * @return the reader of the file.
+     * @throws NullPointerException if the file is neither a resource nor a file.
+     * @throws IOException thrown when an error occurred when opening file.
+     */
+    static CsvReader open(String filePath) throws IOException {
+        URL resource = Parser.class.getClassLoader().getResource(filePath);
+        if (resource != null) {
+            if ("file".equals(resource.getProtocol())) {
+                try {
+                    return new CsvReader(map(Path.of(resource.toURI())));
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+            }
+            try (InputStream ins = resource.openStream()) {
+                return new CsvReader(ByteBuffer.wrap(ins.readAllBytes()));
+            }
+        }
+        if (Files.isRegularFile(Path.of(filePath))) {
+            return new CsvReader(map(Path.of(filePath)));
+        }
+        throw new NullPointerException("no resource or file " + filePath);
+    }
+
+    /**
+     * Map a file in memory.
+     *
+     * @param file the file.
+     * @return the content of the file.
+     * @throws IOException thrown when an error occurred when opening file.
+     */
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Add the bytes left to a checksum, the position of the reader does not change.
+     *
+     * @param checksum the checksum to update.
+     */
+    void updateChecksum(Checksum checksum) {
+        checksum.update(buffer.duplicate().limit(limit).position(position));
+    }
+
+    /**
+     * Split the lines left in chunks of about the same size, each chunk is read by its own reader.
+     * The readers share the bytes but not their position nor their strings, so they can be read by different threads.
+     *
+     * @param nbChunks max number of chunks.
+     * @param minChunkSize min number of bytes in a chunk, fewer chunks are made for a small file.
+     * @return the readers of the chunks, in the order of the file.
+     */
+    List<CsvReader> split(int nbChunks, int minChunkSize) {
+        int size = limit - position;
+        int count = Math.max(1, Math.min(nbChunks, size / Math.max(1, minChunkSize)));
+        List<CsvReader> chunks = new ArrayList<>(count);
+        int from = position;
+        for (int i = 1; i <= count && from < limit; i++) {
+            int to = i == count ? limit : Math.max(from, position + (int) ((long) size * i / count));
+            // A chunk ends after the end of a line.
+            while (to < limit && buffer.get(to - 1) != '\n') {
+                to++;
+            }
+            if (to > from) {
+                chunks.add(new CsvReader(buffer.duplicate().limit(to).position(from)));
+            }
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns true if there is a line left, empty lines are skipped.
+     *
+     * @return true if there is a line left.
+     */
+    boolean hasNextLine() {
+        while (position < limit && isEndOfLine(buffer.get(position))) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    /**
+     * Skip the fields left in the current line.
+     */
+    void endLine() {
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+    }
+
+    /**
+     * Returns true if the byte ends a line.
+     *
+     * @param b a byte.
+     * @return true if it is a line feed or a carriage return.
+     */
+    private static boolean isEndOfLine(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Find the end of the field which starts at the position.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @return the index of the delimiter or of the end of the line.
+     */
+    private int fieldEnd(byte delimiter) {
+        int end = position;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == delimiter || isEndOfLine(b)) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Move after a field, and after its delimiter if it is not the end of the line.
+     *
+     * @param end the index of the delimiter or of the end of the line.
+     * @param delimiter byte ending the field.
+     */
+    private void consume(int end, byte delimiter) {
+        position = end < limit && buffer.get(end) == delimiter ? end + 1 : end;
+    }
+
+    /**
+     * Skip a field.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     */
+    void skip(byte delimiter) {
+        consume(fieldEnd(delimiter), delimiter);
+    }
+
+    /**
+     * Read a field as a string, the same string is returned for fields with the same bytes.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @return the field, decoded from UTF-8.
+     */
+    String nextString(byte delimiter) {
+        int end = fieldEnd(delimiter);
+        int length = end - position;
+        int hash = 1;
+        for (int i = position; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int mask = cacheKeys.length - 1;
+        int slot = hash & mask;
+        while (cacheKeys[slot] != null) {
+            if (matches(cacheKeys[slot], position, length)) {
+                consume(end, delimiter);
+                return cacheValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        cacheKeys[slot] = bytes;
+        cacheValues[slot] = value;
+        if (++cacheSize * 2 > cacheKeys.length) {
+            growCache();
+        }
+        consume(end, delimiter);
+        return value;
+    }
+
+    /**
+     * Returns true if the bytes of the buffer at an index are the given ones.
+     *
+     * @param bytes the bytes to compare with.
+     * @param from index in the buffer.
+     * @param length number of bytes in the buffer.
+     * @return true if the bytes are equal.
+     */
+    private boolean matches(byte[] bytes, int from, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double the capacity of the table of the decoded strings.
+     */
+    private void growCache() {
+        byte[][] keys = cacheKeys;
+        String[] values = cacheValues;
+        cacheKeys = new byte[keys.length * 2][];
+        cacheValues = new String[keys.length * 2];
+        int mask = cacheKeys.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                int slot = Arrays.hashCode(keys[i]) & mask;
+                while (cacheKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                cacheKeys[slot] = keys[i];
+                cacheValues[slot] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Read a field as a positive integer.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @return the integer.
+     * @throws NumberFormatException if the field is not an integer.
+     */
+    int nextInt(byte delimiter) {
+        int end = fieldEnd(delimiter);
+        int value = digits(position, end);
+        consume(end, delimiter);
+        return value;
+    }
+
+    /**
+     * Parse the digits of the buffer between two indexes.
+     *
+     * @param from first index.
+     * @param to last index, excluded.
+     * @return the integer.
+     * @throws NumberFormatException if there is no digit or another byte.
+     */
+    private int digits(int from, int to) {
+        if (from == to) {
+            throw new NumberFormatException("empty number at " + from);
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a digit at " + i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Read a time in the format hh:mm as a number of seconds.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @return the time in seconds.
+     * @throws NumberFormatException if the field is not a time.
+     */
+    int nextTime(byte delimiter) {
+        int end = fieldEnd(delimiter);
+        int colon = position;
+        while (colon < end && buffer.get(colon) != ':') {
+            colon++;
+        }
+        if (colon == end) {
+            throw new NumberFormatException("not a time at " + position);
+        }
+        int value = digits(position, colon) * 60 * 60 + digits(colon + 1, end) * 60;
+        consume(end, delimiter);
+        return value;
+    }
+
+    /**
+     * Read a decimal number, leading and trailing spaces are ignored.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @param decimalPoint byte between the integer part and the fraction.
+     * @return the number, the same as {@link Double#parseDouble} gives.
+     * @throws NumberFormatException if the field is not a number.
+     */
+    double nextDouble(byte delimiter, byte decimalPoint) {
+        int end = fieldEnd(delimiter);
+        int from = position;
+        int to = end;
+        while (from < to && buffer.get(from) == ' ') {
+            from++;
+        }
+        while (to > from && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+        double value = parseDouble(from, to, decimalPoint);
+        consume(end, delimiter);
+        return value;
+    }
+
+    /**
+     * Read a decimal number with a dot, leading and trailing spaces are ignored.
+     *
+     * @param delimiter byte ending the field, the end of the line also ends it.
+     * @return the number, the same as {@link Double#parseDouble} gives.
+     * @throws NumberFormatException if the field is not a number.
+     */
+    double nextDouble(byte delimiter) {
+        return nextDouble(delimiter, (byte) '.');
+    }
+
+    /**
+     * Parse a decimal number between two indexes.
+     * When the digits fit in the mantissa of a double and the fraction has at most 22 digits, the quotient of the two
+     * exact doubles is correctly rounded, so it is the one {@link Double#parseDouble} gives. Other numbers are decoded
+     * to a string and given to {@link Double#parseDouble}.
+     *
+     * @param from first index.
+     * @param to last index, excluded.
+     * @param decimalPoint byte between the integer part and the fraction.
+     * @return the number.
+     */
+    private double parseDouble(int from, int to, byte decimalPoint) {
+        int i = from;
+        boolean negative = i < to && buffer.get(i) == '-';
+        if (negative || (i < to && buffer.get(i) == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int nbDigits = 0;
+        int fractionDigits = -1;
+        boolean exact = i < to;
+        for (; i < to && exact; i++) {
+            byte b = buffer.get(i);
+            if (b == decimalPoint && fractionDigits == -1) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                nbDigits++;
+                if (fractionDigits != -1) {
+                    fractionDigits++;
+                }
+                exact = mantissa <= MAX_EXACT_MANTISSA && nbDigits <= 18;
+            } else {
+                exact = false;
+            }
+        }
+        if (exact && nbDigits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        return Double.parseDouble(decimalPoint == '.' ? text : text.replace((char) decimalPoint, '.'));
+    }
+}
@@ -0,0 +1,42 @@
+package com.planifcarbon.backend.parser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import com.planifcarbon.backend.dtos.NodeDTO;
+import com.planifcarbon.backend.dtos.SegmentMetroDTO;
+
+/**
+ * {@summary Immutable content of the network files, returned by each {@link Parser#parse} call.}
+ * The collections are copied when the result is built, so a result can be shared between threads and is never changed
+ * by a later parse.
+ *
+ * @param stations all metro stations.
+ * @param segmentMetro all metro segments.
+ * @param metroLines terminus station of each metro line, by name of the line.
+ * @param metroLineSchedules departure times from the terminus in seconds, by name of the line.
+ */
+public record ParseResult(Set<NodeDTO> stations, Set<SegmentMetroDTO> segmentMetro, Map<String, String> metroLines,
+                          Map<String, List<Integer>> metroLineSchedules) {
+    /**
+     * {Main constructor, it copies the collections.}
+     */
+    public ParseResult {
+        stations = Set.copyOf(stations);
+        segmentMetro = Set.copyOf(segmentMetro);
+        metroLines = Map.copyOf(metroLines);
+        metroLineSchedules = metroLineSchedules.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> List.copyOf(e.getValue())));
+    }
+
+    /**
+     * Returns a result with the same network and other schedules.
+     *
+     * @param schedules departure times from the terminus in seconds, by name of the line.
+     * @return the new result.
+     */
+    public ParseResult withMetroLineSchedules(Map<String, List<Integer>> schedules) {
+        return new ParseResult(stations, segmentMetro, metroLines, schedules);
+    }
+}
@@ -2,44 +2,83 @@ package com.planifcarbon.backend.parser;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
 import com.planifcarbon.backend.dtos.NodeDTO;
 import com.planifcarbon.backend.dtos.SegmentMetroDTO;
 
 /**
- * {Its static methods are used to parse CSV files}
- * It is respecting singleton pattern.
+ * {Parser of the CSV files of the network.}
+ * Each parse returns its own immutable {@link ParseResult} and keeps no state, so several files can be parsed at once
+ * by one or several parsers.
  */
 public class Parser {
 
-    private static final Set<NodeDTO> stations = new HashSet<>();
-    private static final Set<SegmentMetroDTO> segmentMetro = new HashSet<>();
-    private static final Map<String, String> metroLines = new HashMap<>();
-    private static final Map<String, List<Integer>> metroLineSchedules = new HashMap<>();
+    /** Separator of the fields of a row. */
+    private static final byte SEPARATOR = ';';
+    /** Separator of the longitude and the latitude of a station. */
+    private static final byte COORDINATES_SEPARATOR = ',';
+    /** Min number of bytes of a chunk of the timetable file parsed in parallel. */
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
 
-    public static final Parser instance = new Parser();
+    /** Max number of chunks of the timetable file parsed in parallel. */
+    private final int parallelism;
 
-    private Parser() {}
+    /**
+     * {Main constructor, the timetable is parsed with the parallelism of the common fork-join pool.}
+     */
+    public Parser() {
+        this(ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * {Constructor with the parallelism of the parse of the timetable.}
+     *
+     * @param parallelism max number of chunks of the timetable file, 1 to parse it on the calling thread.
+     */
+    public Parser(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism has to be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
 
     /**
      * {Parse all CSV file.}
+     * The files are resources of the classpath, or paths of the file system if there is no such resource.
      *
      * @param metroFile file representing the metro network.
      * @param scheduleFile file representing the metro schedules.
+     * @return the stations, segments, lines and schedules of the files.
+     * @throws FileNotFoundException thrown when provided file not found.
+     * @throws IOException thrown when an error occurred when opening file.
+     */
+    public ParseResult parse(String metroFile, String scheduleFile) throws FileNotFoundException, IOException {
+        return calculateStationsAndSegments(metroFile)
+                .withMetroLineSchedules(calculateSchedules(scheduleFile, this.parallelism));
+    }
+
+    /**
+     * Returns a CRC-32 of the content of CSV files, to tell if data built from them is still up to date.
+     *
+     * @param files the paths of the CSV files, resources of the classpath or paths of the file system.
+     * @return the checksum of the files, in the given order.
      * @throws FileNotFoundException thrown when provided file not found.
      * @throws IOException thrown when an error occurred when opening file.
      */
-    public void parse(String metroFile, String scheduleFile) throws FileNotFoundException, IOException {
-        Parser.calculateStationsAndSegments(metroFile);
-        Parser.calculateSchedules(scheduleFile);
+    public static long checksum(String... files) throws FileNotFoundException, IOException {
+        CRC32 crc = new CRC32();
+        for (String file : files) {
+            CsvReader.open(file).updateChecksum(crc);
+        }
+        return crc.getValue();
     }
 
     // private ----------------------------------------------------------------
@@ -85,89 +124,142 @@ public class Parser {
      * {Parse station &#38; segment data from a CSV file.}
      * 
      * @param filePath the path of the CSV file
+     * @return the stations, segments and lines of the file, without schedules.
      * @throws FileNotFoundException thrown when file is not found.
      * @throws IOException thrown when an error occurred when opening file.
      */
-    static void calculateStationsAndSegments(String filePath) throws FileNotFoundException, IOException {
-        // try with safe close.
-        try (InputStream ins = Parser.class.getClassLoader().getResourceAsStream(filePath);
-                Scanner scan = new Scanner(ins, StandardCharsets.UTF_8)) {
-            String[] currentLine;
-            String[] coords;
-            NodeDTO start;
-            NodeDTO end;
-            while (scan.hasNextLine()) {
-                currentLine = splitString(";", scan.nextLine());
-                // Each line contains 7 elements : name1, coords1, name2, coords2, line, time, dist
-                coords = splitString(",", currentLine[1]);
-                start = new NodeDTO(currentLine[0], Double.parseDouble(coords[0]), Double.parseDouble(coords[1]));
-                coords = splitString(",", currentLine[3]);
-                end = new NodeDTO(currentLine[2], Double.parseDouble(coords[0]), Double.parseDouble(coords[1]));
-                stations.add(start);
-                stations.add(end);
-                segmentMetro.add(new SegmentMetroDTO(start, end, durationStringToInt(currentLine[5]), Double.parseDouble(currentLine[6]) / 10,
-                        currentLine[4]));
-                metroLines.putIfAbsent(currentLine[4], currentLine[0]);
-            }
+    static ParseResult calculateStationsAndSegments(String filePath) throws FileNotFoundException, IOException {
+        CsvReader reader = CsvReader.open(filePath);
+        Set<NodeDTO> stations = new HashSet<>();
+        Set<SegmentMetroDTO> segmentMetro = new HashSet<>();
+        Map<String, String> metroLines = new HashMap<>();
+        String name;
+        NodeDTO start;
+        NodeDTO end;
+        String line;
+        while (reader.hasNextLine()) {
+            // Each line contains 7 elements : name1, coords1, name2, coords2, line, time, dist
+            name = reader.nextString(SEPARATOR);
+            start = new NodeDTO(name, reader.nextDouble(COORDINATES_SEPARATOR), reader.nextDouble(SEPARATOR));
+            name = reader.nextString(SEPARATOR);
+            end = new NodeDTO(name, reader.nextDouble(COORDINATES_SEPARATOR), reader.nextDouble(SEPARATOR));
+            line = reader.nextString(SEPARATOR);
+            double duration = reader.nextDouble(SEPARATOR, (byte) ':') * 10;
+            stations.add(start);
+            stations.add(end);
+            segmentMetro.add(new SegmentMetroDTO(start, end, (int) Math.ceil(duration), reader.nextDouble(SEPARATOR) / 10,
+                    line));
+            metroLines.putIfAbsent(line, start.getName());
+            reader.endLine();
         }
+        return new ParseResult(stations, segmentMetro, metroLines, Map.of());
     }
 
     /**
-     * {Parse station &#38; segment data from a CSV file.}
-     * 
+     * {Parse the metro schedules from a CSV file, in chunks parsed in parallel.}
+     * The file is split in line-aligned chunks of at least 256 KB, each chunk is parsed on the common fork-join pool
+     * into lists of primitive times by line and variant, then the lists of the chunks are merged in the order of the
+     * file.
+     *
      * @param scheduleFile the path of the CSV file
+     * @param parallelism max number of chunks, 1 to parse the file on the calling thread.
+     * @return the departure times from the terminus in seconds, by name of the line.
      * @throws FileNotFoundException thrown when provided file not found.
      * @throws IOException thrown when an error occurred when opening file.
      */
-    static void calculateSchedules(String scheduleFile) throws FileNotFoundException, IOException {
-        // try with safe close.
-        try (InputStream ins = Parser.class.getClassLoader().getResourceAsStream(scheduleFile);
-                Scanner scan = new Scanner(ins, StandardCharsets.UTF_8)) {
-            String[] currentLine;
-            String variantKey;
-            while (scan.hasNextLine()) {
-                currentLine = splitString(";", scan.nextLine());
-                // Each line contains 3 elements : line, terminusStation, time
-                variantKey = currentLine[0] + " variant " + currentLine[3];
-                if (metroLineSchedules.containsKey(variantKey)) {
-                    metroLineSchedules.get(variantKey).add(timeStringToInt(currentLine[2]));
-                } else {
-                    List<Integer> list = new ArrayList<>();
-                    list.add(timeStringToInt(currentLine[2]));
-                    metroLineSchedules.put(variantKey, list);
-                }
-            }
+    public static Map<String, List<Integer>> calculateSchedules(String scheduleFile, int parallelism)
+            throws FileNotFoundException, IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism has to be at least 1");
         }
+        List<CsvReader> chunks = CsvReader.open(scheduleFile).split(parallelism, MIN_CHUNK_SIZE);
+        List<ScheduleChunk> parsed = (chunks.size() > 1 ? chunks.parallelStream() : chunks.stream())
+                .map(ScheduleChunk::parse).toList();
+        Map<String, Times> merged = new HashMap<>();
+        for (ScheduleChunk chunk : parsed) {
+            chunk.schedules.forEach((line, variants) -> variants.forEach((variant, times) ->
+                    merged.computeIfAbsent(line + " variant " + variant, k -> new Times()).addAll(times)));
+        }
+        Map<String, List<Integer>> metroLineSchedules = new HashMap<>();
+        merged.forEach((key, times) -> metroLineSchedules.put(key, times.toList()));
+        return metroLineSchedules;
     }
 
     /**
-     * Returns a map of all metro lines, with keys representing the name of the line
-     * and values representing the color of the line.
-     *
-     * @return a map of all metro lines
+     * Schedules of a chunk of the timetable file.
      */
-    public static Map<String, String> getMetroLines() { return metroLines; }
+    private static final class ScheduleChunk {
+        /** Times by line then by variant, the names are shared by the rows of the chunk. */
+        private final Map<String, Map<String, Times>> schedules = new HashMap<>();
 
-    /**
-     * Returns a map of all metro line schedules, with keys representing the name of the line
-     * and values representing a list of integer values, each integer value representing the
-     * duration in seconds between each stop along the line.
-     *
-     * @return a map of all metro line schedules
-     */
-    public static Map<String, List<Integer>> getMetroLineSchedules() { return metroLineSchedules; }
+        /**
+         * Parse the rows of a chunk.
+         *
+         * @param reader reader of the chunk.
+         * @return the schedules of the chunk.
+         */
+        private static ScheduleChunk parse(CsvReader reader) {
+            ScheduleChunk chunk = new ScheduleChunk();
+            String line;
+            String variant;
+            int time;
+            while (reader.hasNextLine()) {
+                // Each line contains 4 elements : line, terminusStation, time, variant
+                line = reader.nextString(SEPARATOR);
+                reader.skip(SEPARATOR);
+                time = reader.nextTime(SEPARATOR);
+                variant = reader.nextString(SEPARATOR);
+                chunk.schedules.computeIfAbsent(line, k -> new HashMap<>()).computeIfAbsent(variant, k -> new Times())
+                        .add(time);
+                reader.endLine();
+            }
+            return chunk;
+        }
+    }
 
     /**
-     * Returns a set of all metro segments, with each segment represented as a SegmentMetroDTO object.
-     *
-     * @return a set of all metro segments
+     * Growable list of primitive times.
      */
-    public static Set<SegmentMetroDTO> getSegmentMetro() { return segmentMetro; }
+    private static final class Times {
+        private int[] values = new int[16];
+        private int size;
 
-    /**
-     * Returns a set of all metro stations, with each station represented as a NodeDTO object.
-     *
-     * @return a set of all metro stations
-     */
-    public static Set<NodeDTO> getStations() { return stations; }
+        /**
+         * Add a time.
+         *
+         * @param time the time in seconds.
+         */
+        private void add(int time) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = time;
+        }
+
+        /**
+         * Add all the times of another list, after the times of this one.
+         *
+         * @param other the other list.
+         */
+        private void addAll(Times other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * Returns the times as a new mutable list.
+         *
+         * @return the list of the times.
+         */
+        private List<Integer> toList() {
+            List<Integer> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(values[i]);
+            }
+            return list;
+        }
+    }
 }
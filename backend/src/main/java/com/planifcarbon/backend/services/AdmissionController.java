@@ -0,0 +1,197 @@
+package com.planifcarbon.backend.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.planifcarbon.backend.exceptions.OverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * {@summary Adaptive limit of the number of searches running at once.}
+ * A search over the limit is refused at once with an {@link OverloadedException}. The limit follows an AIMD rule on
+ * the measured search latency: it grows by one after each search faster than the target latency while at least half
+ * of the limit is in use, and it is multiplied by the backoff ratio after each slower search. Only the search itself
+ * is measured, not its wait for a thread, so that a burst queued behind the searches does not shrink the limit.
+ * It is disabled by default. The limit, the searches
+ * in progress and the refused searches are exposed as the {@code admission.limit}, {@code admission.in-flight} and
+ * {@code admission.rejected} metrics.
+ */
+@Component
+public class AdmissionController implements MeterBinder {
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatency;
+    private final double backoffRatio;
+    private final Duration retryAfter;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+
+    /**
+     * Creates a new instance of AdmissionController.
+     *
+     * @param enabled if false every search is admitted.
+     * @param initialLimit limit of searches at once before any search is measured.
+     * @param minLimit lowest limit.
+     * @param maxLimit highest limit.
+     * @param targetLatency latency above which the limit decreases.
+     * @param backoffRatio ratio applied to the limit after a slow search, between 0 and 1.
+     * @param retryAfter time after which a refused request can be retried.
+     */
+    @Autowired
+    public AdmissionController(@Value("${admission.enabled:false}") boolean enabled,
+                               @Value("${admission.initial-limit:32}") int initialLimit,
+                               @Value("${admission.min-limit:2}") int minLimit,
+                               @Value("${admission.max-limit:256}") int maxLimit,
+                               @Value("${admission.target-latency:PT0.5S}") Duration targetLatency,
+                               @Value("${admission.backoff-ratio:0.9}") double backoffRatio,
+                               @Value("${admission.retry-after:PT1S}") Duration retryAfter) {
+        this(enabled, initialLimit, minLimit, maxLimit, targetLatency, backoffRatio, retryAfter, System::nanoTime);
+    }
+
+    /**
+     * Creates a new instance of AdmissionController with the clock used to measure the searches.
+     *
+     * @param enabled if false every search is admitted.
+     * @param initialLimit limit of searches at once before any search is measured.
+     * @param minLimit lowest limit.
+     * @param maxLimit highest limit.
+     * @param targetLatency latency above which the limit decreases.
+     * @param backoffRatio ratio applied to the limit after a slow search, between 0 and 1.
+     * @param retryAfter time after which a refused request can be retried.
+     * @param clock current time in nanoseconds.
+     */
+    AdmissionController(boolean enabled, int initialLimit, int minLimit, int maxLimit, Duration targetLatency,
+                        double backoffRatio, Duration retryAfter, LongSupplier clock) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits should verify 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoff ratio has to be between 0 and 1");
+        }
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatency = targetLatency.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.retryAfter = retryAfter;
+        this.clock = clock;
+    }
+
+    /**
+     * Run a search if the limit allows it.
+     *
+     * @param search the search to run.
+     * @param <T> type of the result.
+     * @return the result of the search.
+     * @throws OverloadedException if the limit of searches at once is reached.
+     */
+    public <T> T admit(Supplier<T> search) {
+        return this.admit(search, Supplier::get);
+    }
+
+    /**
+     * Run a search if the limit allows it, with a runner which can wait before running it, for a thread. The search
+     * counts as running while it waits, but only its own run is measured.
+     *
+     * @param search the search to run.
+     * @param runner runs the search and gives its result.
+     * @param <T> type of the result.
+     * @return the result of the search.
+     * @throws OverloadedException if the limit of searches at once is reached.
+     */
+    public <T> T admit(Supplier<T> search, Function<Supplier<T>, T> runner) {
+        if (!this.enabled) {
+            return runner.apply(search);
+        }
+        int running;
+        do {
+            running = this.inFlight.get();
+            if (running >= this.getLimit()) {
+                this.rejected.increment();
+                throw new OverloadedException("too many searches in progress, retry later", this.retryAfter);
+            }
+        } while (!this.inFlight.compareAndSet(running, running + 1));
+        AtomicLong latency = new AtomicLong(-1);
+        try {
+            return runner.apply(() -> {
+                long start = this.clock.getAsLong();
+                try {
+                    return search.get();
+                } finally {
+                    latency.set(this.clock.getAsLong() - start);
+                }
+            });
+        } finally {
+            // A search refused by the runner never ran, it says nothing of the latency.
+            if (latency.get() >= 0) {
+                this.onSample(latency.get(), running + 1);
+            }
+            this.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Update the limit with the latency of a search.
+     *
+     * @param latency latency of the search in nanoseconds.
+     * @param running number of searches running when it started, itself included.
+     */
+    private synchronized void onSample(long latency, int running) {
+        if (latency > this.targetLatency) {
+            this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+        } else if (running * 2 >= this.limit) {
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        }
+    }
+
+    /**
+     * Returns the number of searches which can run at once.
+     *
+     * @return the current limit.
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Returns the number of searches in progress.
+     *
+     * @return the number of searches in progress.
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the number of searches refused because the limit was reached.
+     *
+     * @return the number of refused searches.
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("admission.limit", this, AdmissionController::getLimit)
+                .description("Number of searches which can run at once").register(registry);
+        Gauge.builder("admission.in-flight", this, AdmissionController::getInFlight)
+                .description("Number of searches in progress").register(registry);
+        FunctionCounter.builder("admission.rejected", this, AdmissionController::getRejectedCount)
+                .description("Searches refused because the limit was reached").register(registry);
+    }
+}
@@ -0,0 +1,87 @@
+package com.planifcarbon.backend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import com.planifcarbon.backend.dtos.PathRequestDTO;
+import com.planifcarbon.backend.dtos.PathResultDTO;
+
+/**
+ * {@summary Service used by the controller to answer batches of best path requests.}
+ * The requests of a batch run in parallel on the {@link RoutingExecutor}, through the {@link PathService} so they share
+ * its cache, its admission control and its time budget. A request which fails gives an error in its result instead of
+ * failing the whole batch.
+ */
+@Service
+public class BatchService {
+    /**
+     * Service computing each best path
+     */
+    private final PathService pathService;
+    /**
+     * Executor running the requests of the batches
+     */
+    private final RoutingExecutor routingExecutor;
+    /**
+     * Max number of requests in a batch
+     */
+    private final int maxSize;
+
+    /**
+     * Creates a new instance of BatchService.
+     *
+     * @param pathService the PathService used to calculate the paths.
+     * @param routingExecutor the executor running the requests of the batches.
+     * @param maxSize max number of requests in a batch.
+     */
+    public BatchService(PathService pathService, RoutingExecutor routingExecutor,
+                        @Value("${path-batch.max-size:100}") int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("max size has to be positive");
+        }
+        this.pathService = pathService;
+        this.routingExecutor = routingExecutor;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * calculate the best path of each request of a batch.
+     *
+     * @param requests the best path requests.
+     * @return the result of each request, in the order of the requests.
+     */
+    public List<PathResultDTO> getBestPaths(List<PathRequestDTO> requests) {
+        if (requests == null) {
+            throw new IllegalArgumentException("requests should not be null");
+        }
+        if (requests.size() > this.maxSize) {
+            throw new IllegalArgumentException("a batch has at most " + this.maxSize + " requests");
+        }
+        List<Supplier<PathResultDTO>> tasks = new ArrayList<>();
+        for (PathRequestDTO request : requests) {
+            tasks.add(() -> this.getBestPath(request));
+        }
+        return this.routingExecutor.callAll(tasks);
+    }
+
+    /**
+     * calculate the best path of one request.
+     *
+     * @param request the best path request.
+     * @return the best path, or the error of the request.
+     */
+    private PathResultDTO getBestPath(PathRequestDTO request) {
+        if (request == null || request.getStart() == null || request.getEnd() == null || request.getMethod() == null
+                || request.getTransportation() == null || request.getEngine() == null) {
+            return new PathResultDTO(null, "start, end, method, transportation and engine should not be null");
+        }
+        try {
+            return new PathResultDTO(this.pathService.getBestPath(request.getStart(), request.getEnd(), request.getTime(),
+                    request.getMethod(), request.getTransportation(), request.getEngine()), null);
+        } catch (RuntimeException e) {
+            return new PathResultDTO(null, String.valueOf(e.getMessage()));
+        }
+    }
+}
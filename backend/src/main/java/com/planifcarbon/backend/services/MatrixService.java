@@ -0,0 +1,95 @@
+package com.planifcarbon.backend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Service;
+import com.planifcarbon.backend.dtos.TravelMatrixDTO;
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Node;
+import com.planifcarbon.backend.model.SearchBudget;
+import com.planifcarbon.backend.model.Station;
+
+/**
+ * {@summary Service used by the controller to compute travel matrices.}
+ * Each origin runs one search to all the stations, the searches of the origins run in parallel on the
+ * {@link RoutingExecutor} since they only read the graph snapshot of the {@link MetroMap}. Each of them is admitted by
+ * the {@link AdmissionController} and bounded by the time budget of the {@link PathService}, which starts when the search of the origin starts.
+ */
+@Service
+public class MatrixService {
+    /**
+     * Main data object
+     */
+    private final MetroMap metroMap;
+    /**
+     * Service used to read the positions and the transportation of the requests, and to run the searches
+     */
+    private final PathService pathService;
+    /**
+     * Executor running the searches of the origins
+     */
+    private final RoutingExecutor routingExecutor;
+
+    /**
+     * Creates a new instance of MatrixService.
+     *
+     * @param metroMap the MetroMap used to calculate the paths.
+     * @param pathService the PathService used to read the positions of the requests and to run the searches.
+     * @param routingExecutor the executor running the searches of the origins.
+     */
+    public MatrixService(MetroMap metroMap, PathService pathService, RoutingExecutor routingExecutor) {
+        this.metroMap = metroMap;
+        this.pathService = pathService;
+        this.routingExecutor = routingExecutor;
+    }
+
+    /**
+     * calculate the travel time / distance from each origin to each destination station.
+     *
+     * @param origins starting positions, stations or coordinates.
+     * @param destinations names of the destination stations.
+     * @param time departure time
+     * @param method travel time / distance
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @return the matrix of the travel times / distances, null where a destination is not reachable.
+     * @throws com.planifcarbon.backend.exceptions.SearchTimeoutException if the search of an origin ran out of time.
+     */
+    public TravelMatrixDTO getTravelMatrix(List<String> origins, List<String> destinations, int time, String method,
+                                           String transportation) {
+        if (origins == null || origins.isEmpty() || destinations == null || destinations.isEmpty()) {
+            throw new IllegalArgumentException("origins and destinations should not be empty");
+        }
+        List<Node> startNodes = origins.stream().map(this.pathService::getNode).toList();
+        List<Station> endNodes = new ArrayList<>();
+        for (String destination : destinations) {
+            Station station = this.metroMap.getStationByName(destination);
+            if (station == null) {
+                throw new IllegalArgumentException("destination " + destination + " is not a station");
+            }
+            endNodes.add(station);
+        }
+        boolean bestTimePath = method.equalsIgnoreCase("TIME");
+        int startWeight = bestTimePath ? time : 0;
+        boolean metro = this.pathService.isMetroAllowed(transportation);
+        boolean walk = this.pathService.isWalkAllowed(transportation);
+
+        List<Supplier<Double[]>> rows = new ArrayList<>();
+        for (Node startNode : startNodes) {
+            rows.add(() -> this.pathService.search(() -> {
+                // The budget of each origin starts with its search, not while it waits behind the other origins.
+                SearchBudget budget = this.pathService.budgetFor(null);
+                double[] weights = this.metroMap.getWeightsToStations(startNode, endNodes, startWeight, metro, walk,
+                        bestTimePath, budget);
+                this.pathService.checkBudget(budget, "travel matrix not found within the time budget");
+                Double[] row = new Double[weights.length];
+                for (int i = 0; i < weights.length; i++) {
+                    row[i] = weights[i] == Double.POSITIVE_INFINITY ? null : weights[i] - startWeight;
+                }
+                return row;
+            }));
+        }
+        Double[][] matrix = this.routingExecutor.callAll(rows).toArray(new Double[0][]);
+        return new TravelMatrixDTO(origins, destinations, matrix);
+    }
+}
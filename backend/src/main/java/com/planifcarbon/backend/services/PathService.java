@@ -1,36 +1,114 @@
 package com.planifcarbon.backend.services;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
 import com.planifcarbon.backend.dtos.NodeDTO;
+import com.planifcarbon.backend.dtos.ReachableStationDTO;
+import com.planifcarbon.backend.exceptions.SearchTimeoutException;
 import com.planifcarbon.backend.model.DataSegment;
 import com.planifcarbon.backend.model.MetroMap;
 import com.planifcarbon.backend.model.Node;
 import com.planifcarbon.backend.model.PersonalizedNode;
+import com.planifcarbon.backend.model.SearchBudget;
 import com.planifcarbon.backend.model.Station;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 /**
  * {@summary Service used by the controller to communicate with the view.}
  * It transforms the data from the model so that it fit the one used by the view.
  * It uses the djikstra algorithm to give the best path.
+ * Best paths are cached in a {@link RouteCache} until the network data changes, time paths which walk leave at the end
+ * of the time bucket of their departure time so that close requests share them, and concurrent identical requests
+ * with the default time budget share the computation of the first one, each of them waiting within its own budget.
+ * Searches run on the {@link RoutingExecutor} once admitted by the {@link AdmissionController}, cached and shared paths
+ * do not count as searches.
+ * Dijkstra and A* searches stop once their time budget is exhausted: the best path found so far is returned if best
+ * effort answers are allowed, it is not cached, otherwise the request fails with a {@link SearchTimeoutException}.
  */
 @Service
-public class PathService {
+public class PathService implements MeterBinder {
     /**
      * Main data object
      */
     private final MetroMap metroMap;
+    /**
+     * Cache of the best paths
+     */
+    private final RouteCache routeCache;
+    /**
+     * Executor of the searches
+     */
+    private final RoutingExecutor routingExecutor;
+    /**
+     * Limit of the searches running at once
+     */
+    private final AdmissionController admissionController;
+    /**
+     * Computations in progress, keyed by normalized request
+     */
+    private final ConcurrentMap<RouteCache.Key, CompletableFuture<Answer>> inFlight =
+            new ConcurrentHashMap<>();
+    /**
+     * Number of requests which waited for the computation of an identical request
+     */
+    private final LongAdder coalesced = new LongAdder();
+    /**
+     * Default time budget of a search, zero for no limit
+     */
+    private final Duration searchTimeout;
+    /**
+     * If true a search out of time returns the best path found so far
+     */
+    private final boolean bestEffort;
+    /**
+     * Number of searches out of time which failed
+     */
+    private final LongAdder timedOut = new LongAdder();
+    /**
+     * Number of searches out of time which returned the best path found so far
+     */
+    private final LongAdder bestEffortAnswers = new LongAdder();
 
     /**
      * Creates a new instance of PathService with the provided MetroMap.
      *
      * @param metroMap the MetroMap used to calculate the paths.
+     * @param routeCache the cache of the best paths.
+     * @param routingExecutor the executor of the searches.
+     * @param admissionController the limit of the searches running at once.
+     * @param searchTimeout default time budget of a search, zero for no limit.
+     * @param bestEffort if true a search out of time returns the best path found so far instead of failing.
      */
-    public PathService(MetroMap metroMap) {
+    public PathService(MetroMap metroMap, RouteCache routeCache, RoutingExecutor routingExecutor,
+                       AdmissionController admissionController,
+                       @Value("${path-search.timeout:PT0S}") Duration searchTimeout,
+                       @Value("${path-search.best-effort:true}") boolean bestEffort) {
+        if (searchTimeout.isNegative()) {
+            throw new IllegalArgumentException("search timeout has to be positive");
+        }
         this.metroMap = metroMap;
+        this.routeCache = routeCache;
+        this.routingExecutor = routingExecutor;
+        this.admissionController = admissionController;
+        this.searchTimeout = searchTimeout;
+        this.bestEffort = bestEffort;
     }
 
     /**
@@ -45,26 +123,380 @@ public class PathService {
      */
     public List<DjikstraSearchResultDTO> getBestPath(String start, String end, int time, String method,
                                                      String transportation) {
+        return this.getBestPath(start, end, time, method, transportation, "DIJKSTRA");
+    }
+
+    /**
+     * calculate the best path using the given routing engine.
+     *
+     * @param start starting position
+     * @param end ending position
+     * @param time departure time
+     * @param method best path using time / distance
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @param engine choose between (dijkstra, astar, raptor, csa), raptor and csa only compute best time paths, distance
+     *               paths use dijkstra with them.
+     * @return list of nodes which represents best path.
+     */
+    public List<DjikstraSearchResultDTO> getBestPath(String start, String end, int time, String method,
+                                                     String transportation, String engine) {
+        return this.getBestPath(start, end, time, method, transportation, engine, null);
+    }
+
+    /**
+     * calculate the best path using the given routing engine within a time budget.
+     *
+     * @param start starting position
+     * @param end ending position
+     * @param time departure time
+     * @param method best path using time / distance
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @param engine choose between (dijkstra, astar, raptor, csa), raptor and csa only compute best time paths, distance
+     *               paths use dijkstra with them.
+     * @param timeout time budget of the request, it can only shorten the default one, null to use the default one.
+     * @return list of nodes which represents best path, the best one found so far if the search ran out of time.
+     * @throws SearchTimeoutException if the search ran out of time and has no path to give.
+     */
+    public List<DjikstraSearchResultDTO> getBestPath(String start, String end, int time, String method,
+                                                     String transportation, String engine, Duration timeout) {
         Node startNode = this.getNode(start);
         Node endNode = this.getNode(end);
-        boolean metro = false;
-        boolean walk = false;
-        switch (transportation) {
-            case "METRO" -> metro = true;
-            case "METRO_FOOT" -> {
-                metro = true;
-                walk = true;
+        boolean metro = this.isMetroAllowed(transportation);
+        boolean walk = this.isWalkAllowed(transportation);
+        boolean bestTimePath = method.equalsIgnoreCase("TIME");
+        String engineName = this.resolveEngine(engine, bestTimePath);
+        int departure = this.departureTime(startNode, time, bestTimePath, metro && !walk);
+        long dataVersion = this.metroMap.getDataVersion();
+        RouteCache.Key key = new RouteCache.Key(startNode.getName(), endNode.getName(), bestTimePath ? "TIME" : "DISTANCE",
+                metro ? (walk ? "METRO_FOOT" : "METRO") : "FOOT", engineName,
+                this.cacheTime(startNode, departure, bestTimePath, metro && !walk));
+        List<DjikstraSearchResultDTO> cached = this.routeCache.get(key, dataVersion);
+        if (cached != null) {
+            return cached;
+        }
+        // The budget starts before the search waits for an identical request, for its admission and for a thread.
+        SearchBudget budget = this.budgetFor(timeout);
+        Supplier<Answer> computation = () -> {
+            List<DataSegment> result = this.search(() -> switch (engineName) {
+                case "RAPTOR" -> this.metroMap.getSegmentsFromRaptor(startNode, endNode, departure, metro, walk);
+                case "CSA" -> this.metroMap.getSegmentsFromConnectionScan(startNode, endNode, departure, metro, walk);
+                case "ASTAR" -> this.metroMap.getSegmentsFromAStar(startNode, endNode, bestTimePath ? departure : 0,
+                        metro, walk, bestTimePath, budget);
+                default -> this.metroMap.getSegmentsFromPath(startNode, endNode, bestTimePath ? departure : 0, metro,
+                        walk, bestTimePath, budget);
+            });
+            if (budget.isExhausted()) {
+                if (!this.bestEffort || result.isEmpty()) {
+                    this.timedOut.increment();
+                    throw new SearchTimeoutException("no path found within the time budget");
+                }
+                this.bestEffortAnswers.increment();
             }
-            case "FOOT" -> walk = true;
-            default -> {
-                metro = true;
-                walk = true;
+            List<DataSegment> groupedDataSegments = this.groupWalkingDataSegments(result);
+            List<DjikstraSearchResultDTO> path = this.dataSegmentsToDijkstraPath(groupedDataSegments);
+            if (!budget.isExhausted()) {
+                this.routeCache.put(key, dataVersion, path);
             }
+            return new Answer(path, !budget.isExhausted());
+        };
+        if (this.hasOwnTimeout(timeout)) {
+            // Identical requests run with the default budget, they cannot share a search with a shorter one.
+            return computation.get().path();
         }
+        return this.computeOnce(key, computation, budget);
+    }
+
+    /**
+     * calculate the stations reachable from a position within a max travel time / distance, with one search.
+     *
+     * @param start starting position
+     * @param time departure time
+     * @param method best path using time / distance
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @param limit max travel time in seconds, or max distance in km.
+     * @return the reachable stations with their best arrival time / distance, nearest first.
+     */
+    public List<ReachableStationDTO> getIsochrone(String start, int time, String method, String transportation,
+                                                  double limit) {
+        return this.getIsochrone(start, time, method, transportation, limit, null);
+    }
+
+    /**
+     * calculate the stations reachable from a position within a max travel time / distance, with one search within a
+     * time budget.
+     *
+     * @param start starting position
+     * @param time departure time
+     * @param method best path using time / distance
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @param limit max travel time in seconds, or max distance in km.
+     * @param timeout time budget of the request, it can only shorten the default one, null to use the default one.
+     * @return the reachable stations with their best arrival time / distance, nearest first.
+     * @throws SearchTimeoutException if the search ran out of time.
+     */
+    public List<ReachableStationDTO> getIsochrone(String start, int time, String method, String transportation,
+                                                  double limit, Duration timeout) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit has to be positive");
+        }
+        Node startNode = this.getNode(start);
         boolean bestTimePath = method.equalsIgnoreCase("TIME");
-        List<DataSegment> result = this.metroMap.getSegmentsFromPath(startNode, endNode, bestTimePath ? time: 0, metro, walk, bestTimePath);
-        List<DataSegment> groupedDataSegments = this.groupWalkingDataSegments(result);
-        return this.dataSegmentsToDijkstraPath(groupedDataSegments);
+        int startWeight = bestTimePath ? time : 0;
+        boolean metro = this.isMetroAllowed(transportation);
+        boolean walk = this.isWalkAllowed(transportation);
+        SearchBudget budget = this.budgetFor(timeout);
+        Map<Station, Double> reachable = this.search(() -> this.metroMap.getReachableStations(startNode,
+                startWeight, metro, walk, bestTimePath, startWeight + limit, budget));
+        // A part of the reachable stations is not an answer, so there is no best effort one.
+        this.checkBudget(budget, "reachable stations not found within the time budget");
+        return reachable.entrySet().stream()
+                .sorted(Map.Entry.<Station, Double>comparingByValue().thenComparing(entry -> entry.getKey().getName()))
+                .map(entry -> new ReachableStationDTO(nodeToNodeDto(entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the time budget of a search, the shortest of the default one and the one of the request.
+     *
+     * @param timeout time budget of the request, null or zero to use the default one.
+     * @return the time budget, starting now.
+     */
+    SearchBudget budgetFor(Duration timeout) {
+        return SearchBudget.of(this.hasOwnTimeout(timeout) ? timeout : this.searchTimeout);
+    }
+
+    /**
+     * Returns true if the timeout of a request shortens the default time budget.
+     *
+     * @param timeout time budget of the request, null or zero to use the default one.
+     * @return true if the request has its own time budget.
+     */
+    private boolean hasOwnTimeout(Duration timeout) {
+        return timeout != null && !timeout.isZero() && !timeout.isNegative()
+                && (this.searchTimeout.isZero() || timeout.compareTo(this.searchTimeout) < 0);
+    }
+
+    /**
+     * Run a search on the routing executor, if the admission controller admits it.
+     *
+     * @param search the search to run.
+     * @param <T> type of the result.
+     * @return the result of the search.
+     */
+    <T> T search(Supplier<T> search) {
+        return this.admissionController.admit(search, this.routingExecutor::call);
+    }
+
+    /**
+     * Fail a search which ran out of time and has no best effort answer.
+     *
+     * @param budget the time budget of the search.
+     * @param message the message of the exception.
+     * @throws SearchTimeoutException if the budget is exhausted.
+     */
+    void checkBudget(SearchBudget budget, String message) {
+        if (budget.isExhausted()) {
+            this.timedOut.increment();
+            throw new SearchTimeoutException(message);
+        }
+    }
+
+    /**
+     * Returns true if the transportation allows metro segments, every transportation but foot does.
+     *
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @return true if metro segments are allowed.
+     */
+    boolean isMetroAllowed(String transportation) {
+        return !transportation.equals("FOOT");
+    }
+
+    /**
+     * Returns true if the transportation allows walk segments, every transportation but metro does.
+     *
+     * @param transportation choose between (metro, metro and walk, walk)
+     * @return true if walk segments are allowed.
+     */
+    boolean isWalkAllowed(String transportation) {
+        return !transportation.equals("METRO");
+    }
+
+    /**
+     * Compute the best path of a request, or wait for the computation of an identical request in progress.
+     * A request waits within its own time budget, and computes its own path if the one of the request it waited for
+     * is not complete: a best effort path or a timeout only belongs to the budget of that request.
+     *
+     * @param key normalized request.
+     * @param computation computation of the best path, within the budget of the request.
+     * @param budget the time budget of the request.
+     * @return the best path, shared by all the identical requests which waited for it.
+     * @throws SearchTimeoutException if the budget of the request is exhausted while it waits.
+     */
+    private List<DjikstraSearchResultDTO> computeOnce(RouteCache.Key key, Supplier<Answer> computation,
+                                                      SearchBudget budget) {
+        CompletableFuture<Answer> future = new CompletableFuture<>();
+        CompletableFuture<Answer> running = this.inFlight.putIfAbsent(key, future);
+        if (running != null && this.routingExecutor.isSearchThread()) {
+            // A thread running searches does not wait, the search in progress may be queued behind it.
+            return computation.get().path();
+        }
+        if (running != null) {
+            this.coalesced.increment();
+            Answer answer = this.await(running, budget);
+            return answer != null && answer.complete() ? answer.path() : computation.get().path();
+        }
+        try {
+            Answer answer = computation.get();
+            future.complete(answer);
+            return answer.path();
+        } catch (Throwable e) {
+            // Errors too, the waiting requests would never be woken up otherwise.
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Wait for the computation of an identical request, within the time budget of the waiting request.
+     *
+     * @param running the computation in progress, it is not completed by the waiting request.
+     * @param budget the time budget of the waiting request.
+     * @return the answer of the computation, or null if it ran out of its own time budget.
+     * @throws SearchTimeoutException if the budget of the waiting request is exhausted.
+     */
+    private Answer await(CompletableFuture<Answer> running, SearchBudget budget) {
+        CompletableFuture<Answer> waiting = running.copy();
+        long remaining = budget.remainingNanos();
+        if (remaining != Long.MAX_VALUE) {
+            waiting = waiting.orTimeout(remaining, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return waiting.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                this.timedOut.increment();
+                throw new SearchTimeoutException("no path found within the time budget");
+            }
+            if (e.getCause() instanceof SearchTimeoutException) {
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of requests which waited for the computation of an identical request.
+     *
+     * @return the number of coalesced requests.
+     */
+    public long coalescedCount() {
+        return this.coalesced.sum();
+    }
+
+    /**
+     * Returns the number of searches which ran out of time and failed.
+     *
+     * @return the number of searches which timed out.
+     */
+    public long timedOutCount() {
+        return this.timedOut.sum();
+    }
+
+    /**
+     * Returns the number of searches which ran out of time and returned the best path found so far.
+     *
+     * @return the number of best effort answers.
+     */
+    public long bestEffortCount() {
+        return this.bestEffortAnswers.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("path.requests.coalesced", this, PathService::coalescedCount)
+                .description("Best path requests which waited for an identical request in progress").register(registry);
+        FunctionCounter.builder("path.searches.aborted", this, PathService::timedOutCount).tag("outcome", "timeout")
+                .description("Searches out of time which failed").register(registry);
+        FunctionCounter.builder("path.searches.aborted", this, PathService::bestEffortCount).tag("outcome", "best-effort")
+                .description("Searches out of time which returned the best path found so far").register(registry);
+    }
+
+    /**
+     * Get the routing engine used for a request, raptor and csa only compute best time paths.
+     *
+     * @param engine requested engine, in any case.
+     * @param bestTimePath if true the best path uses time else distance.
+     * @return RAPTOR, CSA, ASTAR or DIJKSTRA.
+     * @throws IllegalArgumentException if the engine is not one of them.
+     */
+    private String resolveEngine(String engine, boolean bestTimePath) {
+        String name = engine.toUpperCase(Locale.ROOT);
+        return switch (name) {
+            case "DIJKSTRA", "ASTAR" -> name;
+            case "RAPTOR", "CSA" -> bestTimePath ? name : "DIJKSTRA";
+            default -> throw new IllegalArgumentException("unknown engine " + engine
+                    + ", it should be dijkstra, astar, raptor or csa");
+        };
+    }
+
+    /**
+     * Get the departure time of the search of a request.
+     * A metro only path from a station leaves with the next train, so the requested time is kept and
+     * {@link #cacheTime} shares the path up to that train. Other time paths start walking at the requested time, unless
+     * the cache has a time bucket: it is then rounded up to the end of its bucket so that the requests leaving within
+     * the same bucket share a path, which leaves up to a bucket later than requested.
+     *
+     * @param startNode starting node.
+     * @param time requested departure time.
+     * @param bestTimePath if true the best path uses time else distance.
+     * @param metroOnly if true the path does not walk.
+     * @return the departure time of the search.
+     */
+    private int departureTime(Node startNode, int time, boolean bestTimePath, boolean metroOnly) {
+        if (!bestTimePath || (metroOnly && startNode instanceof Station)) {
+            return time;
+        }
+        return this.routeCache.bucketTime(time);
+    }
+
+    /**
+     * Get the departure time used in the cache key of a request.
+     * Distance paths do not depend on the time. A metro only path from a station only depends on the next train
+     * leaving the station, so every departure time up to that train gives the same path, and all the departure times
+     * after the last train give no path. Other paths keep the departure time of their search.
+     *
+     * @param startNode starting node.
+     * @param time departure time.
+     * @param bestTimePath if true the best path uses time else distance.
+     * @param metroOnly if true the path does not walk.
+     * @return the time of the cache key.
+     */
+    private int cacheTime(Node startNode, int time, boolean bestTimePath, boolean metroOnly) {
+        if (!bestTimePath) {
+            return 0;
+        }
+        if (metroOnly && time >= 0 && startNode instanceof Station) {
+            int nextDeparture = this.metroMap.getNextDepartureTime(startNode, time);
+            return nextDeparture == -1 ? Integer.MAX_VALUE : nextDeparture;
+        }
+        return time;
+    }
+
+    /**
+     * Best path computed for a request.
+     *
+     * @param path the best path.
+     * @param complete false if the search ran out of time and the path is the best one found so far.
+     */
+    private record Answer(List<DjikstraSearchResultDTO> path, boolean complete) {
     }
 
     /**
@@ -125,7 +557,7 @@ public class PathService {
      * @param start starting position to go from which can be station or personalized node.
      * @return station if start is station name or personalized node if start is coordinates.
      */
-    private Node getNode(String start) {
+    Node getNode(String start) {
         Station station = this.metroMap.getStationByName(start);
         if (station != null) {
             return station;
@@ -0,0 +1,236 @@
+package com.planifcarbon.backend.services;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * {@summary Bounded cache of the best paths computed by {@link PathService}.}
+ * Entries are evicted once the cache is full, least recently used first, and expire after a time to live. Each entry
+ * belongs to a version of the network data, all entries are dropped when a request comes with another version.
+ * Departure times can be rounded up to a time bucket with {@link #bucketTime}, so that the requests leaving within the
+ * same bucket share a path. There is no bucket by default: a bucket gives up exact paths, they leave up to a bucket
+ * later than requested.
+ * Hits, misses and evictions are exposed as the {@code cache.gets}, {@code cache.evictions} and {@code cache.size}
+ * metrics with the tag {@code cache=routes}.
+ */
+@Component
+public class RouteCache implements MeterBinder {
+    private final int maxSize;
+    private final long timeToLive;
+    private final int timeBucket;
+    private final LongSupplier clock;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long dataVersion = Long.MIN_VALUE;
+
+    /**
+     * {Main constructor.}
+     *
+     * @param maxSize max number of cached paths, 0 to disable the cache.
+     * @param timeToLive time after which a cached path expires.
+     * @param timeBucket departure times are rounded up to a multiple of it, zero to keep them exact.
+     */
+    @Autowired
+    public RouteCache(@Value("${path-cache.max-size:10000}") int maxSize, @Value("${path-cache.ttl:PT10M}") Duration timeToLive,
+                      @Value("${path-cache.time-bucket:PT0S}") Duration timeBucket) {
+        this(maxSize, timeToLive, timeBucket, System::nanoTime);
+    }
+
+    /**
+     * {Constructor of a cache keeping the exact departure times.}
+     *
+     * @param maxSize max number of cached paths, 0 to disable the cache.
+     * @param timeToLive time after which a cached path expires.
+     */
+    public RouteCache(int maxSize, Duration timeToLive) {
+        this(maxSize, timeToLive, Duration.ZERO, System::nanoTime);
+    }
+
+    /**
+     * {Constructor with the clock used to expire the entries.}
+     *
+     * @param maxSize max number of cached paths, 0 to disable the cache.
+     * @param timeToLive time after which a cached path expires.
+     * @param timeBucket departure times are rounded up to a multiple of it, zero to keep them exact.
+     * @param clock current time in nanoseconds.
+     */
+    RouteCache(int maxSize, Duration timeToLive, Duration timeBucket, LongSupplier clock) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("cache size has to be positive");
+        }
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("time to live has to be positive");
+        }
+        if (timeBucket.isNegative() || timeBucket.toSeconds() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("time bucket has to be positive");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive.toNanos();
+        this.timeBucket = (int) timeBucket.toSeconds();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the departure time shared by all the departure times of its bucket: the end of the bucket, so that a path
+     * leaving then can be taken by all of them.
+     *
+     * @param time departure time in seconds.
+     * @return the departure time rounded up to the time bucket, the time itself if it is negative or there is no bucket.
+     */
+    public int bucketTime(int time) {
+        if (timeBucket <= 1 || time <= 0) {
+            return time;
+        }
+        long rounded = ((long) time + timeBucket - 1) / timeBucket * timeBucket;
+        return (int) Math.min(rounded, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the cached path of a request.
+     *
+     * @param key normalized request.
+     * @param version version of the network data the path has to be computed on.
+     * @return the cached path, or null if there is none.
+     */
+    public synchronized List<DjikstraSearchResultDTO> get(Key key, long version) {
+        checkVersion(version);
+        Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.created >= timeToLive) {
+            entries.remove(key);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.path;
+    }
+
+    /**
+     * Cache the path of a request, the least recently used path is evicted if the cache is full.
+     *
+     * @param key normalized request.
+     * @param version version of the network data the path has been computed on.
+     * @param path path to cache.
+     */
+    public synchronized void put(Key key, long version, List<DjikstraSearchResultDTO> path) {
+        checkVersion(version);
+        if (version != dataVersion || maxSize == 0) {
+            return;
+        }
+        entries.put(key, new Entry(List.copyOf(path), clock.getAsLong()));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drop all the entries if they belong to an older version of the network data.
+     * Paths computed on an older version than the cached ones are not cached.
+     *
+     * @param version version of the network data.
+     */
+    private void checkVersion(long version) {
+        if (version > dataVersion) {
+            entries.clear();
+            dataVersion = version;
+        }
+    }
+
+    /**
+     * Drop all the entries.
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached paths.
+     *
+     * @return the number of cached paths.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of hits.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests which were not in the cache.
+     *
+     * @return the number of misses.
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of paths removed because the cache was full or because they expired.
+     *
+     * @return the number of evictions.
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this, RouteCache::hitCount).tag("cache", "routes").tag("result", "hit")
+                .description("Best path requests answered from the cache").register(registry);
+        FunctionCounter.builder("cache.gets", this, RouteCache::missCount).tag("cache", "routes").tag("result", "miss")
+                .description("Best path requests which were not in the cache").register(registry);
+        FunctionCounter.builder("cache.evictions", this, RouteCache::evictionCount).tag("cache", "routes")
+                .description("Best paths removed from the cache").register(registry);
+        Gauge.builder("cache.size", this, RouteCache::size).tag("cache", "routes")
+                .description("Number of cached best paths").register(registry);
+    }
+
+    /**
+     * Normalized best path request.
+     *
+     * @param start starting position.
+     * @param end ending position.
+     * @param method TIME or DISTANCE.
+     * @param transportation METRO, METRO_FOOT or FOOT.
+     * @param engine routing engine.
+     * @param time departure time, or the time all the departure times of the request are equivalent to.
+     */
+    public record Key(String start, String end, String method, String transportation, String engine, int time) {
+    }
+
+    /**
+     * Cached path with its creation time.
+     *
+     * @param path cached path.
+     * @param created creation time in nanoseconds.
+     */
+    private record Entry(List<DjikstraSearchResultDTO> path, long created) {
+    }
+}
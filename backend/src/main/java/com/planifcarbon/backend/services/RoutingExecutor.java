@@ -0,0 +1,236 @@
+package com.planifcarbon.backend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * {@summary Executor of the CPU-bound searches of the services.}
+ * Searches run on a fixed number of threads, the number of processors by default, and wait in a bounded queue, so they
+ * never use more threads than the machine has cores whatever the number of request threads. When it is enabled, each
+ * search of a request runs there, the request thread only waits for it, and when the queue is full the search is
+ * rejected with a {@link java.util.concurrent.RejectedExecutionException}. When it is disabled, the default, a search
+ * runs on its request thread. In both cases the searches of a travel matrix or of a batch are shared between the
+ * calling thread and the threads of the executor by {@link #callAll}: it is the only pool of the searches.
+ * A search called from a thread running searches runs on it, so the searches never wait for each other.
+ */
+@Component
+public class RoutingExecutor {
+    /**
+     * Threads running the searches
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * If true each search runs on the threads of the executor, else on its request thread
+     */
+    private final boolean enabled;
+    /**
+     * Threads running their share of the searches of {@link #callAll}
+     */
+    private final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a new instance of RoutingExecutor.
+     *
+     * @param enabled if true each search runs on the threads of the executor.
+     * @param threads number of threads running the searches, 0 for the number of available processors.
+     * @param queueCapacity max number of searches waiting for a thread.
+     */
+    public RoutingExecutor(@Value("${routing.executor.enabled:false}") boolean enabled,
+                           @Value("${routing.executor.threads:0}") int threads,
+                           @Value("${routing.executor.queue-capacity:64}") int queueCapacity) {
+        if (threads < 0 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads has to be positive and the queue capacity at least 1");
+        }
+        this.enabled = enabled;
+        int nbThreads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(nbThreads, nbThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new RoutingThread(this, runnable, "routing-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns true if each search runs on the threads of the executor.
+     *
+     * @return true if the executor is enabled.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Returns the number of threads running the searches.
+     *
+     * @return the number of threads of the executor.
+     */
+    public int getThreads() {
+        return this.executor.getCorePoolSize();
+    }
+
+    /**
+     * Returns the number of searches waiting for a thread.
+     *
+     * @return the number of queued searches.
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Returns true if the current thread runs searches for the executor: it is one of its threads, or a thread running
+     * its share of the searches of {@link #callAll}.
+     *
+     * @return true if the caller runs searches.
+     */
+    public boolean isSearchThread() {
+        Thread current = Thread.currentThread();
+        return current instanceof RoutingThread thread && thread.owner == this || this.callers.contains(current);
+    }
+
+    /**
+     * Run a search and wait for its result.
+     *
+     * @param search the search to run.
+     * @param <T> type of the result.
+     * @return the result of the search.
+     * @throws java.util.concurrent.RejectedExecutionException if the queue of the executor is full.
+     */
+    public <T> T call(Supplier<T> search) {
+        if (!this.enabled || this.isSearchThread()) {
+            return search.get();
+        }
+        Future<T> future = this.executor.submit(search::get);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a search", e);
+        }
+    }
+
+    /**
+     * Run several searches at once and wait for all their results.
+     * The calling thread runs searches too, the threads of the executor help it as long as the queue has room, so the
+     * searches are never rejected. If some searches fail, the exception of the first of them is thrown once all are
+     * done.
+     *
+     * @param searches the searches to run.
+     * @param <T> type of the results.
+     * @return the result of each search, in the order of the searches.
+     */
+    public <T> List<T> callAll(List<? extends Supplier<? extends T>> searches) {
+        int size = searches.size();
+        Object[] results = new Object[size];
+        Throwable[] errors = new Throwable[size];
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(size);
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+                try {
+                    results[i] = searches.get(i).get();
+                } catch (Throwable e) {
+                    errors[i] = e;
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        if (this.isSearchThread()) {
+            worker.run();
+        } else {
+            int nbHelpers = Math.min(size, this.getThreads()) - 1;
+            try {
+                for (int i = 0; i < nbHelpers; i++) {
+                    this.executor.execute(worker);
+                }
+            } catch (RejectedExecutionException e) {
+                // The queue is full, the calling thread runs the searches left.
+            }
+            Thread current = Thread.currentThread();
+            this.callers.add(current);
+            try {
+                worker.run();
+            } finally {
+                this.callers.remove(current);
+            }
+            // The helpers which have not started have no search left to run.
+            int removed = 0;
+            while (removed < nbHelpers && this.executor.remove(worker)) {
+                removed++;
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the searches", e);
+        }
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                throw rethrow(errors[i]);
+            }
+            @SuppressWarnings("unchecked")
+            T result = (T) results[i];
+            list.add(result);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the exception to throw for the failure of a search.
+     *
+     * @param cause exception thrown by the search.
+     * @return the exception if it is unchecked, else an IllegalStateException caused by it.
+     * @throws Error if the search threw an error.
+     */
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException exception) {
+            return exception;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * Stop the threads of the executor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Thread of an executor, searches called from it run on it.
+     */
+    private static final class RoutingThread extends Thread {
+        private final RoutingExecutor owner;
+
+        RoutingThread(RoutingExecutor owner, Runnable runnable, String name) {
+            super(runnable, name);
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.planifcarbon.backend.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.SearchListener;
+import com.planifcarbon.backend.model.SearchStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * {@summary Metrics of the cost of the searches of the {@link MetroMap}.}
+ * Each search records its wall time in the {@code path.search} timer, and its settled nodes, relaxed segments, heap
+ * operations and schedule lookups in the {@code path.search.settled}, {@code path.search.relaxed},
+ * {@code path.search.heap.pushes}, {@code path.search.heap.decrease-keys} and {@code path.search.schedule.lookups}
+ * distribution summaries, see {@link SearchStats} for what each engine counts. All of them are tagged by engine,
+ * method and transportation. The summaries of a shape are registered by its first search which counts work, so that
+ * an engine which counts nothing only has its timer. Nothing is recorded until a meter registry is bound.
+ */
+@Component
+public class SearchMetrics implements SearchListener, MeterBinder {
+    private final Map<Shape, Meters> meters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    /**
+     * Creates a new instance of SearchMetrics, listening to the searches of the map.
+     *
+     * @param metroMap the MetroMap running the searches.
+     */
+    public SearchMetrics(MetroMap metroMap) {
+        metroMap.setSearchListener(this);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        this.meters.clear();
+    }
+
+    @Override
+    public void onSearch(SearchStats stats) {
+        MeterRegistry current = this.registry;
+        if (current == null) {
+            return;
+        }
+        Meters shapeMeters = this.meters.computeIfAbsent(new Shape(stats.engine(), stats.method(),
+                stats.transportation()), shape -> new Meters(current, shape));
+        shapeMeters.time.record(stats.nanos(), TimeUnit.NANOSECONDS);
+        Work work = shapeMeters.work;
+        if (work == null && (stats.settled() > 0 || stats.relaxed() > 0 || stats.scheduleLookups() > 0)) {
+            // Registering the same meters twice gives the same ones, a race only registers them once.
+            work = new Work(current, shapeMeters.tags);
+            shapeMeters.work = work;
+        }
+        if (work != null) {
+            work.settled.record(stats.settled());
+            work.relaxed.record(stats.relaxed());
+            work.pushes.record(stats.pushes());
+            work.decreaseKeys.record(stats.decreaseKeys());
+            work.scheduleLookups.record(stats.scheduleLookups());
+        }
+    }
+
+    /**
+     * Tags of a search.
+     *
+     * @param engine DIJKSTRA, ASTAR, RAPTOR or CSA.
+     * @param method TIME or DISTANCE.
+     * @param transportation METRO, METRO_FOOT or FOOT.
+     */
+    private record Shape(String engine, String method, String transportation) {
+        Tags tags() {
+            return Tags.of("engine", engine, "method", method, "transportation", transportation);
+        }
+    }
+
+    /**
+     * Meters of the searches of one shape, the work summaries are registered by the first search which counts work.
+     */
+    private static final class Meters {
+        private final Tags tags;
+        private final Timer time;
+        private volatile Work work;
+
+        Meters(MeterRegistry registry, Shape shape) {
+            this.tags = shape.tags();
+            this.time = Timer.builder("path.search").tags(tags).publishPercentiles(0.5, 0.95, 0.99)
+                    .description("Wall time of the searches").register(registry);
+        }
+    }
+
+    /**
+     * Summaries of the work of the searches of one shape.
+     */
+    private static final class Work {
+        private final DistributionSummary settled;
+        private final DistributionSummary relaxed;
+        private final DistributionSummary pushes;
+        private final DistributionSummary decreaseKeys;
+        private final DistributionSummary scheduleLookups;
+
+        Work(MeterRegistry registry, Tags tags) {
+            this.settled = summary(registry, "path.search.settled", "nodes", "Nodes settled by a search", tags);
+            this.relaxed = summary(registry, "path.search.relaxed", "segments", "Segments relaxed by a search", tags);
+            this.pushes = summary(registry, "path.search.heap.pushes", "operations", "Nodes inserted in the heap by a search",
+                    tags);
+            this.decreaseKeys = summary(registry, "path.search.heap.decrease-keys", "operations",
+                    "Keys decreased in the heap by a search", tags);
+            this.scheduleLookups = summary(registry, "path.search.schedule.lookups", "lookups",
+                    "Lookups of the next train by a search", tags);
+        }
+
+        private static DistributionSummary summary(MeterRegistry registry, String name, String unit, String description,
+                                                   Tags tags) {
+            return DistributionSummary.builder(name).baseUnit(unit).tags(tags).publishPercentiles(0.5, 0.95, 0.99)
+                    .description(description).register(registry);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Node;
+import com.planifcarbon.backend.model.PersonalizedNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures station to station searches of {@link MetroMap#dijkstra} and {@link MetroMap#getSegmentsFromAStar} on the
+ * bundled network, and searches between personalized nodes a few hundred meters away from the same stations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DijkstraBenchmark {
+    /** Pairs of station names, taken from map_data.csv. */
+    private static final String[][] QUERIES = {
+            {"Bercy", "Gare du Nord"},
+            {"Nation", "La Défense (Grande Arche)"},
+            {"Lourmel", "Porte de Clichy"},
+            {"Gambetta", "Bastille"},
+    };
+
+    @Param({"true", "false"})
+    private boolean bestTimePath;
+
+    private MetroMap map;
+    private Node[][] queries;
+    private Node[][] personalizedQueries;
+
+    /**
+     * Build the network once for all iterations.
+     */
+    @Setup
+    public void setup() {
+        map = new MetroMap();
+        map.initializeFields();
+        queries = new Node[QUERIES.length][];
+        for (int i = 0; i < QUERIES.length; i++) {
+            queries[i] = new Node[]{map.getStationByName(QUERIES[i][0]), map.getStationByName(QUERIES[i][1])};
+        }
+        personalizedQueries = new Node[QUERIES.length][];
+        for (int i = 0; i < QUERIES.length; i++) {
+            personalizedQueries[i] = new Node[]{near("start", queries[i][0]), near("end", queries[i][1])};
+        }
+    }
+
+    /**
+     * Returns a personalized node about 300 meters away from a node.
+     *
+     * @param name name of the personalized node.
+     * @param node node it is near.
+     * @return the personalized node.
+     */
+    private static Node near(String name, Node node) {
+        return new PersonalizedNode(name, node.getCoordinates().getLatitude() + 0.002,
+                node.getCoordinates().getLongitude() - 0.003);
+    }
+
+    /**
+     * Run every query of the fixed set with metro and walk segments allowed.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void metroAndWalk(Blackhole blackhole) {
+        for (Node[] query : queries) {
+            blackhole.consume(map.dijkstra(query[0], query[1], bestTimePath ? 35000 : 0, true, true, bestTimePath));
+        }
+    }
+
+    /**
+     * Run every query of the fixed set with A*, metro and walk segments allowed.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void metroAndWalkAStar(Blackhole blackhole) {
+        for (Node[] query : queries) {
+            blackhole.consume(map.getSegmentsFromAStar(query[0], query[1], bestTimePath ? 35000 : 0, true, true, bestTimePath));
+        }
+    }
+
+    /**
+     * Run every query of the fixed set between personalized nodes, metro and walk segments allowed.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void personalizedNodes(Blackhole blackhole) {
+        for (Node[] query : personalizedQueries) {
+            blackhole.consume(map.getSegmentsFromPath(query[0], query[1], bestTimePath ? 35000 : 0, true, true, bestTimePath));
+        }
+    }
+}
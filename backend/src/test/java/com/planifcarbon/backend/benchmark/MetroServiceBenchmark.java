@@ -0,0 +1,104 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.dtos.MetroDTO;
+import com.planifcarbon.backend.dtos.MetroLineStationSchedulesDTO;
+import com.planifcarbon.backend.dtos.NodeDTO;
+import com.planifcarbon.backend.dtos.StationCorrespondence;
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.services.MetroService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each projection of {@link MetroService} served by the metro endpoints, on the bundled network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetroServiceBenchmark {
+    private MetroService service;
+
+    /**
+     * Build the network once for all iterations.
+     */
+    @Setup
+    public void setup() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        service = new MetroService(map);
+    }
+
+    /**
+     * Names of the metro lines.
+     *
+     * @return the metro lines.
+     */
+    @Benchmark
+    public List<MetroDTO> getMetros() {
+        return service.getMetros();
+    }
+
+    /**
+     * Stations and schedules of line 1.
+     *
+     * @return the metro line.
+     */
+    @Benchmark
+    public MetroDTO getMetroByName() {
+        return service.getMetroByName("1");
+    }
+
+    /**
+     * Lines of every station.
+     *
+     * @return the correspondences of the stations.
+     */
+    @Benchmark
+    public List<StationCorrespondence> getAllStationsCorrespondence() {
+        return service.getAllStationsCorrespondence();
+    }
+
+    /**
+     * Stations with the most lines.
+     *
+     * @return the best served stations.
+     */
+    @Benchmark
+    public List<StationCorrespondence> getBestStations() {
+        return service.getBestStations();
+    }
+
+    /**
+     * Every station.
+     *
+     * @return the stations.
+     */
+    @Benchmark
+    public List<NodeDTO> getAllStations() {
+        return service.getAllStations();
+    }
+
+    /**
+     * Departures of line 1 at Châtelet.
+     *
+     * @return the schedules of the station.
+     */
+    @Benchmark
+    public MetroLineStationSchedulesDTO getLineSchedulesForStation() {
+        return service.getLineSchedulesForStation("Châtelet", "1");
+    }
+}
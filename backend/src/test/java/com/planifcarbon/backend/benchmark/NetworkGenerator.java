@@ -0,0 +1,173 @@
+package com.planifcarbon.backend.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * {@summary Generator of synthetic networks in the format of map_data.csv and timetables.csv.}
+ * Stations are laid out on a jittered grid about 650 meters apart, around Paris. Each row of the grid is cut in lines of
+ * 20 to 40 stations, and every fifth column gets lines too so that the lines cross. Each line has two variants, one per
+ * direction, running from 05:30 to 23:59 every 3 to 10 minutes at 30 km/h with a 20 seconds stop at each station.
+ * The same size and seed always give the same files.
+ */
+public final class NetworkGenerator {
+    private static final double LATITUDE = 48.8566;
+    private static final double LONGITUDE = 2.3522;
+    /** Grid step in degrees, about 650 meters. */
+    private static final double LATITUDE_STEP = 0.006;
+    private static final double LONGITUDE_STEP = 0.009;
+    private static final int MIN_LINE_LENGTH = 20;
+    private static final int MAX_LINE_LENGTH = 40;
+    private static final int CROSSING_COLUMNS = 5;
+    private static final int[] HEADWAYS = {3, 4, 5, 6, 8, 10};
+    private static final int FIRST_DEPARTURE = 5 * 60 + 30;
+    private static final int LAST_DEPARTURE = 23 * 60 + 59;
+    private static final double SPEED = 30;
+    private static final int STOP_DURATION = 20;
+
+    private NetworkGenerator() {}
+
+    /**
+     * Files of a synthetic network.
+     *
+     * @param metroFile file of the metro segments, in the format of map_data.csv.
+     * @param scheduleFile file of the departures, in the format of timetables.csv.
+     * @param stationNames names of the stations, in the order of the grid.
+     */
+    public record Network(Path metroFile, Path scheduleFile, List<String> stationNames) {
+    }
+
+    /**
+     * Write the files of a synthetic network.
+     *
+     * @param directory directory of the files.
+     * @param nbStations number of stations.
+     * @param seed seed of the random layout, lines and headways.
+     * @return the files of the network.
+     * @throws IOException if a file cannot be written.
+     */
+    public static Network write(Path directory, int nbStations, long seed) throws IOException {
+        if (nbStations < 2) {
+            throw new IllegalArgumentException("a network has at least 2 stations");
+        }
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(nbStations));
+        List<String> names = new ArrayList<>();
+        double[][] coordinates = new double[nbStations][];
+        for (int i = 0; i < nbStations; i++) {
+            int row = i / side;
+            int column = i % side;
+            names.add("Station " + row + "-" + column);
+            coordinates[i] = new double[]{
+                    LONGITUDE + (column - side / 2.0 + (random.nextDouble() - 0.5) / 2) * LONGITUDE_STEP,
+                    LATITUDE + (row - side / 2.0 + (random.nextDouble() - 0.5) / 2) * LATITUDE_STEP};
+        }
+
+        List<int[]> lines = new ArrayList<>();
+        for (int row = 0; row * side < nbStations; row++) {
+            List<Integer> stops = new ArrayList<>();
+            for (int i = row * side; i < Math.min(nbStations, (row + 1) * side); i++) {
+                stops.add(i);
+            }
+            cut(stops, random, lines);
+        }
+        for (int column = 0; column < side; column += CROSSING_COLUMNS) {
+            List<Integer> stops = new ArrayList<>();
+            for (int i = column; i < nbStations; i += side) {
+                stops.add(i);
+            }
+            cut(stops, random, lines);
+        }
+
+        Files.createDirectories(directory);
+        Path metroFile = directory.resolve("map_data.csv");
+        Path scheduleFile = directory.resolve("timetables.csv");
+        try (BufferedWriter metro = Files.newBufferedWriter(metroFile, StandardCharsets.UTF_8);
+             BufferedWriter schedules = Files.newBufferedWriter(scheduleFile, StandardCharsets.UTF_8)) {
+            for (int line = 0; line < lines.size(); line++) {
+                String lineName = "L" + line;
+                int headway = HEADWAYS[random.nextInt(HEADWAYS.length)];
+                for (int variant = 1; variant <= 2; variant++) {
+                    int[] stops = lines.get(line);
+                    for (int i = 0; i < stops.length - 1; i++) {
+                        int from = variant == 1 ? stops[i] : stops[stops.length - 1 - i];
+                        int to = variant == 1 ? stops[i + 1] : stops[stops.length - 2 - i];
+                        double distance = distance(coordinates[from], coordinates[to]);
+                        int duration = (int) Math.round(distance / SPEED * 3600) + STOP_DURATION;
+                        metro.write(names.get(from) + ";" + point(coordinates[from]) + ";" + names.get(to) + ";"
+                                + point(coordinates[to]) + ";" + lineName + " variant " + variant + ";"
+                                + duration(duration) + ";" + String.format(Locale.ROOT, "%.6f", distance * 10));
+                        metro.newLine();
+                    }
+                    String terminus = names.get(variant == 1 ? stops[0] : stops[stops.length - 1]);
+                    int offset = random.nextInt(headway);
+                    for (int time = FIRST_DEPARTURE + offset; time <= LAST_DEPARTURE; time += headway) {
+                        schedules.write(String.format(Locale.ROOT, "%s;%s;%02d:%02d;%d", lineName, terminus, time / 60,
+                                time % 60, variant));
+                        schedules.newLine();
+                    }
+                }
+            }
+        }
+        return new Network(metroFile, scheduleFile, names);
+    }
+
+    /**
+     * Cut a row or a column of stations in lines of 20 to 40 stations, a short end is added to the last line.
+     *
+     * @param stops stations of the row or the column, in order.
+     * @param random source of the line lengths.
+     * @param lines lines to add the new lines to.
+     */
+    private static void cut(List<Integer> stops, Random random, List<int[]> lines) {
+        int start = 0;
+        while (stops.size() - start >= 2) {
+            int length = MIN_LINE_LENGTH + random.nextInt(MAX_LINE_LENGTH - MIN_LINE_LENGTH + 1);
+            int end = stops.size() - (start + length) < MIN_LINE_LENGTH / 2 ? stops.size() : start + length;
+            lines.add(stops.subList(start, end).stream().mapToInt(Integer::intValue).toArray());
+            // Consecutive lines share a station.
+            start = end - 1;
+        }
+    }
+
+    /**
+     * Distance in km between two points, with an equirectangular approximation.
+     *
+     * @param from longitude and latitude.
+     * @param to longitude and latitude.
+     * @return the distance in km.
+     */
+    private static double distance(double[] from, double[] to) {
+        double latitude = Math.toRadians((from[1] + to[1]) / 2);
+        double x = Math.toRadians(to[0] - from[0]) * Math.cos(latitude);
+        double y = Math.toRadians(to[1] - from[1]);
+        return Math.sqrt(x * x + y * y) * 6371;
+    }
+
+    /**
+     * Format a point as in map_data.csv.
+     *
+     * @param point longitude and latitude.
+     * @return the point, longitude first.
+     */
+    private static String point(double[] point) {
+        return String.format(Locale.ROOT, "%.12f, %.12f", point[0], point[1]);
+    }
+
+    /**
+     * Format a duration so that the parser reads it back, the parser reads "m:ss" as (m.ss * 10) seconds rounded up.
+     *
+     * @param seconds duration in seconds, at least 1.
+     * @return the duration as in map_data.csv.
+     */
+    private static String duration(int seconds) {
+        return (seconds - 1) / 10 + ":" + (seconds - 1) % 10 + "9";
+    }
+}
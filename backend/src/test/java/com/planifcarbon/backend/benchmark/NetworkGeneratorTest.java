@@ -0,0 +1,45 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroLine;
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Station;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NetworkGenerator} class.
+ */
+class NetworkGeneratorTest {
+
+    /**
+     * Tests that a generated network is read back from the file system, with its lines, schedules and paths.
+     */
+    @Test
+    void testGeneratedNetworkBoots(@TempDir Path directory) throws IOException {
+        NetworkGenerator.Network network = NetworkGenerator.write(directory, 400, 7);
+        assertEquals(400, network.stationNames().size());
+        assertEquals(Files.readAllLines(network.metroFile()),
+                Files.readAllLines(NetworkGenerator.write(directory.resolve("again"), 400, 7).metroFile()));
+
+        MetroMap map = new MetroMap();
+        map.setMaxWalkDistance(0.5);
+        map.setWalkNeighbours(3);
+        map.initializeFieldsFrom(network.metroFile().toString(), network.scheduleFile().toString());
+        assertEquals(400, map.getStations().size());
+        assertFalse(map.getLines().isEmpty());
+        for (MetroLine line : map.getLines().values()) {
+            assertTrue(line.getStations().size() >= 2);
+            assertFalse(line.getSchedules().isEmpty());
+        }
+        Station start = map.getStationByName(network.stationNames().get(0));
+        Station end = map.getStationByName(network.stationNames().get(399));
+        assertFalse(map.getSegmentsFromPath(start, end, 35000, true, false, true).isEmpty());
+        assertFalse(map.getSegmentsFromRaptor(start, end, 35000, true, true).isEmpty());
+    }
+}
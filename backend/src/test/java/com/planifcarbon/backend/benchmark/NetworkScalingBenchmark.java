@@ -0,0 +1,142 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Node;
+import com.planifcarbon.backend.model.PersonalizedNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the boot of {@link MetroMap} and its queries on synthetic networks of growing size written by the
+ * {@link NetworkGenerator}. Walks are bounded to 500 meters and the 3 nearest stations, linking every pair of stations
+ * does not fit in memory past a few thousand stations. The heap retained by a booted network is logged by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NetworkScalingBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(NetworkScalingBenchmark.class);
+    private static final long SEED = 42;
+    private static final int NB_QUERIES = 8;
+
+    @Param({"1000", "10000", "50000"})
+    private int stations;
+
+    private NetworkGenerator.Network network;
+    private MetroMap map;
+    private Node[][] queries;
+    private Node[][] personalizedQueries;
+
+    /**
+     * Write the network, or reuse the files of a previous run, boot it once for the queries and log its heap.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "planifcarbon-network-" + stations + "-" + SEED);
+        network = NetworkGenerator.write(directory, stations, SEED);
+        long before = usedHeap();
+        map = boot();
+        logger.info("{} stations: {} segments file bytes, {} timetable bytes, {} MB of heap retained", stations,
+                Files.size(network.metroFile()), Files.size(network.scheduleFile()), (usedHeap() - before) >> 20);
+
+        Random random = new Random(SEED);
+        List<String> names = network.stationNames();
+        queries = new Node[NB_QUERIES][];
+        personalizedQueries = new Node[NB_QUERIES][];
+        for (int i = 0; i < NB_QUERIES; i++) {
+            Node start = map.getStationByName(names.get(random.nextInt(names.size())));
+            Node end = map.getStationByName(names.get(random.nextInt(names.size())));
+            queries[i] = new Node[]{start, end};
+            personalizedQueries[i] = new Node[]{
+                    new PersonalizedNode("start", start.getCoordinates().getLatitude() + 0.002,
+                            start.getCoordinates().getLongitude() - 0.003),
+                    new PersonalizedNode("end", end.getCoordinates().getLatitude() - 0.002,
+                            end.getCoordinates().getLongitude() + 0.003)};
+        }
+    }
+
+    /**
+     * Returns the heap used after a full collection.
+     *
+     * @return the used heap in bytes.
+     */
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Parse the files of the network and build the map.
+     *
+     * @return the network.
+     */
+    private MetroMap boot() {
+        MetroMap metroMap = new MetroMap();
+        metroMap.setMaxWalkDistance(0.5);
+        metroMap.setWalkNeighbours(3);
+        metroMap.initializeFieldsFrom(network.metroFile().toString(), network.scheduleFile().toString());
+        return metroMap;
+    }
+
+    /**
+     * Boot the network from its files.
+     *
+     * @return the network.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public MetroMap initializeFields() {
+        return boot();
+    }
+
+    /**
+     * Run the station to station queries, best time with metro and walk segments.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void stationQueries(Blackhole blackhole) {
+        for (Node[] query : queries) {
+            blackhole.consume(map.getSegmentsFromPath(query[0], query[1], 35000, true, true, true));
+        }
+    }
+
+    /**
+     * Run the queries between personalized nodes near the same stations, best time with metro and walk segments.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void personalizedQueries(Blackhole blackhole) {
+        for (Node[] query : personalizedQueries) {
+            blackhole.consume(map.getSegmentsFromPath(query[0], query[1], 35000, true, true, true));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse of the bundled CSV files by {@link Parser#parse} and the whole boot of the network by
+ * {@link MetroMap#initializeFields}, which parses the files and builds the graph, the walk segments and the snapshot,
+ * or loads the network from a binary snapshot file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+    private Path snapshotFile;
+
+    /**
+     * Parse map_data.csv and timetables.csv.
+     *
+     * @param blackhole sink for the results.
+     * @throws IOException if a file cannot be read.
+     */
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        blackhole.consume(new Parser().parse("data/map_data.csv", "data/timetables.csv"));
+    }
+
+    /**
+     * Write the snapshot of the network built from the bundled files, loaded by {@link #initializeFromSnapshot()}.
+     *
+     * @throws IOException if the snapshot file cannot be created.
+     */
+    @Setup
+    public void writeSnapshot() throws IOException {
+        snapshotFile = Files.createTempFile("planifcarbon-network", ".bin");
+        Files.delete(snapshotFile);
+        MetroMap map = new MetroMap();
+        map.setSnapshotPath(snapshotFile.toString());
+        map.initializeFields();
+    }
+
+    /**
+     * Delete the snapshot file.
+     *
+     * @throws IOException if the snapshot file cannot be deleted.
+     */
+    @TearDown
+    public void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    /**
+     * Build a new network from the bundled files.
+     *
+     * @return the network.
+     */
+    @Benchmark
+    public MetroMap initializeFields() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        return map;
+    }
+
+    /**
+     * Load a new network from the snapshot of the bundled files, the files are only read for their checksum.
+     *
+     * @return the network.
+     */
+    @Benchmark
+    public MetroMap initializeFromSnapshot() {
+        MetroMap map = new MetroMap();
+        map.setSnapshotPath(snapshotFile.toString());
+        map.initializeFields();
+        return map;
+    }
+}
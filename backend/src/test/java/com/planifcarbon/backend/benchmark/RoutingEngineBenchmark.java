@@ -0,0 +1,75 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the routing engines of {@link MetroMap} on earliest arrival queries of the bundled network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingEngineBenchmark {
+    /** Pairs of station names, taken from map_data.csv. */
+    private static final String[][] QUERIES = {
+            {"Bercy", "Gare du Nord"},
+            {"Nation", "La Défense (Grande Arche)"},
+            {"Lourmel", "Porte de Clichy"},
+            {"Gambetta", "Bastille"},
+    };
+
+    @Param({"DIJKSTRA", "RAPTOR", "CSA"})
+    private String engine;
+
+    @Param({"true", "false"})
+    private boolean walk;
+
+    private MetroMap map;
+    private Node[][] queries;
+
+    /**
+     * Build the network once for all iterations.
+     */
+    @Setup
+    public void setup() {
+        map = new MetroMap();
+        map.initializeFields();
+        queries = new Node[QUERIES.length][];
+        for (int i = 0; i < QUERIES.length; i++) {
+            queries[i] = new Node[]{map.getStationByName(QUERIES[i][0]), map.getStationByName(QUERIES[i][1])};
+        }
+    }
+
+    /**
+     * Run every query of the fixed set at 9:43 with the selected engine.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void earliestArrival(Blackhole blackhole) {
+        for (Node[] query : queries) {
+            switch (engine) {
+                case "RAPTOR" -> blackhole.consume(map.getSegmentsFromRaptor(query[0], query[1], 35000, true, walk));
+                case "CSA" -> blackhole.consume(map.getSegmentsFromConnectionScan(query[0], query[1], 35000, true, walk));
+                default -> blackhole.consume(map.getSegmentsFromPath(query[0], query[1], 35000, true, walk, true));
+            }
+        }
+    }
+}
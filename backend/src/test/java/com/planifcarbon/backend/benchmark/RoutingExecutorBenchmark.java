@@ -0,0 +1,83 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.services.AdmissionController;
+import com.planifcarbon.backend.services.PathService;
+import com.planifcarbon.backend.services.RouteCache;
+import com.planifcarbon.backend.services.RoutingExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of {@link PathService} with many concurrent callers, the searches running on the calling threads or on
+ * the {@link RoutingExecutor}. Sampled times give the throughput and the latency percentiles of each mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class RoutingExecutorBenchmark {
+    /** Pairs of station names, taken from map_data.csv. */
+    private static final List<String[]> QUERIES = List.of(
+            new String[]{"Bercy", "Gare du Nord"},
+            new String[]{"Nation", "La Défense (Grande Arche)"},
+            new String[]{"Lourmel", "Porte de Clichy"},
+            new String[]{"Gambetta", "Bastille"});
+
+    @Param({"false", "true"})
+    private boolean executor;
+
+    private RoutingExecutor routingExecutor;
+    private PathService service;
+
+    /**
+     * Build the network once for all iterations, without cache so that every call runs a search.
+     */
+    @Setup
+    public void setup() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        routingExecutor = new RoutingExecutor(executor, 0, 1024);
+        service = new PathService(map, new RouteCache(0, Duration.ZERO), routingExecutor,
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+    }
+
+    /**
+     * Stop the threads of the executor.
+     */
+    @TearDown
+    public void tearDown() {
+        routingExecutor.shutdown();
+    }
+
+    /**
+     * Run a random query between 8:00 and 20:00, every caller uses another time so no search is shared.
+     *
+     * @return the best path.
+     */
+    @Benchmark
+    public Object bestPath() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] query = QUERIES.get(random.nextInt(QUERIES.size()));
+        return service.getBestPath(query[0], query[1], 28800 + random.nextInt(43200), "TIME", "METRO_FOOT");
+    }
+}
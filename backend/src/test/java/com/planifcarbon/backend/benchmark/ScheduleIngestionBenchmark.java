@@ -0,0 +1,79 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse of a timetable by {@link Parser#calculateSchedules(String, int)}, on the calling thread and in
+ * parallel chunks, for the bundled timetables.csv and for the timetable of a synthetic network of about a million rows
+ * written by the {@link NetworkGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScheduleIngestionBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleIngestionBenchmark.class);
+    private static final long SEED = 42;
+    /** Size of the synthetic network whose timetable has about a million rows. */
+    private static final int GENERATED_STATIONS = 64000;
+
+    @Param({"bundled", "generated"})
+    private String timetable;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private String scheduleFile;
+
+    /**
+     * Write the synthetic network, or reuse the files of a previous run, and log the number of rows of the timetable.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        if (timetable.equals("bundled")) {
+            scheduleFile = "data/timetables.csv";
+        } else {
+            Path directory = Path.of(System.getProperty("java.io.tmpdir"),
+                    "planifcarbon-network-" + GENERATED_STATIONS + "-" + SEED);
+            Path file = NetworkGenerator.write(directory, GENERATED_STATIONS, SEED).scheduleFile();
+            try (var lines = Files.lines(file)) {
+                logger.info("{} timetable rows, {} bytes", lines.count(), Files.size(file));
+            }
+            scheduleFile = file.toString();
+        }
+    }
+
+    /**
+     * Parse the timetable.
+     *
+     * @param blackhole sink for the results.
+     * @throws IOException if the file cannot be read.
+     */
+    @Benchmark
+    public void calculateSchedules(Blackhole blackhole) throws IOException {
+        blackhole.consume(Parser.calculateSchedules(scheduleFile, parallelism));
+    }
+}
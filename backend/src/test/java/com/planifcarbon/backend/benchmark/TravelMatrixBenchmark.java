@@ -0,0 +1,81 @@
+package com.planifcarbon.backend.benchmark;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Station;
+import com.planifcarbon.backend.services.AdmissionController;
+import com.planifcarbon.backend.services.MatrixService;
+import com.planifcarbon.backend.services.PathService;
+import com.planifcarbon.backend.services.RouteCache;
+import com.planifcarbon.backend.services.RoutingExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the scaling of {@link MatrixService} with the threads of its {@link RoutingExecutor}, on the matrix of all the stations of the bundled
+ * network. The speedup is bounded by the number of cores of the machine running the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TravelMatrixBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"TIME", "DISTANCE"})
+    private String method;
+
+    private RoutingExecutor routingExecutor;
+    private MatrixService service;
+    private List<String> stations;
+
+    /**
+     * Build the network and the executor once for all iterations.
+     */
+    @Setup
+    public void setup() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        routingExecutor = new RoutingExecutor(false, parallelism, 64);
+        PathService pathService = new PathService(map, new RouteCache(0, Duration.ZERO), routingExecutor,
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        service = new MatrixService(map, pathService, routingExecutor);
+        stations = map.getAllStations().stream().map(Station::getName).sorted().toList();
+    }
+
+    /**
+     * Stop the threads of the executor.
+     */
+    @TearDown
+    public void tearDown() {
+        routingExecutor.shutdown();
+    }
+
+    /**
+     * Compute the matrix between all the stations at 9:43.
+     *
+     * @param blackhole sink for the results.
+     */
+    @Benchmark
+    public void allStations(Blackhole blackhole) {
+        blackhole.consume(service.getTravelMatrix(stations, stations, 35000, method, "METRO_FOOT"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.planifcarbon.backend.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Unit tests for the {@link VirtualThreadConfiguration} class.
+ */
+class VirtualThreadConfigurationTest {
+
+    /**
+     * Tests that Tomcat gets a virtual thread executor only when the runtime has virtual threads.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProtocolHandlerCustomizer() {
+        Executor executor = VirtualThreadConfiguration.virtualThreadExecutor();
+        assertEquals(Runtime.version().feature() >= 21, executor != null);
+
+        TomcatProtocolHandlerCustomizer<ProtocolHandler> customizer =
+                (TomcatProtocolHandlerCustomizer<ProtocolHandler>) new VirtualThreadConfiguration()
+                        .virtualThreadsProtocolHandlerCustomizer();
+        ProtocolHandler protocolHandler = Mockito.mock(ProtocolHandler.class);
+        customizer.customize(protocolHandler);
+        Mockito.verify(protocolHandler, Mockito.times(executor == null ? 0 : 1)).setExecutor(any());
+    }
+}
@@ -1,17 +1,22 @@
 package com.planifcarbon.backend.controllers;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Locale;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -31,7 +36,7 @@ class PathControllerTest {
     private MockMvc mvc;
 
     /**
-     * Tests the {@link PathController#getBestTimePath(String, String, Integer, String, String)} method with
+     * Tests the {@link PathController#getBestTimePath(String, String, Integer, String, String, String)} method with
      * valid input parameters.
      *
      * @param startNode the starting node of the path
@@ -51,6 +56,110 @@ class PathControllerTest {
         assertEquals("application/json", response.getContentType());
     }
 
+    /**
+     * Tests the {@link PathController#getBestTimePath(String, String, Integer, String, String, String)} method with
+     * the routing engine given as parameter.
+     *
+     * @param engine the routing engine to use
+     * @throws Exception if an error occurs during the test
+     */
+    @ParameterizedTest
+    @CsvSource({"DIJKSTRA", "ASTAR", "RAPTOR", "CSA"})
+    void getBestPathWithEngine(String engine) throws Exception {
+        String query = getQuery("Bercy", "Gare du Nord", 53100, "TIME", "METRO") + "&engine=" + engine;
+        MvcResult result = mvc.perform(get(query)).andExpect(status().isOk()).andReturn();
+        assertEquals("application/json", result.getResponse().getContentType());
+    }
+
+    /**
+     * Tests that an unknown routing engine is refused with a 400 (Bad Request), whatever the locale of the server.
+     *
+     * @param engine the routing engine to use
+     * @param expectedStatus the expected status of the response
+     * @throws Exception if an error occurs during the test
+     */
+    @ParameterizedTest
+    @CsvSource({"raptr, 400, TIME", "astar2, 400, DISTANCE", "dijkstra, 200, DISTANCE", "csa, 200, DISTANCE", "raptor, 200, TIME"})
+    void getBestPathWithUnknownEngine(String engine, int expectedStatus, String method) throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            String query = getQuery("Bercy", "Gare du Nord", 53100, method, "METRO") + "&engine=" + engine;
+            MvcResult result = mvc.perform(get(query)).andReturn();
+            assertEquals(expectedStatus, result.getResponse().getStatus());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    /**
+     * Tests the {@link PathController#getIsochrone(String, Integer, String, String, Double, Long)} method.
+     *
+     * @param method the method to use
+     * @param limit the max travel time / distance
+     * @param timeout the time budget of the search in milliseconds
+     * @param expectedStatus the expected status of the response
+     * @throws Exception if an error occurs during the test
+     */
+    @ParameterizedTest
+    @CsvSource({"TIME, 1800, 0, 200", "DISTANCE, 3, 60000, 200", "TIME, -1, 0, 400"})
+    void getIsochrone(String method, double limit, long timeout, int expectedStatus) throws Exception {
+        String query = String.format("/api/path/isochrone?start=Bercy&time=53100&method=%s&transportation=METRO_FOOT&limit=%s"
+                + "&timeout=%d", method, limit, timeout);
+        MvcResult result = mvc.perform(get(query)).andReturn();
+        assertEquals(expectedStatus, result.getResponse().getStatus());
+    }
+
+    /**
+     * Tests the {@link PathController#getTravelMatrix} method.
+     *
+     * @param destination the destination station of the matrix
+     * @param expectedStatus the expected status of the response
+     * @throws Exception if an error occurs during the test
+     */
+    @ParameterizedTest
+    @CsvSource({"Gare du Nord, 200", "Nowhere, 400"})
+    void getTravelMatrix(String destination, int expectedStatus) throws Exception {
+        String body = String.format("{\"origins\": [\"Bercy\", \"Nation\"], \"destinations\": [\"%s\", \"Bastille\"], "
+                + "\"time\": 53100, \"method\": \"TIME\", \"transportation\": \"METRO_FOOT\"}", destination);
+        MvcResult result = mvc.perform(post("/api/path/matrix").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andReturn();
+        assertEquals(expectedStatus, result.getResponse().getStatus());
+    }
+
+    /**
+     * Tests the {@link PathController#getBestPaths} method, a failed request gives an error in its result and the
+     * batch is still answered.
+     *
+     * @throws Exception if an error occurs during the test
+     */
+    @Test
+    void getBestPaths() throws Exception {
+        String body = "[{\"start\": \"Bercy\", \"end\": \"Gare du Nord\", \"time\": 53100, \"method\": \"TIME\", "
+                + "\"transportation\": \"METRO\"}, {\"start\": \"Nowhere\", \"end\": \"Bercy\", \"time\": 0}]";
+        MvcResult result = mvc.perform(post("/api/path/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk()).andReturn();
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content.startsWith("[{\"path\":[{"));
+        assertTrue(content.contains("{\"path\":null,\"error\":"));
+    }
+
+    /**
+     * Tests that the {@link PathController#getBestPaths} method refuses a missing or null batch with a 400 (Bad
+     * Request), and answers an empty one.
+     *
+     * @param body the body of the request
+     * @param expectedStatus the expected status of the response
+     * @throws Exception if an error occurs during the test
+     */
+    @ParameterizedTest
+    @CsvSource(value = {"'', 400", "null, 400", "[], 200"})
+    void getBestPathsWithoutRequests(String body, int expectedStatus) throws Exception {
+        MvcResult result = mvc.perform(post("/api/path/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andReturn();
+        assertEquals(expectedStatus, result.getResponse().getStatus());
+    }
+
     private String getQuery(String startNode, String endNode, int time, String method, String transportation) {
         return String.format("/api/path/best-path?start=%s&end=%s&time=%d&method=%s&transportation=%s",startNode, endNode, time, method, transportation);
     }
@@ -0,0 +1,201 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ConnectionScan} class.
+ */
+public class ConnectionScanTest {
+    private static MetroMap map;
+    private static List<Station> stations;
+
+    /**
+     * Build the network once for all tests.
+     */
+    @BeforeAll
+    static void setUp() {
+        map = new MetroMap();
+        map.initializeFields();
+        stations = map.getAllStations().stream().sorted(Comparator.comparing(Node::getName)).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the arrival time of a path, or -1 if there is no path.
+     *
+     * @param segments the segments of the path.
+     * @return the arrival time at the end of the path.
+     */
+    private static double arrival(List<DataSegment> segments) {
+        return segments.isEmpty() ? -1 : segments.get(segments.size() - 1).getArrivalTime();
+    }
+
+    /**
+     * Tests that the Connection Scan gives the same arrival time as dijkstra between random stations.
+     *
+     * @param time departure time.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     */
+    @ParameterizedTest
+    @CsvSource({"35000, true, false", "35000, true, true", "53100, true, false", "53100, true, true", "79200, true, true",
+            "20000, false, true"})
+    public void testSameArrivalAsDijkstra(int time, boolean metro, boolean walk) {
+        Random random = new Random(time);
+        for (int i = 0; i < 30; i++) {
+            Station start = stations.get(random.nextInt(stations.size()));
+            Station end = stations.get(random.nextInt(stations.size()));
+            List<DataSegment> dijkstra = map.getSegmentsFromPath(start, end, time, metro, walk, true);
+            List<DataSegment> csa = map.getSegmentsFromConnectionScan(start, end, time, metro, walk);
+            assertEquals(arrival(dijkstra), arrival(csa), start.getName() + " -> " + end.getName());
+        }
+    }
+
+    /**
+     * Tests that the Connection Scan gives the same arrival time as dijkstra with personalized nodes.
+     *
+     * @param time departure time.
+     */
+    @ParameterizedTest
+    @CsvSource({"35000", "36000"})
+    public void testSameArrivalWithPersonalizedNodes(int time) {
+        Node a = new PersonalizedNode("A", 48.846408, 2.395640);
+        Node b = new PersonalizedNode("B", 48.893216, 2.234292);
+        Node nation = map.getStationByName("Nation");
+        assertEquals(arrival(map.getSegmentsFromPath(a, b, time, true, true, true)),
+                arrival(map.getSegmentsFromConnectionScan(a, b, time, true, true)));
+        assertEquals(arrival(map.getSegmentsFromPath(nation, b, time, true, true, true)),
+                arrival(map.getSegmentsFromConnectionScan(nation, b, time, true, true)));
+        assertEquals(arrival(map.getSegmentsFromPath(a, nation, time, false, true, true)),
+                arrival(map.getSegmentsFromConnectionScan(a, nation, time, false, true)));
+        assertTrue(map.getSegmentsFromConnectionScan(a, nation, time, true, false).isEmpty());
+    }
+
+    /**
+     * Tests that the segments of a Connection Scan path are chained and that times never decrease.
+     *
+     * @param walk if walk segments are allowed.
+     */
+    @ParameterizedTest
+    @CsvSource({"false", "true"})
+    public void testPathIsChained(boolean walk) {
+        Node start = map.getStationByName("Gare de Lyon");
+        Node end = map.getStationByName("Gare du Nord");
+        List<DataSegment> segments = map.getSegmentsFromConnectionScan(start, end, 35000, true, walk);
+        assertFalse(segments.isEmpty());
+        assertEquals(start, segments.get(0).getNodeStart());
+        assertEquals(end, segments.get(segments.size() - 1).getNodeEnd());
+        for (int i = 1; i < segments.size(); i++) {
+            assertEquals(segments.get(i - 1).getNodeEnd(), segments.get(i).getNodeStart());
+            assertTrue(segments.get(i - 1).getArrivalTime() <= segments.get(i).getArrivalTime());
+        }
+    }
+
+    /**
+     * Tests that every trip of every line is cut into connections.
+     */
+    @Test
+    public void testConnectionCount() {
+        RoutePatterns patterns = map.getRoutePatterns();
+        int expected = 0;
+        for (int route = 0; route < patterns.routeCount(); route++) {
+            expected += patterns.departures(route).length * (patterns.stops(route).length - 1);
+        }
+        assertNotEquals(0, expected);
+        assertEquals(expected, map.getConnectionScan().connectionCount());
+    }
+
+    /**
+     * Tests that there is no path after the last train without walking.
+     */
+    @Test
+    public void testNoTrainLeft() {
+        Node start = map.getStationByName("Nation");
+        Node end = map.getStationByName("Bercy");
+        assertTrue(map.getSegmentsFromConnectionScan(start, end, 200000, true, false).isEmpty());
+        assertFalse(map.getSegmentsFromConnectionScan(start, end, 200000, true, true).isEmpty());
+    }
+
+    /**
+     * Tests the invalid inputs of the Connection Scan engine.
+     */
+    @Test
+    public void testThrows() {
+        Node start = map.getStationByName("Nation");
+        assertThrows(IllegalArgumentException.class, () -> map.getSegmentsFromConnectionScan(null, start, 0, true, true));
+        assertThrows(IllegalArgumentException.class, () -> map.getSegmentsFromConnectionScan(start, start, -1, true, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> map.getSegmentsFromConnectionScan(new NodeForTest("X", 0, 0), start, 0, true, true));
+        assertTrue(map.getSegmentsFromConnectionScan(start, start, 0, true, true).isEmpty());
+        assertTrue(map.getSegmentsFromConnectionScan(start, new NodeForTest("X", 0, 0), 0, true, true).isEmpty());
+    }
+
+    /**
+     * Tests that with bounded walks the footpaths of a stop are its walk segments and the chains of walk segments up to
+     * the walk radius, not every pair of stops.
+     */
+    @Test
+    public void testFootpathsAreBounded() {
+        MetroMap bounded = new MetroMap();
+        bounded.setMaxWalkDistance(0.5);
+        bounded.setWalkNeighbours(3);
+        bounded.initializeFields();
+        GraphSnapshot graph = bounded.getSnapshot();
+        ConnectionScan.Tables tables = bounded.getConnectionScan().tables();
+        int maxDuration = SegmentWalk.durationFor(0.5);
+        int nbNodes = graph.nodeCount();
+        assertTrue(tables.footTargets().length < (long) nbNodes * (nbNodes - 1) / 4);
+        for (int p = 0; p < nbNodes; p++) {
+            for (int edge = graph.firstWalkEdge(p); edge < graph.endEdge(p); edge++) {
+                assertTrue(hasFootpath(tables, p, graph.target(edge)));
+            }
+            for (int f = tables.footOffsets()[p]; f < tables.footOffsets()[p + 1]; f++) {
+                assertNotEquals(p, tables.footTargets()[f]);
+                assertTrue(tables.footDurations()[f] <= maxDuration || isWalkEdge(graph, p, tables.footTargets()[f]));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the tables have a footpath between two stops.
+     *
+     * @param tables tables of the engine.
+     * @param from stop the footpath starts from.
+     * @param to stop the footpath goes to.
+     * @return true if there is a footpath.
+     */
+    private static boolean hasFootpath(ConnectionScan.Tables tables, int from, int to) {
+        for (int f = tables.footOffsets()[from]; f < tables.footOffsets()[from + 1]; f++) {
+            if (tables.footTargets()[f] == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the graph has a walk segment between two nodes.
+     *
+     * @param graph the graph snapshot.
+     * @param from node the segment starts from.
+     * @param to node the segment goes to.
+     * @return true if there is a walk segment.
+     */
+    private static boolean isWalkEdge(GraphSnapshot graph, int from, int to) {
+        for (int edge = graph.firstWalkEdge(from); edge < graph.endEdge(from); edge++) {
+            if (graph.target(edge) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,164 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link GraphSnapshot} class.
+ */
+public class GraphSnapshotTest {
+
+    /**
+     * Tests that every segment of the graph becomes an edge of the snapshot with the same values.
+     */
+    @Test
+    public void testSnapshotEdges() {
+        MetroMap map = new MetroMap();
+        map.addNode("A", 1.0, 2.0, Station.class);
+        map.addNode("B", 1.0, 2.1, Station.class);
+        map.addSegmentMetro(new NodeForTest("A", 0, 0), new NodeForTest("B", 0, 0), 2.0, 40, "1");
+        map.addSegmentWalk(new NodeForTest("A", 0, 0), new NodeForTest("B", 0, 0), 2.0);
+        map.addSegmentWalk(new NodeForTest("B", 0, 0), new NodeForTest("C", 0, 0), 3.0);
+
+        GraphSnapshot snapshot = map.getSnapshot();
+        assertEquals(3, snapshot.nodeCount());
+        assertEquals(3, snapshot.edgeCount());
+        assertEquals(-1, snapshot.indexOf(new NodeForTest("D", 0, 0)));
+
+        int a = snapshot.indexOf(new NodeForTest("A", 0, 0));
+        int b = snapshot.indexOf(new NodeForTest("B", 0, 0));
+        int c = snapshot.indexOf(new NodeForTest("C", 0, 0));
+        assertEquals("A", snapshot.node(a).getName());
+        assertEquals(2, snapshot.endEdge(a) - snapshot.firstEdge(a));
+        assertEquals(1, snapshot.endEdge(b) - snapshot.firstEdge(b));
+        assertEquals(0, snapshot.endEdge(c) - snapshot.firstEdge(c));
+
+        int nbWalk = 0;
+        for (int edge = snapshot.firstEdge(a); edge < snapshot.endEdge(a); edge++) {
+            assertEquals(b, snapshot.target(edge));
+            assertEquals(2.0f, snapshot.distance(edge));
+            if (snapshot.isWalk(edge)) {
+                nbWalk++;
+                assertEquals(GraphSnapshot.NO_LINE, snapshot.lineId(edge));
+                assertNull(snapshot.line(snapshot.lineId(edge)));
+            } else {
+                assertEquals(40, snapshot.duration(edge));
+                assertNotEquals(GraphSnapshot.NO_LINE, snapshot.lineId(edge));
+            }
+        }
+        assertEquals(1, nbWalk);
+        assertEquals(c, snapshot.target(snapshot.firstEdge(b)));
+    }
+
+    /**
+     * Tests that the metro edges of each node come before its walking edges.
+     */
+    @Test
+    public void testEdgesSlicedByMode() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        GraphSnapshot snapshot = map.getSnapshot();
+        for (int u = 0; u < snapshot.nodeCount(); u++) {
+            assertTrue(snapshot.firstEdge(u) <= snapshot.firstWalkEdge(u));
+            assertTrue(snapshot.firstWalkEdge(u) <= snapshot.endEdge(u));
+            for (int edge = snapshot.firstEdge(u); edge < snapshot.endEdge(u); edge++) {
+                assertEquals(edge >= snapshot.firstWalkEdge(u), snapshot.isWalk(edge));
+            }
+            assertEquals(map.getSegmentsMetro(snapshot.node(u)).size(), snapshot.firstWalkEdge(u) - snapshot.firstEdge(u));
+        }
+    }
+
+    /**
+     * Tests that metro edges are linked to the metro lines of the network.
+     */
+    @Test
+    public void testSnapshotLines() {
+        Station a = new Station("A", 1.0, 2.0);
+        Station b = new Station("B", 1.0, 2.1);
+        MetroLine line = new MetroLine("1 variant 1", Set.of(a, b), new ArrayList<>(List.of(10, 20)), a);
+        Map<Node, Set<Segment>> graph = new HashMap<>();
+        graph.put(a, Set.of(new SegmentMetro(a, b, 1.0, 30, "1 variant 1")));
+        graph.put(b, Set.of(new SegmentWalk(b, a)));
+
+        GraphSnapshot snapshot = new GraphSnapshot(graph, Map.of("1 variant 1", line));
+        int edge = snapshot.firstEdge(snapshot.indexOf(a));
+        assertFalse(snapshot.isWalk(edge));
+        assertEquals(line, snapshot.line(snapshot.lineId(edge)));
+        assertTrue(snapshot.isWalk(snapshot.firstEdge(snapshot.indexOf(b))));
+    }
+
+    /**
+     * Tests that the departures of a metro edge are the line departures shifted by the time from the terminus.
+     */
+    @Test
+    public void testNextDeparture() {
+        Station a = new Station("A", 1.0, 2.0);
+        Station b = new Station("B", 1.0, 2.1);
+        Station c = new Station("C", 1.0, 2.2);
+        MetroLine line = new MetroLine("1 variant 1", Set.of(a, b, c), new ArrayList<>(List.of(200, 100)), a);
+        b.addSchedule(new ScheduleKey(a, line), 30);
+        Map<Node, Set<Segment>> graph = new HashMap<>();
+        graph.put(a, Set.of(new SegmentMetro(a, b, 1.0, 30, "1 variant 1")));
+        graph.put(b, Set.of(new SegmentMetro(b, c, 1.0, 40, "1 variant 1"), new SegmentWalk(b, a)));
+
+        GraphSnapshot snapshot = new GraphSnapshot(graph, Map.of("1 variant 1", line));
+        int fromA = snapshot.firstEdge(snapshot.indexOf(a));
+        assertEquals(100, snapshot.nextDeparture(fromA, 0));
+        assertEquals(100, snapshot.nextDeparture(fromA, 100));
+        assertEquals(200, snapshot.nextDeparture(fromA, 101));
+        assertEquals(-1, snapshot.nextDeparture(fromA, 201));
+        for (int edge = snapshot.firstEdge(snapshot.indexOf(b)); edge < snapshot.endEdge(snapshot.indexOf(b)); edge++) {
+            if (snapshot.isWalk(edge)) {
+                assertEquals(-1, snapshot.nextDeparture(edge, 0));
+            } else {
+                assertEquals(130, snapshot.nextDeparture(edge, 101));
+                assertEquals(230, snapshot.nextDeparture(edge, 131));
+            }
+        }
+    }
+
+    /**
+     * Tests that the snapshot of the metro map is rebuilt when the graph changes.
+     */
+    @Test
+    public void testSnapshotRebuiltAfterChange() {
+        MetroMap map = new MetroMap();
+        map.addNode("A", 1.0, 2.0, Station.class);
+        GraphSnapshot first = map.getSnapshot();
+        assertSame(first, map.getSnapshot());
+        map.addSegmentWalk(new NodeForTest("A", 0, 0), new NodeForTest("B", 0, 0), 1.0);
+        assertNotSame(first, map.getSnapshot());
+        assertEquals(2, map.getSnapshot().nodeCount());
+    }
+
+    /**
+     * Tests that personalized nodes are linked by walk to the nodes within the configured radius, or to the configured
+     * number of nearest nodes.
+     */
+    @Test
+    public void testWalkLinksFromSettings() {
+        PersonalizedNode node = new PersonalizedNode("A", 48.846408, 2.395640);
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        int[] defaultLinks = map.getSnapshot().walkLinks(node);
+        assertTrue(defaultLinks.length >= GraphSnapshot.DEFAULT_WALK_LINK_COUNT);
+
+        MetroMap nearest = new MetroMap();
+        nearest.setWalkLinkRadius(0);
+        nearest.setWalkLinkCount(2);
+        nearest.initializeFields();
+        assertEquals(2, nearest.getSnapshot().walkLinks(node).length);
+
+        MetroMap wide = new MetroMap();
+        wide.setWalkLinkRadius(2.0);
+        wide.initializeFields();
+        assertTrue(wide.getSnapshot().walkLinks(node).length > defaultLinks.length);
+    }
+}
@@ -0,0 +1,95 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link IndexedMinHeap} class.
+ */
+public class IndexedMinHeapTest {
+
+    /**
+     * Tests that ids are polled by increasing key.
+     *
+     * @param seed seed of the random keys.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 42, 2023})
+    public void testPollOrder(long seed) {
+        Random random = new Random(seed);
+        IndexedMinHeap heap = new IndexedMinHeap(200);
+        for (int id = 0; id < 200; id++) {
+            heap.insert(id, random.nextInt(1000));
+        }
+        assertEquals(200, heap.size());
+        List<Double> polled = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            int id = heap.peek();
+            double key = heap.keyOf(id);
+            assertEquals(id, heap.poll());
+            assertFalse(heap.contains(id));
+            polled.add(key);
+        }
+        for (int i = 1; i < polled.size(); i++) {
+            assertTrue(polled.get(i - 1) <= polled.get(i));
+        }
+    }
+
+    /**
+     * Tests that decreasing a key moves the id to the top of the heap.
+     */
+    @Test
+    public void testDecreaseKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.insert(0, 10);
+        heap.insert(1, 20);
+        heap.insert(2, 30);
+        assertTrue(heap.contains(2));
+        heap.decreaseKey(2, 5);
+        assertEquals(5, heap.keyOf(2));
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(1, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    /**
+     * Tests that the heap can be cleared and reused.
+     */
+    @Test
+    public void testClear() {
+        IndexedMinHeap heap = new IndexedMinHeap(3);
+        heap.insert(0, 1);
+        heap.insert(2, 3);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+        assertFalse(heap.contains(2));
+        assertEquals(3, heap.capacity());
+        heap.insert(0, 4);
+        assertEquals(0, heap.poll());
+    }
+
+    /**
+     * Tests the invalid uses of the heap.
+     */
+    @Test
+    public void testThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new IndexedMinHeap(-1));
+        IndexedMinHeap heap = new IndexedMinHeap(2);
+        assertThrows(NoSuchElementException.class, heap::poll);
+        assertThrows(NoSuchElementException.class, () -> heap.keyOf(0));
+        heap.insert(0, 1);
+        assertThrows(IllegalArgumentException.class, () -> heap.insert(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> heap.decreaseKey(0, 2));
+        assertThrows(NoSuchElementException.class, () -> heap.decreaseKey(1, 0));
+    }
+}
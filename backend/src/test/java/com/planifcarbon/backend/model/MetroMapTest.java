@@ -10,8 +10,13 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -236,6 +241,8 @@ public class MetroMapTest {
             metroLines.add(line);
         });
         assertEquals(nbSegmentsMetro, map.getSegmentsMetro(new NodeForTest(stationName, 0.0, 0.0)).size());
+        Set<Segment> metroSegments = map.getSegmentsMetro(new NodeForTest(stationName, 0.0, 0.0));
+        assertThrows(UnsupportedOperationException.class, metroSegments::clear);
     }
 
 
@@ -337,4 +344,252 @@ public class MetroMapTest {
         assertThrows(IllegalArgumentException.class, () -> map.dijkstra(new NodeForTest("", 1, 1), new NodeForTest(""
                 , 1, 1), -10000, true, true, true));
     }
+
+    /**
+     * Tests that A* finds paths with the same weight as dijkstra while settling fewer nodes, in time and distance mode.
+     *
+     * @param time departure time.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     * @param bestTimePath if true the weight is a time else it is a distance.
+     */
+    @ParameterizedTest
+    @CsvSource({"35000, true, true, true", "35000, true, false, true", "0, true, true, false", "0, true, false, false",
+            "0, false, true, false", "53100, false, true, true"})
+    public void testAStarSameWeightAsDijkstra(int time, boolean metro, boolean walk, boolean bestTimePath) {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        List<Station> stations = new ArrayList<>(map.getAllStations());
+        stations.sort((a, b) -> a.getName().compareTo(b.getName()));
+        Random random = new Random(time);
+        long dijkstraSettled = 0;
+        long aStarSettled = 0;
+        for (int i = 0; i < 30; i++) {
+            Station start = stations.get(random.nextInt(stations.size()));
+            Station end = stations.get(random.nextInt(stations.size()));
+            // The first tree is read and its context released before the second search reuses it.
+            ShortestPathTree dijkstra = map.search(start, end, time, metro, walk, bestTimePath, false);
+            double dijkstraWeight = dijkstra.weight(dijkstra.target());
+            int dijkstraCount = dijkstra.settledCount();
+            dijkstra.release();
+            ShortestPathTree aStar = map.search(start, end, time, metro, walk, bestTimePath, true);
+            assertEquals(dijkstraWeight, aStar.weight(aStar.target()), 1e-6, start.getName() + " -> " + end.getName());
+            assertTrue(aStar.settledCount() <= dijkstraCount);
+            dijkstraSettled += dijkstraCount;
+            aStarSettled += aStar.settledCount();
+        }
+        assertTrue(aStarSettled < dijkstraSettled);
+    }
+
+    /**
+     * Tests that A* finds paths with the same weight as dijkstra between personalized nodes.
+     *
+     * @param bestTimePath if true the weight is a time else it is a distance.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testAStarWithPersonalizedNodes(boolean bestTimePath) {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        Node a = new PersonalizedNode("A", 48.846408, 2.395640);
+        Node b = new PersonalizedNode("B", 48.893216, 2.234292);
+        Node nation = map.getStationByName("Nation");
+        int time = bestTimePath ? 35000 : 0;
+        for (Node[] query : new Node[][] {{a, b}, {nation, b}, {a, nation}}) {
+            List<DataSegment> dijkstra = map.getSegmentsFromPath(query[0], query[1], time, true, true, bestTimePath);
+            List<DataSegment> aStar = map.getSegmentsFromAStar(query[0], query[1], time, true, true, bestTimePath);
+            assertFalse(aStar.isEmpty());
+            assertEquals(query[0], aStar.get(0).getNodeStart());
+            assertEquals(query[1], aStar.get(aStar.size() - 1).getNodeEnd());
+            assertEquals(dijkstra.get(dijkstra.size() - 1).getArrivalTime(), aStar.get(aStar.size() - 1).getArrivalTime(), 1e-6);
+        }
+    }
+
+    /**
+     * Tests that bounded walks only link stations within the max distance or among the nearest ones, and that the
+     * transitive closure adds segments for the chains of walks.
+     */
+    @Test
+    public void testBoundedWalkSegments() {
+        MetroMap map = new MetroMap();
+        map.setMaxWalkDistance(1.0);
+        map.setWalkNeighbours(2);
+        map.initializeFields();
+        List<Station> stations = new ArrayList<>(map.getAllStations());
+        SpatialIndex index = new SpatialIndex(stations);
+        long nbWalks = 0;
+        for (Station station : stations) {
+            List<Node> nearest = new ArrayList<>();
+            for (int i : index.nearest(station, 3)) {
+                nearest.add(stations.get(i));
+            }
+            for (Segment segment : map.getSegments(station)) {
+                if (segment instanceof SegmentWalk) {
+                    nbWalks++;
+                    assertTrue(segment.getDistance() <= 1.0 || nearest.contains(segment.getEndPoint()));
+                }
+            }
+        }
+        assertTrue(nbWalks < (long) stations.size() * (stations.size() - 1));
+
+        MetroMap closed = new MetroMap();
+        closed.setMaxWalkDistance(1.0);
+        closed.setWalkNeighbours(2);
+        closed.setWalkTransitiveClosure(true);
+        closed.setWalkClosureDistance(2.0);
+        closed.initializeFields();
+        long nbClosedWalks = 0;
+        for (Station station : closed.getAllStations()) {
+            for (Segment segment : closed.getSegments(station)) {
+                if (segment instanceof SegmentWalk) {
+                    nbClosedWalks++;
+                    assertTrue(segment.getDistance() >= station.distanceTo(segment.getEndPoint()) - 1e-9);
+                    assertTrue(segment.getDistance() <= 2.0 + 1e-9 || segment.getDistance() == station.distanceTo(segment.getEndPoint()));
+                }
+            }
+        }
+        assertTrue(nbClosedWalks > nbWalks);
+    }
+
+    /**
+     * Tests that the engines still agree when walks are bounded.
+     */
+    @Test
+    public void testEnginesAgreeWithBoundedWalks() {
+        MetroMap map = new MetroMap();
+        map.setMaxWalkDistance(0.8);
+        map.setWalkNeighbours(3);
+        map.initializeFields();
+        List<Station> stations = new ArrayList<>(map.getAllStations());
+        stations.sort((a, b) -> a.getName().compareTo(b.getName()));
+        Random random = new Random(3);
+        for (int i = 0; i < 30; i++) {
+            Station start = stations.get(random.nextInt(stations.size()));
+            Station end = stations.get(random.nextInt(stations.size()));
+            List<DataSegment> dijkstra = map.getSegmentsFromPath(start, end, 35000, true, true, true);
+            double arrival = dijkstra.isEmpty() ? -1 : dijkstra.get(dijkstra.size() - 1).getArrivalTime();
+            List<DataSegment> raptor = map.getSegmentsFromRaptor(start, end, 35000, true, true);
+            List<DataSegment> csa = map.getSegmentsFromConnectionScan(start, end, 35000, true, true);
+            assertEquals(arrival, raptor.isEmpty() ? -1 : raptor.get(raptor.size() - 1).getArrivalTime());
+            assertEquals(arrival, csa.isEmpty() ? -1 : csa.get(csa.size() - 1).getArrivalTime());
+        }
+    }
+
+    /**
+     * Tests that negative walk bounds are refused.
+     */
+    @Test
+    public void testNegativeWalkBounds() {
+        MetroMap map = new MetroMap();
+        assertThrows(IllegalArgumentException.class, () -> map.setMaxWalkDistance(-1));
+        assertThrows(IllegalArgumentException.class, () -> map.setWalkNeighbours(-1));
+        assertThrows(IllegalArgumentException.class, () -> map.setWalkClosureDistance(-1));
+        assertThrows(IllegalArgumentException.class, () -> map.setWalkLinkRadius(-1));
+        assertThrows(IllegalArgumentException.class, () -> map.setWalkLinkCount(-1));
+    }
+
+    /**
+     * Tests that the stations reachable within a max weight are the ones of a full search, with the same weights.
+     *
+     * @param bestTimePath if true the weight is a time else it is a distance.
+     * @param walk if walk segments are allowed.
+     */
+    @ParameterizedTest
+    @CsvSource({"true, false", "true, true", "false, true"})
+    public void testReachableStations(boolean bestTimePath, boolean walk) {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        Station nation = map.getStationByName("Nation");
+        int start = bestTimePath ? 35000 : 0;
+        double maxWeight = start + (bestTimePath ? 1200 : 4.0);
+        Map<Node, SearchResultBestWeight> full = map.dijkstra(nation, null, start, true, walk, bestTimePath);
+        Map<Station, Double> reachable = map.getReachableStations(nation, start, true, walk, bestTimePath, maxWeight);
+        assertFalse(reachable.isEmpty());
+        assertTrue(reachable.size() < map.getStations().size());
+        for (Map.Entry<Node, SearchResultBestWeight> entry : full.entrySet()) {
+            if (entry.getValue().getWeight() <= maxWeight) {
+                assertEquals(entry.getValue().getWeight(), reachable.get((Station) entry.getKey()), 1e-9);
+            } else {
+                assertFalse(reachable.containsKey((Station) entry.getKey()));
+            }
+        }
+
+        Node personalized = new PersonalizedNode("P", 48.846408, 2.395640);
+        Map<Station, Double> fromPersonalized = map.getReachableStations(personalized, start, true, true, bestTimePath,
+                maxWeight);
+        assertFalse(fromPersonalized.isEmpty());
+        assertTrue(fromPersonalized.values().stream().allMatch(weight -> weight <= maxWeight));
+    }
+
+    /**
+     * Tests that a search out of time stops, and gives the best path found so far: a real path which is not better
+     * than the shortest one.
+     */
+    @Test
+    public void testSearchBudget() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        Node start = new PersonalizedNode("A", 48.8990, 2.2500);
+        Node end = new PersonalizedNode("B", 48.8200, 2.4100);
+        List<DataSegment> shortest = map.getSegmentsFromPath(start, end, 35000, true, true, true);
+
+        // The clock passes the deadline as soon as it is read after the start of the search.
+        AtomicLong clock = new AtomicLong();
+        SearchBudget budget = new SearchBudget(1, () -> clock.getAndAdd(1));
+        List<DataSegment> partial = map.getSegmentsFromPath(start, end, 35000, true, true, true, budget);
+        assertTrue(budget.isExhausted());
+        assertTrue(partial.isEmpty());
+
+        // One window of nodes is settled before the deadline is seen.
+        SearchBudget window = new SearchBudget(2, () -> clock.getAndAdd(1));
+        List<DataSegment> bestEffort = map.getSegmentsFromPath(start, end, 35000, true, true, true, window);
+        assertTrue(window.isExhausted());
+        assertFalse(bestEffort.isEmpty());
+        assertEquals(start, bestEffort.get(0).getNodeStart());
+        assertEquals(end, bestEffort.get(bestEffort.size() - 1).getNodeEnd());
+        for (int i = 1; i < bestEffort.size(); i++) {
+            assertEquals(bestEffort.get(i - 1).getNodeEnd(), bestEffort.get(i).getNodeStart());
+        }
+        assertTrue(bestEffort.get(bestEffort.size() - 1).getArrivalTime()
+                >= shortest.get(shortest.size() - 1).getArrivalTime());
+
+        SearchBudget isochrone = new SearchBudget(1, () -> clock.getAndAdd(1));
+        map.getReachableStations(start, 35000, true, true, true, Double.POSITIVE_INFINITY, isochrone);
+        assertTrue(isochrone.isExhausted());
+    }
+
+    /**
+     * Tests that the listener of the map is given the counters of each search.
+     */
+    @Test
+    public void testSearchListener() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        List<SearchStats> searches = new ArrayList<>();
+        map.setSearchListener(searches::add);
+        Station nation = map.getStationByName("Nation");
+        Station bercy = map.getStationByName("Bercy");
+        map.getSegmentsFromPath(nation, bercy, 50000, true, true, true);
+        map.getSegmentsFromConnectionScan(nation, bercy, 50000, true, true);
+        map.setSearchListener(null);
+        map.getSegmentsFromPath(nation, bercy, 50000, true, true, true);
+
+        assertEquals(2, searches.size());
+        SearchStats dijkstra = searches.get(0);
+        assertEquals("DIJKSTRA", dijkstra.engine());
+        assertEquals("TIME", dijkstra.method());
+        assertEquals("METRO_FOOT", dijkstra.transportation());
+        assertTrue(dijkstra.settled() > 1);
+        assertTrue(dijkstra.pushes() >= dijkstra.settled());
+        // Every push but the one of the start node and every decrease-key comes from a relaxation.
+        assertTrue(dijkstra.relaxed() >= dijkstra.pushes() - 1 + dijkstra.decreaseKeys());
+        assertTrue(dijkstra.scheduleLookups() > 0);
+        assertTrue(dijkstra.nanos() > 0);
+        SearchStats csa = searches.get(1);
+        assertEquals("CSA", csa.engine());
+        assertTrue(csa.settled() > 0);
+        assertTrue(csa.relaxed() > 0);
+        assertEquals(1, csa.scheduleLookups());
+        assertEquals(0, csa.pushes());
+    }
 }
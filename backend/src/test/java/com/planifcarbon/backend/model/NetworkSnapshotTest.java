@@ -0,0 +1,156 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NetworkSnapshot} class and its use by {@link MetroMap}.
+ */
+public class NetworkSnapshotTest {
+
+    private static MetroMap boot(Path snapshotFile, int walkNeighbours) {
+        MetroMap map = new MetroMap();
+        map.setMaxWalkDistance(0.5);
+        map.setWalkNeighbours(walkNeighbours);
+        map.setSnapshotPath(snapshotFile.toString());
+        map.initializeFields();
+        return map;
+    }
+
+    /**
+     * Returns what tells apart the segments leaving a node: several lines, and walks, can link the same stations.
+     *
+     * @param segment a segment.
+     * @return its type, its end and its line.
+     */
+    private static List<Object> key(Segment segment) {
+        return List.of(segment.getClass(), segment.getEndPoint(),
+                segment instanceof SegmentMetro metro ? metro.getLine() : "");
+    }
+
+    /**
+     * Tests that a network loaded from its snapshot is the one built from the CSV files, and gives the same paths.
+     */
+    @Test
+    public void testLoadedNetworkIsTheBuiltOne(@TempDir Path directory) {
+        Path file = directory.resolve("network.bin");
+        MetroMap built = boot(file, 3);
+        assertFalse(built.isLoadedFromSnapshot());
+        assertTrue(Files.isRegularFile(file));
+        MetroMap loaded = boot(file, 3);
+        assertTrue(loaded.isLoadedFromSnapshot());
+
+        assertEquals(built.getStations().keySet(), loaded.getStations().keySet());
+        for (Station station : built.getStations().values()) {
+            Station other = loaded.getStationByName(station.getName());
+            assertEquals(station.getCoordinates().getLatitude(), other.getCoordinates().getLatitude());
+            assertEquals(station.getCoordinates().getLongitude(), other.getCoordinates().getLongitude());
+            assertEquals(station.getSchedules(), other.getSchedules());
+            assertEquals(built.getGraph().get(station), loaded.getGraph().get(other));
+        }
+        assertEquals(built.getGraph().size(), loaded.getGraph().size());
+        for (Map.Entry<Node, Set<Segment>> entry : built.getGraph().entrySet()) {
+            Map<List<Object>, Segment> others = new HashMap<>();
+            loaded.getGraph().get(entry.getKey()).forEach(segment -> others.put(key(segment), segment));
+            for (Segment segment : entry.getValue()) {
+                Segment other = others.get(key(segment));
+                assertEquals(segment.getDistance(), other.getDistance());
+                assertEquals(segment.getDuration(), other.getDuration());
+            }
+        }
+        assertEquals(built.getLines().keySet(), loaded.getLines().keySet());
+        for (MetroLine line : built.getLines().values()) {
+            MetroLine other = loaded.getLines().get(line.getName());
+            assertEquals(line.getStations(), other.getStations());
+            assertEquals(line.getSchedules(), other.getSchedules());
+            assertEquals(line.getTerminusStation(), other.getTerminusStation());
+        }
+
+        ConnectionScan.Tables tables = built.getConnectionScan().tables();
+        ConnectionScan.Tables other = loaded.getConnectionScan().tables();
+        // The footpaths written are bounded, not the closure of every pair of stations.
+        long nbStations = built.getStations().size();
+        assertTrue(other.footTargets().length < nbStations * (nbStations - 1) / 4);
+        assertArrayEquals(tables.departureTimes(), other.departureTimes());
+        assertArrayEquals(tables.connectionTrips(), other.connectionTrips());
+        assertArrayEquals(tables.footTargets(), other.footTargets());
+        assertArrayEquals(tables.footDurations(), other.footDurations());
+        ConnectionScan.Tables wrong = new ConnectionScan.Tables(tables.departureStops(), tables.arrivalStops(),
+                tables.departureTimes(), tables.arrivalTimes(), tables.connectionTrips(), tables.tripRoutes(),
+                tables.tripDepartures(), new int[1], new int[0], new int[0]);
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionScan(loaded.getRoutePatterns(), wrong,
+                Integer.MAX_VALUE));
+
+        List<String> names = new ArrayList<>(built.getStations().keySet());
+        for (int i = 0; i < names.size(); i += 37) {
+            Station start = built.getStationByName(names.get(i));
+            Station end = built.getStationByName(names.get(names.size() - 1 - i));
+            if (start.equals(end)) {
+                continue;
+            }
+            assertEquals(built.getSegmentsFromPath(start, end, 30000, true, true, true),
+                    loaded.getSegmentsFromPath(start, end, 30000, true, true, true));
+            assertEquals(built.getSegmentsFromRaptor(start, end, 30000, true, true),
+                    loaded.getSegmentsFromRaptor(start, end, 30000, true, true));
+            assertEquals(built.getSegmentsFromConnectionScan(start, end, 30000, true, true),
+                    loaded.getSegmentsFromConnectionScan(start, end, 30000, true, true));
+        }
+    }
+
+    /**
+     * Tests that a snapshot built with other walk settings, or which is corrupted, is not loaded but replaced.
+     */
+    @Test
+    public void testStaleOrCorruptedSnapshotIsRebuilt(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("network.bin");
+        boot(file, 3);
+        assertFalse(boot(file, 2).isLoadedFromSnapshot());
+        assertTrue(boot(file, 2).isLoadedFromSnapshot());
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        MetroMap rebuilt = boot(file, 2);
+        assertFalse(rebuilt.isLoadedFromSnapshot());
+        assertFalse(rebuilt.getStations().isEmpty());
+        assertTrue(boot(file, 2).isLoadedFromSnapshot());
+
+        MetroMap otherLinks = new MetroMap();
+        otherLinks.setMaxWalkDistance(0.5);
+        otherLinks.setWalkNeighbours(2);
+        otherLinks.setWalkLinkCount(8);
+        otherLinks.setSnapshotPath(file.toString());
+        otherLinks.initializeFields();
+        assertFalse(otherLinks.isLoadedFromSnapshot());
+        assertFalse(boot(file, 2).isLoadedFromSnapshot());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertFalse(boot(file, 2).isLoadedFromSnapshot());
+        assertNull(NetworkSnapshot.read(directory.resolve("missing.bin"), 0));
+    }
+
+    /**
+     * Tests that a graph with a node which is not a station of the network is not written.
+     */
+    @Test
+    public void testNodeOutsideTheNetwork(@TempDir Path directory) {
+        Station a = new Station("A", 1, 2);
+        Station b = new Station("B", 1, 2.1);
+        NetworkSnapshot.Content content = new NetworkSnapshot.Content(Map.of("A", a), Map.of(),
+                Map.of(a, Set.of(new SegmentWalk(a, b))), List.of(), null);
+        assertThrows(IllegalStateException.class,
+                () -> NetworkSnapshot.write(directory.resolve("network.bin"), 0, content));
+        assertFalse(Files.exists(directory.resolve("network.bin")));
+    }
+}
@@ -0,0 +1,147 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link Raptor} class.
+ */
+public class RaptorTest {
+    private static MetroMap map;
+    private static List<Station> stations;
+
+    /**
+     * Build the network once for all tests.
+     */
+    @BeforeAll
+    static void setUp() {
+        map = new MetroMap();
+        map.initializeFields();
+        stations = map.getAllStations().stream().sorted(Comparator.comparing(Node::getName)).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the arrival time of a path, or -1 if there is no path.
+     *
+     * @param segments the segments of the path.
+     * @return the arrival time at the end of the path.
+     */
+    private static double arrival(List<DataSegment> segments) {
+        return segments.isEmpty() ? -1 : segments.get(segments.size() - 1).getArrivalTime();
+    }
+
+    /**
+     * Tests that RAPTOR gives the same arrival time as dijkstra between random stations.
+     *
+     * @param time departure time.
+     * @param metro if metro segments are allowed.
+     * @param walk if walk segments are allowed.
+     */
+    @ParameterizedTest
+    @CsvSource({"35000, true, false", "35000, true, true", "53100, true, false", "53100, true, true", "79200, true, true",
+            "20000, false, true"})
+    public void testSameArrivalAsDijkstra(int time, boolean metro, boolean walk) {
+        Random random = new Random(time);
+        for (int i = 0; i < 30; i++) {
+            Station start = stations.get(random.nextInt(stations.size()));
+            Station end = stations.get(random.nextInt(stations.size()));
+            List<DataSegment> dijkstra = map.getSegmentsFromPath(start, end, time, metro, walk, true);
+            List<DataSegment> raptor = map.getSegmentsFromRaptor(start, end, time, metro, walk);
+            assertEquals(arrival(dijkstra), arrival(raptor), start.getName() + " -> " + end.getName());
+        }
+    }
+
+    /**
+     * Tests that RAPTOR gives the same arrival time as dijkstra with personalized nodes.
+     *
+     * @param time departure time.
+     */
+    @ParameterizedTest
+    @CsvSource({"35000", "36000"})
+    public void testSameArrivalWithPersonalizedNodes(int time) {
+        Node a = new PersonalizedNode("A", 48.846408, 2.395640);
+        Node b = new PersonalizedNode("B", 48.893216, 2.234292);
+        Node nation = map.getStationByName("Nation");
+        assertEquals(arrival(map.getSegmentsFromPath(a, b, time, true, true, true)),
+                arrival(map.getSegmentsFromRaptor(a, b, time, true, true)));
+        assertEquals(arrival(map.getSegmentsFromPath(nation, b, time, true, true, true)),
+                arrival(map.getSegmentsFromRaptor(nation, b, time, true, true)));
+        assertEquals(arrival(map.getSegmentsFromPath(a, nation, time, false, true, true)),
+                arrival(map.getSegmentsFromRaptor(a, nation, time, false, true)));
+        assertTrue(map.getSegmentsFromRaptor(a, nation, time, true, false).isEmpty());
+    }
+
+    /**
+     * Tests that the segments of a RAPTOR path are chained and that times never decrease.
+     */
+    @Test
+    public void testPathIsChained() {
+        Node start = map.getStationByName("Gare de Lyon");
+        Node end = map.getStationByName("Gare du Nord");
+        List<DataSegment> segments = map.getSegmentsFromRaptor(start, end, 35000, true, false);
+        assertFalse(segments.isEmpty());
+        assertEquals(start, segments.get(0).getNodeStart());
+        assertEquals(end, segments.get(segments.size() - 1).getNodeEnd());
+        for (int i = 1; i < segments.size(); i++) {
+            assertEquals(segments.get(i - 1).getNodeEnd(), segments.get(i).getNodeStart());
+            assertTrue(segments.get(i - 1).getArrivalTime() <= segments.get(i).getArrivalTime());
+            assertNotNull(segments.get(i).getLine());
+        }
+    }
+
+    /**
+     * Tests that the number of rounds bounds the number of trains of the path.
+     */
+    @Test
+    public void testMaxTrips() {
+        Raptor raptor = map.getRaptor();
+        assertNotEquals(0, raptor.routeCount());
+        Node start = map.getStationByName("Lourmel");
+        Node end = map.getStationByName("Porte de Clichy");
+        assertTrue(raptor.route(start, end, 35000, true, false, 0).isEmpty());
+        List<DataSegment> unbounded = raptor.route(start, end, 35000, true, false, Integer.MAX_VALUE);
+        int nbTrains = 0;
+        for (int i = 0; i < unbounded.size(); i++) {
+            if (i == 0 || !Objects.equals(unbounded.get(i - 1).getLine(), unbounded.get(i).getLine())) {
+                nbTrains++;
+            }
+        }
+        assertTrue(nbTrains > 1);
+        assertEquals(arrival(unbounded), arrival(raptor.route(start, end, 35000, true, false, nbTrains)));
+        List<DataSegment> fewerTrains = raptor.route(start, end, 35000, true, false, nbTrains - 1);
+        assertTrue(fewerTrains.isEmpty() || arrival(fewerTrains) > arrival(unbounded));
+
+        try {
+            map.setRaptorMaxTrips(nbTrains - 1);
+            assertEquals(fewerTrains, map.getSegmentsFromRaptor(start, end, 35000, true, false));
+        } finally {
+            map.setRaptorMaxTrips(0);
+        }
+        assertEquals(unbounded, map.getSegmentsFromRaptor(start, end, 35000, true, false));
+        assertThrows(IllegalArgumentException.class, () -> map.setRaptorMaxTrips(-1));
+    }
+
+    /**
+     * Tests the invalid inputs of the RAPTOR engine.
+     */
+    @Test
+    public void testThrows() {
+        Node start = map.getStationByName("Nation");
+        assertThrows(IllegalArgumentException.class, () -> map.getSegmentsFromRaptor(null, start, 0, true, true));
+        assertThrows(IllegalArgumentException.class, () -> map.getSegmentsFromRaptor(start, start, -1, true, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> map.getSegmentsFromRaptor(new NodeForTest("X", 0, 0), start, 0, true, true));
+        assertTrue(map.getSegmentsFromRaptor(start, start, 0, true, true).isEmpty());
+        assertTrue(map.getSegmentsFromRaptor(start, new NodeForTest("X", 0, 0), 0, true, true).isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SearchBudget} class.
+ */
+public class SearchBudgetTest {
+
+    /**
+     * Tests that a budget without deadline is never exhausted.
+     */
+    @Test
+    public void testUnlimited() {
+        for (SearchBudget budget : new SearchBudget[] {SearchBudget.unlimited(), SearchBudget.of(Duration.ZERO),
+                SearchBudget.of(Duration.ofSeconds(-1))}) {
+            for (int i = 0; i < 3 * SearchBudget.CHECK_INTERVAL; i++) {
+                assertFalse(budget.tick());
+            }
+            assertFalse(budget.isExhausted());
+            assertEquals(Long.MAX_VALUE, budget.remainingNanos());
+        }
+    }
+
+    /**
+     * Tests that the clock is read on the first tick and then every check interval, and that an exhausted budget
+     * stays exhausted.
+     */
+    @Test
+    public void testDeadline() {
+        AtomicLong clock = new AtomicLong(100);
+        SearchBudget budget = new SearchBudget(50, clock::get);
+        assertFalse(budget.tick());
+        clock.set(120);
+        assertEquals(30, budget.remainingNanos());
+        clock.set(150);
+        assertEquals(0, budget.remainingNanos());
+        for (int i = 1; i < SearchBudget.CHECK_INTERVAL; i++) {
+            assertFalse(budget.tick());
+        }
+        assertFalse(budget.isExhausted());
+        assertTrue(budget.tick());
+        assertTrue(budget.isExhausted());
+        clock.set(0);
+        assertTrue(budget.tick());
+
+        SearchBudget expired = new SearchBudget(0, clock::get);
+        assertTrue(expired.tick());
+        assertFalse(SearchBudget.of(Duration.ofHours(1)).tick());
+    }
+}
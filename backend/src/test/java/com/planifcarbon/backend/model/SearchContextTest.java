@@ -0,0 +1,88 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SearchContext} class.
+ */
+public class SearchContextTest {
+
+    /**
+     * Tests that beginning a new search drops the labels, the settled nodes, the links and the heap of the previous one.
+     */
+    @Test
+    public void testBeginResetsLabels() {
+        SearchContext context = new SearchContext(4);
+        int first = context.begin();
+        context.label(1, 10.0, 0, 3);
+        context.settle(1);
+        context.link(2);
+        context.bound(3, 5.0);
+        context.heap().insert(3, 7.0);
+        assertEquals(10.0, context.weight(1));
+        assertEquals(0, context.parent(1));
+        assertEquals(3, context.parentLine(1));
+        assertTrue(context.isSettled(1));
+        assertTrue(context.isLinked(2));
+        assertEquals(5.0, context.bound(3));
+        assertEquals(1, context.settledCount());
+
+        assertEquals(first + 1, context.begin());
+        assertEquals(Double.POSITIVE_INFINITY, context.weight(1));
+        assertEquals(ShortestPathTree.NO_PARENT, context.parent(1));
+        assertEquals(GraphSnapshot.NO_LINE, context.parentLine(1));
+        assertFalse(context.isSettled(1));
+        assertFalse(context.isLinked(2));
+        assertEquals(0, context.bound(3));
+        assertEquals(0, context.settledCount());
+        assertTrue(context.heap().isEmpty());
+        assertFalse(context.heap().contains(3));
+    }
+
+    /**
+     * Tests that the contexts are taken from the pool of the snapshot and given back by the trees, that the pool is
+     * bounded, and that a tree cannot be read once its context is reused.
+     */
+    @Test
+    public void testContextPool() {
+        MetroMap map = new MetroMap();
+        map.addNode("A", 1.0, 2.0, Station.class);
+        map.addNode("B", 1.0, 2.1, Station.class);
+        map.addSegmentWalk(new NodeForTest("A", 0, 0), new NodeForTest("B", 0, 0), 2.0);
+        GraphSnapshot snapshot = map.getSnapshot();
+        SearchContext context = snapshot.acquireSearchContext();
+        assertNotSame(context, snapshot.acquireSearchContext());
+        snapshot.releaseSearchContext(context);
+        assertEquals(1, snapshot.pooledSearchContexts());
+        assertSame(context, snapshot.acquireSearchContext());
+        assertEquals(0, snapshot.pooledSearchContexts());
+        for (int i = 0; i < GraphSnapshot.MAX_POOLED_CONTEXTS + 3; i++) {
+            snapshot.releaseSearchContext(new SearchContext(snapshot.nodeCount() + 2));
+        }
+        assertEquals(GraphSnapshot.MAX_POOLED_CONTEXTS, snapshot.pooledSearchContexts());
+
+        Node a = snapshot.node(snapshot.indexOf(new NodeForTest("A", 0, 0)));
+        Node b = snapshot.node(snapshot.indexOf(new NodeForTest("B", 0, 0)));
+        ShortestPathTree first = map.search(a, b, 0, false, true, false, false);
+        assertEquals(GraphSnapshot.MAX_POOLED_CONTEXTS - 1, snapshot.pooledSearchContexts());
+        assertEquals(2.0, first.weight(first.target()), 1e-6);
+        assertEquals(List.of(a, b), List.of(first.toDataSegments(0).get(0).getNodeStart(),
+                first.toDataSegments(0).get(0).getNodeEnd()));
+        first.release();
+        first.release();
+        assertEquals(GraphSnapshot.MAX_POOLED_CONTEXTS, snapshot.pooledSearchContexts());
+        ShortestPathTree second = map.search(b, a, 0, false, true, false, false);
+        assertEquals(Double.POSITIVE_INFINITY, second.weight(second.target()));
+        assertThrows(IllegalStateException.class, () -> first.weight(first.target()));
+        assertThrows(IllegalStateException.class, first::toMap);
+        second.release();
+
+        map.getSegmentsFromPath(a, b, 0, false, true, false);
+        map.getWeightsToStations(a, List.of(), 0, false, true, false);
+        assertEquals(GraphSnapshot.MAX_POOLED_CONTEXTS, snapshot.pooledSearchContexts());
+    }
+}
@@ -0,0 +1,101 @@
+package com.planifcarbon.backend.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SpatialIndex} class.
+ */
+public class SpatialIndexTest {
+
+    /**
+     * Returns random nodes around Paris.
+     *
+     * @param random source of randomness.
+     * @param count number of nodes.
+     * @return the nodes.
+     */
+    private static List<Node> randomNodes(Random random, int count) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new NodeForTest("N" + i, 48.8 + random.nextDouble() * 0.15, 2.2 + random.nextDouble() * 0.25));
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the indexes of the nodes sorted by distance to a point, by brute force.
+     *
+     * @param nodes nodes to sort.
+     * @param point point to measure from.
+     * @return the sorted indexes.
+     */
+    private static int[] byDistance(List<Node> nodes, Node point) {
+        return IntStream.range(0, nodes.size()).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> point.distanceTo(nodes.get(i))).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Tests that the k nearest nodes are the ones found by brute force.
+     *
+     * @param count number of indexed nodes.
+     * @param k number of nodes to find.
+     */
+    @ParameterizedTest
+    @CsvSource({"1, 1", "10, 3", "300, 1", "300, 5", "300, 40", "5, 10"})
+    public void testNearest(int count, int k) {
+        Random random = new Random(count * 31L + k);
+        List<Node> nodes = randomNodes(random, count);
+        SpatialIndex index = new SpatialIndex(nodes);
+        assertEquals(count, index.size());
+        for (Node point : randomNodes(random, 20)) {
+            int[] expected = byDistance(nodes, point);
+            assertArrayEquals(Arrays.copyOf(expected, Math.min(k, count)), index.nearest(point, k));
+        }
+    }
+
+    /**
+     * Tests that the nodes within a radius are the ones found by brute force.
+     *
+     * @param radius radius in km.
+     */
+    @ParameterizedTest
+    @CsvSource({"0", "0.5", "1", "3", "100"})
+    public void testWithinRadius(double radius) {
+        Random random = new Random(7);
+        List<Node> nodes = randomNodes(random, 300);
+        SpatialIndex index = new SpatialIndex(nodes);
+        for (Node point : randomNodes(random, 20)) {
+            int[] expected = IntStream.of(byDistance(nodes, point)).filter(i -> point.distanceTo(nodes.get(i)) <= radius)
+                    .toArray();
+            assertArrayEquals(expected, index.withinRadius(point, radius));
+        }
+        assertEquals(0, index.withinRadius(nodes.get(0), -1).length);
+    }
+
+    /**
+     * Tests that near returns the nodes within the radius, or the nearest ones when there are too few of them.
+     */
+    @Test
+    public void testNear() {
+        List<Node> nodes = List.of(new NodeForTest("A", 48.85, 2.35), new NodeForTest("B", 48.851, 2.35),
+                new NodeForTest("C", 48.86, 2.35), new NodeForTest("D", 48.95, 2.35));
+        SpatialIndex index = new SpatialIndex(nodes);
+        Node point = new NodeForTest("P", 48.85, 2.35);
+        assertArrayEquals(new int[] {0, 1, 2}, index.near(point, 2, 2.0));
+        assertArrayEquals(new int[] {0, 1, 2}, index.near(point, 3, 0.5));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, index.near(point, 10, 0.5));
+        assertEquals(0, new SpatialIndex(List.of()).nearest(point, 3).length);
+    }
+}
@@ -0,0 +1,171 @@
+package com.planifcarbon.backend.parser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for the {@link CsvReader} class.
+ */
+public class CsvReaderTest extends Assertions {
+
+    private static CsvReader reader(String content) {
+        return new CsvReader(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Tests that the numbers are the ones {@link Double#parseDouble} gives, on the fast path and on the fallback.
+     *
+     * @param number the number to read.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "15.93935780373747", "2.2822419598550767", "48.83866086365992", "-0.1", "1.44",
+            "12345678901234567890", "0.30000000000000004", "1e3"})
+    public void testNextDouble(String number) {
+        assertEquals(Double.parseDouble(number), reader(" " + number + " ;").nextDouble((byte) ';'));
+    }
+
+    /**
+     * Tests that the durations are the ones of {@link Parser#durationStringToInt}.
+     *
+     * @param duration a duration in the format m:ss.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"4:14", "2:58", "0:50", "1:44", "10:01"})
+    public void testDuration(String duration) {
+        double tenths = reader(duration).nextDouble((byte) ';', (byte) ':') * 10;
+        assertEquals(Parser.durationStringToInt(duration), (int) Math.ceil(tenths));
+    }
+
+    /**
+     * Tests the fields of rows ending with CRLF, with an empty line and without an ending line feed.
+     */
+    @Test
+    public void testFields() {
+        CsvReader reader = reader("7B;Louis Blanc;22:17;1\r\n\r\n7B;Pré-Saint-Gervais;5:03;12");
+        assertTrue(reader.hasNextLine());
+        String line = reader.nextString((byte) ';');
+        assertEquals("7B", line);
+        reader.skip((byte) ';');
+        assertEquals(Parser.timeStringToInt("22:17"), reader.nextTime((byte) ';'));
+        assertEquals(1, reader.nextInt((byte) ';'));
+        reader.endLine();
+        assertTrue(reader.hasNextLine());
+        assertSame(line, reader.nextString((byte) ';'));
+        assertEquals("Pré-Saint-Gervais", reader.nextString((byte) ';'));
+        assertEquals(5 * 3600 + 3 * 60, reader.nextTime((byte) ';'));
+        assertEquals(12, reader.nextInt((byte) ';'));
+        reader.endLine();
+        assertFalse(reader.hasNextLine());
+    }
+
+    /**
+     * Tests that the chunks of a file hold whole lines, in the order of the file.
+     */
+    @Test
+    public void testSplit() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("row ").append(i).append(";").append(i).append("\r\n");
+        }
+        for (int nbChunks : new int[]{1, 3, 7, 100, 1000}) {
+            List<CsvReader> chunks = reader(content.toString()).split(nbChunks, 1);
+            assertTrue(chunks.size() <= nbChunks);
+            int row = 0;
+            for (CsvReader chunk : chunks) {
+                while (chunk.hasNextLine()) {
+                    assertEquals("row " + row, chunk.nextString((byte) ';'));
+                    assertEquals(row++, chunk.nextInt((byte) ';'));
+                    chunk.endLine();
+                }
+            }
+            assertEquals(100, row);
+        }
+        assertEquals(1, reader(content.toString()).split(8, 1 << 20).size());
+        assertTrue(reader("").split(8, 1).isEmpty());
+    }
+
+    /**
+     * Tests that the cache of the strings still gives the right string once it has grown.
+     */
+    @Test
+    public void testStringCache() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("station ").append(i).append(';');
+        }
+        CsvReader reader = reader(content.toString() + content);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("station " + (i % 1000), reader.nextString((byte) ';'));
+        }
+    }
+
+    /**
+     * Tests that malformed numbers are rejected.
+     */
+    @Test
+    public void testMalformed() {
+        assertThrows(NumberFormatException.class, () -> reader("1a;").nextInt((byte) ';'));
+        assertThrows(NumberFormatException.class, () -> reader(";").nextInt((byte) ';'));
+        assertThrows(NumberFormatException.class, () -> reader("2217;").nextTime((byte) ';'));
+        assertThrows(NumberFormatException.class, () -> reader("abc;").nextDouble((byte) ';'));
+    }
+
+    /**
+     * Tests that a file of the file system is read, and that a missing file throws a {@code NullPointerException}.
+     *
+     * @param dir a temporary directory.
+     * @throws IOException if the file can not be written.
+     */
+    @Test
+    public void testOpen(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("rows.csv");
+        Files.writeString(file, "a;1\n");
+        CsvReader reader = CsvReader.open(file.toString());
+        assertEquals("a", reader.nextString((byte) ';'));
+        assertEquals(1, reader.nextInt((byte) ';'));
+        assertThrows(NullPointerException.class, () -> CsvReader.open(dir.resolve("missing.csv").toString()));
+    }
+
+    /**
+     * Tests that every number of the map data is the one {@link Double#parseDouble} gives.
+     *
+     * @throws IOException if the map data can not be read.
+     */
+    @Test
+    public void testMapData() throws IOException {
+        String content;
+        try (InputStream ins = getClass().getClassLoader().getResourceAsStream("data/map_data.csv")) {
+            content = new String(ins.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        CsvReader reader = CsvReader.open("data/map_data.csv");
+        for (String row : content.split("\n")) {
+            String[] fields = Parser.splitString(";", row);
+            assertTrue(reader.hasNextLine());
+            assertEquals(fields[0], reader.nextString((byte) ';'));
+            String[] coords = Parser.splitString(",", fields[1]);
+            assertEquals(Double.parseDouble(coords[0]), reader.nextDouble((byte) ','));
+            assertEquals(Double.parseDouble(coords[1]), reader.nextDouble((byte) ';'));
+            assertEquals(fields[2], reader.nextString((byte) ';'));
+            coords = Parser.splitString(",", fields[3]);
+            assertEquals(Double.parseDouble(coords[0]), reader.nextDouble((byte) ','));
+            assertEquals(Double.parseDouble(coords[1]), reader.nextDouble((byte) ';'));
+            assertEquals(fields[4], reader.nextString((byte) ';'));
+            assertEquals(Parser.durationStringToInt(fields[5]),
+                    (int) Math.ceil(reader.nextDouble((byte) ';', (byte) ':') * 10));
+            assertEquals(Double.parseDouble(fields[6]), reader.nextDouble((byte) ';'));
+            reader.endLine();
+        }
+        assertFalse(reader.hasNextLine());
+    }
+}
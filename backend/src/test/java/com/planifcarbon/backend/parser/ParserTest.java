@@ -13,6 +13,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Unit tests for the {@link Parser} class.
@@ -72,7 +76,7 @@ public class ParserTest extends Assertions {
      */
     @Test
     public void testParseException() {
-        assertThrows(NullPointerException.class, () -> Parser.instance.parse("notAFile1", "notAFile2"));
+        assertThrows(NullPointerException.class, () -> new Parser().parse("notAFile1", "notAFile2"));
     }
 
     /**
@@ -94,22 +98,22 @@ public class ParserTest extends Assertions {
      */
     @Test
     public void testCalculateStationsAndSegmentsList() throws FileNotFoundException, IOException {
-        Parser.calculateStationsAndSegments(map_data);
-        assertNotEquals(0, Parser.getStations().size());
-        assertNotEquals(0, Parser.getSegmentMetro().size());
+        ParseResult result = Parser.calculateStationsAndSegments(map_data);
+        assertNotEquals(0, result.stations().size());
+        assertNotEquals(0, result.segmentMetro().size());
         List<NodeDTO> stationDTOs = new ArrayList<>();
-        Parser.getStations().forEach(station -> {
+        result.stations().forEach(station -> {
             assertFalse(stationDTOs.contains(station));
             stationDTOs.add(station);
         });
 
         List<SegmentMetroDTO> segmentMetroDTOs = new ArrayList<>();
-        Parser.getSegmentMetro().forEach(segment -> {
+        result.segmentMetro().forEach(segment -> {
             assertFalse(segmentMetroDTOs.contains(segment));
             segmentMetroDTOs.add(segment);
         });
 
-        assertEquals(93, Parser.getMetroLines().keySet().size());
+        assertEquals(93, result.metroLines().keySet().size());
     }
 
     /**
@@ -119,7 +123,7 @@ public class ParserTest extends Assertions {
      */
     @Test
     public void testCalculateSchedulesException() {
-        assertThrows(NullPointerException.class, () -> Parser.calculateSchedules("notAFile"));
+        assertThrows(NullPointerException.class, () -> Parser.calculateSchedules("notAFile", 1));
     }
 
     /**
@@ -131,7 +135,49 @@ public class ParserTest extends Assertions {
      */
     @Test
     public void testGetSchedule() throws FileNotFoundException, IOException {
-        Parser.calculateSchedules(test_schedule);
-        assertNotEquals(0, Parser.getMetroLineSchedules().keySet().size());
+        assertNotEquals(0, Parser.calculateSchedules(test_schedule, 1).keySet().size());
+    }
+
+    /**
+     * Tests that the schedules parsed in parallel chunks are the ones parsed on the calling thread, in the same order.
+     *
+     * @throws IOException if there is an error reading the test schedule file
+     */
+    @Test
+    public void testParallelSchedules() throws IOException {
+        Map<String, List<Integer>> expected = Parser.calculateSchedules(test_schedule, 1);
+        for (int parallelism : new int[]{2, 3, 8}) {
+            assertEquals(expected, Parser.calculateSchedules(test_schedule, parallelism));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Parser.calculateSchedules(test_schedule, 0));
+    }
+
+    /**
+     * Tests that each parse returns its own immutable result, and that parsing again neither changes a previous result
+     * nor accumulates into the new one.
+     *
+     * @throws Exception if the files cannot be parsed
+     */
+    @Test
+    public void testParseResultIsIndependent() throws Exception {
+        Parser parser = new Parser(2);
+        ParseResult first = parser.parse(map_data, test_schedule);
+        String line = first.metroLineSchedules().keySet().iterator().next();
+        int nbSchedules = first.metroLineSchedules().get(line).size();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ParseResult> second = executor.submit(() -> parser.parse(map_data, test_schedule));
+            Future<ParseResult> third = executor.submit(() -> new Parser(1).parse(map_data, test_schedule));
+            assertEquals(first, second.get());
+            assertEquals(first, third.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(nbSchedules, first.metroLineSchedules().get(line).size());
+        assertThrows(UnsupportedOperationException.class, () -> first.stations().clear());
+        assertThrows(UnsupportedOperationException.class, () -> first.metroLines().clear());
+        assertThrows(UnsupportedOperationException.class, () -> first.metroLineSchedules().get(line).add(0));
+        assertThrows(IllegalArgumentException.class, () -> new Parser(0));
     }
 }
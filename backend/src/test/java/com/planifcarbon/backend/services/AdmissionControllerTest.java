@@ -0,0 +1,149 @@
+package com.planifcarbon.backend.services;
+
+import com.planifcarbon.backend.exceptions.OverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link AdmissionController} class.
+ */
+class AdmissionControllerTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    private AdmissionController controller(int initial, int min, int max) {
+        return new AdmissionController(true, initial, min, max, Duration.ofMillis(100), 0.5, Duration.ofSeconds(2),
+                clock::get);
+    }
+
+    /**
+     * Run a search which takes the given time on the fake clock.
+     */
+    private int search(AdmissionController controller, long millis) {
+        return controller.admit(() -> {
+            clock.addAndGet(Duration.ofMillis(millis).toNanos());
+            return controller.getInFlight();
+        });
+    }
+
+    /**
+     * Tests that a disabled controller admits every search.
+     */
+    @Test
+    void testDisabled() {
+        AdmissionController controller = new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO);
+        assertEquals(0, controller.admit(() -> controller.admit(controller::getInFlight)));
+        assertEquals(0, controller.getRejectedCount());
+    }
+
+    /**
+     * Tests that the searches over the limit are refused with the retry time.
+     */
+    @Test
+    void testRejectedOverLimit() {
+        AdmissionController controller = controller(1, 1, 1);
+        OverloadedException e = assertThrows(OverloadedException.class,
+                () -> controller.admit(() -> controller.admit(() -> 0)));
+        assertEquals(Duration.ofSeconds(2), e.getRetryAfter());
+        assertEquals(1, controller.getRejectedCount());
+        assertEquals(0, controller.getInFlight());
+        assertEquals(1, search(controller, 0));
+    }
+
+    /**
+     * Tests that fast searches raise the limit up to the max while the limit is in use.
+     */
+    @Test
+    void testAdditiveIncrease() {
+        AdmissionController controller = controller(2, 1, 3);
+        search(controller, 10);
+        assertEquals(3, controller.getLimit());
+        search(controller, 10);
+        assertEquals(3, controller.getLimit());
+        // a single search does not use half of a larger limit
+        AdmissionController large = controller(4, 1, 8);
+        search(large, 10);
+        assertEquals(4, large.getLimit());
+    }
+
+    /**
+     * Tests that slow searches lower the limit down to the min.
+     */
+    @Test
+    void testMultiplicativeDecrease() {
+        AdmissionController controller = controller(8, 2, 8);
+        search(controller, 200);
+        assertEquals(4, controller.getLimit());
+        search(controller, 200);
+        search(controller, 200);
+        assertEquals(2, controller.getLimit());
+    }
+
+    /**
+     * Tests that the wait of a search before its runner runs it does not count in its latency, and that a search the
+     * runner refuses is not measured.
+     */
+    @Test
+    void testWaitIsNotMeasured() {
+        AdmissionController controller = controller(8, 2, 8);
+        Function<Supplier<Integer>, Integer> queued = search -> {
+            clock.addAndGet(Duration.ofMillis(500).toNanos());
+            return search.get();
+        };
+        controller.admit(() -> 0, queued);
+        assertEquals(8, controller.getLimit());
+        assertThrows(RejectedExecutionException.class, () -> controller.admit(() -> 0, search -> {
+            throw new RejectedExecutionException("queue full");
+        }));
+        assertEquals(8, controller.getLimit());
+        assertEquals(0, controller.getInFlight());
+        search(controller, 200);
+        assertEquals(4, controller.getLimit());
+    }
+
+    /**
+     * Tests that the search exceptions are given to the caller and release the slot.
+     */
+    @Test
+    void testExceptionReleasesSlot() {
+        AdmissionController controller = controller(1, 1, 1);
+        assertThrows(IllegalStateException.class, () -> controller.admit(() -> {
+            throw new IllegalStateException("bad search");
+        }));
+        assertEquals(0, controller.getInFlight());
+    }
+
+    /**
+     * Tests that invalid limits are refused.
+     */
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> controller(1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> controller(1, 2, 4));
+        assertThrows(IllegalArgumentException.class, () -> controller(5, 2, 4));
+        assertThrows(IllegalArgumentException.class, () -> controller(2, 2, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdmissionController(true, 1, 1, 1, Duration.ZERO, 1, Duration.ZERO));
+    }
+
+    /**
+     * Tests the metrics of the controller.
+     */
+    @Test
+    void testMetrics() {
+        AdmissionController controller = controller(1, 1, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        controller.bindTo(registry);
+        assertThrows(OverloadedException.class, () -> controller.admit(() -> controller.admit(() -> 0)));
+        assertEquals(1, registry.get("admission.limit").gauge().value());
+        assertEquals(0, registry.get("admission.in-flight").gauge().value());
+        assertEquals(1, registry.get("admission.rejected").functionCounter().count());
+    }
+}
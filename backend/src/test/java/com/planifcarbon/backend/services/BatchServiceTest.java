@@ -0,0 +1,111 @@
+package com.planifcarbon.backend.services;
+
+import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import com.planifcarbon.backend.dtos.PathRequestDTO;
+import com.planifcarbon.backend.dtos.PathResultDTO;
+import com.planifcarbon.backend.model.MetroMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used for testing the BatchService class.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        classes = {BatchService.class, PathService.class, MetroMap.class, RouteCache.class,
+        RoutingExecutor.class,
+        AdmissionController.class})
+@TestPropertySource(locations = "classpath:application-tests.properties",
+        properties = {"routing.executor.threads=4", "path-batch.max-size=20"})
+class BatchServiceTest {
+
+    @Autowired
+    private BatchService batchService;
+
+    @Autowired
+    private PathService pathService;
+
+    @Autowired
+    private RoutingExecutor routingExecutor;
+
+    @Autowired
+    private MetroMap metroMap;
+
+    /**
+     * This test case checks that the results are in the order of the requests, and that failed requests give an error
+     * without failing the others.
+     */
+    @Test
+    public void testBestPaths() {
+        List<PathRequestDTO> requests = new ArrayList<>(List.of(
+                new PathRequestDTO("Bercy", "Gare du Nord", 53100, "TIME", "METRO"),
+                new PathRequestDTO("Nation", "Bastille", 35000, "TIME", "METRO_FOOT"),
+                new PathRequestDTO("Nation", "Bercy", -1, "TIME", "METRO_FOOT"),
+                new PathRequestDTO("Nowhere", "Bercy", 35000, "DISTANCE", "FOOT"),
+                new PathRequestDTO("Lourmel", "Porte de Clichy", 0, "DISTANCE", "METRO_FOOT")));
+        requests.add(null);
+        List<PathResultDTO> results = batchService.getBestPaths(requests);
+        assertEquals(requests.size(), results.size());
+        for (int i : new int[] {0, 1, 4}) {
+            PathRequestDTO request = requests.get(i);
+            List<DjikstraSearchResultDTO> expected = pathService.getBestPath(request.getStart(), request.getEnd(),
+                    request.getTime(), request.getMethod(), request.getTransportation());
+            assertNull(results.get(i).getError());
+            assertEquals(expected.size(), results.get(i).getPath().size());
+            assertEquals(expected.get(expected.size() - 1).getWeight(),
+                    results.get(i).getPath().get(results.get(i).getPath().size() - 1).getWeight());
+        }
+        for (int i : new int[] {2, 3, 5}) {
+            assertNull(results.get(i).getPath());
+            assertNotNull(results.get(i).getError());
+        }
+    }
+
+    /**
+     * This test case checks that a batch larger than the threads and the queue of an enabled routing executor is
+     * answered: the requests run on its threads and on the calling thread, and their searches do not wait for a thread.
+     */
+    @Test
+    public void testBatchOnEnabledExecutor() {
+        RoutingExecutor executor = new RoutingExecutor(true, 2, 1);
+        try {
+            PathService service = new PathService(metroMap, new RouteCache(0, Duration.ZERO), executor,
+                    new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+            List<PathRequestDTO> requests = Collections.nCopies(20,
+                    new PathRequestDTO("Bercy", "Gare du Nord", 53100, "TIME", "METRO_FOOT"));
+            List<PathResultDTO> results = new BatchService(service, executor, 20).getBestPaths(requests);
+            assertEquals(20, results.size());
+            List<DjikstraSearchResultDTO> expected = service.getBestPath("Bercy", "Gare du Nord", 53100, "TIME",
+                    "METRO_FOOT");
+            for (PathResultDTO result : results) {
+                assertNull(result.getError());
+                assertEquals(expected.size(), result.getPath().size());
+                assertEquals(expected.get(expected.size() - 1).getWeight(),
+                        result.getPath().get(result.getPath().size() - 1).getWeight());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This test case checks the threads of the routing executor and the bound of the batch size.
+     */
+    @Test
+    public void testBatchBounds() {
+        assertEquals(4, routingExecutor.getThreads());
+        assertTrue(batchService.getBestPaths(List.of()).isEmpty());
+        List<PathRequestDTO> tooMany = Collections.nCopies(21, new PathRequestDTO("Bercy", "Nation", 0, "TIME", "METRO"));
+        assertThrows(IllegalArgumentException.class, () -> batchService.getBestPaths(tooMany));
+        assertThrows(IllegalArgumentException.class, () -> batchService.getBestPaths(null));
+        assertThrows(IllegalArgumentException.class, () -> new BatchService(pathService, routingExecutor, -1));
+    }
+}
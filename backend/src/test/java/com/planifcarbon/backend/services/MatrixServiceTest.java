@@ -0,0 +1,152 @@
+package com.planifcarbon.backend.services;
+
+import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import com.planifcarbon.backend.dtos.TravelMatrixDTO;
+import com.planifcarbon.backend.exceptions.SearchTimeoutException;
+import com.planifcarbon.backend.model.MetroMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * This class is used for testing the MatrixService class.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        classes = {MatrixService.class, PathService.class, MetroMap.class, RouteCache.class,
+        RoutingExecutor.class,
+        AdmissionController.class})
+@TestPropertySource(locations = "classpath:application-tests.properties", properties = "routing.executor.threads=3")
+class MatrixServiceTest {
+    private static final List<String> ORIGINS = List.of("Bercy", "Nation", "(48.84014763512746, 2.3791909087742877)");
+    private static final List<String> DESTINATIONS = List.of("Gare du Nord", "Bastille", "Bercy", "Porte de Clichy");
+
+    @Autowired
+    private MatrixService matrixService;
+
+    @Autowired
+    private PathService pathService;
+
+    @Autowired
+    private MetroMap metroMap;
+
+    /**
+     * This test case checks that each cell of the matrix is the weight of the best path between its origin and its
+     * destination, minus the departure time.
+     *
+     * @param method         the method of the matrix (TIME, DISTANCE)
+     * @param transportation the mode of transportation (METRO, METRO_FOOT, FOOT)
+     */
+    @ParameterizedTest
+    @CsvSource({"TIME, METRO_FOOT", "TIME, METRO", "DISTANCE, METRO_FOOT", "DISTANCE, FOOT"})
+    public void testTravelMatrix(String method, String transportation) {
+        int time = 53100;
+        TravelMatrixDTO matrix = matrixService.getTravelMatrix(ORIGINS, DESTINATIONS, time, method, transportation);
+        assertEquals(ORIGINS, matrix.getOrigins());
+        assertEquals(DESTINATIONS, matrix.getDestinations());
+        assertEquals(ORIGINS.size(), matrix.getWeights().length);
+        int startWeight = method.equals("TIME") ? time : 0;
+        for (int i = 0; i < ORIGINS.size(); i++) {
+            assertEquals(DESTINATIONS.size(), matrix.getWeights()[i].length);
+            for (int j = 0; j < DESTINATIONS.size(); j++) {
+                List<DjikstraSearchResultDTO> path = pathService.getBestPath(ORIGINS.get(i), DESTINATIONS.get(j), time,
+                        method, transportation);
+                Double weight = matrix.getWeights()[i][j];
+                if (path.isEmpty()) {
+                    assertTrue(weight == null || weight == 0, ORIGINS.get(i) + " -> " + DESTINATIONS.get(j));
+                } else {
+                    assertEquals(path.get(path.size() - 1).getWeight() - startWeight, weight, 1e-6,
+                            ORIGINS.get(i) + " -> " + DESTINATIONS.get(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * This test case checks that the search of each origin is admitted by the admission controller, runs on the
+     * threads of the routing executor, and fails once out of time.
+     */
+    @Test
+    public void testSearchesAreAdmittedAndBounded() {
+        RoutingExecutor executor = new RoutingExecutor(false, 2, 4);
+        try {
+            AdmissionController admission = Mockito.spy(new AdmissionController(true, 4, 1, 8, Duration.ofSeconds(10),
+                    0.5, Duration.ZERO));
+            PathService limited = new PathService(metroMap, new RouteCache(0, Duration.ZERO), executor, admission,
+                    Duration.ofNanos(1), true);
+            MatrixService service = new MatrixService(metroMap, limited, executor);
+            assertThrows(SearchTimeoutException.class,
+                    () -> service.getTravelMatrix(ORIGINS, DESTINATIONS, 53100, "TIME", "METRO_FOOT"));
+            assertEquals(ORIGINS.size(), limited.timedOutCount());
+            Mockito.verify(admission, Mockito.times(ORIGINS.size())).admit(any(), any());
+
+            PathService unlimited = new PathService(metroMap, new RouteCache(0, Duration.ZERO), executor, admission,
+                    Duration.ZERO, true);
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            MetroMap spy = Mockito.spy(metroMap);
+            Mockito.doAnswer(invocation -> {
+                threads.add(Thread.currentThread().getName());
+                return invocation.callRealMethod();
+            }).when(spy).getWeightsToStations(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+            List<String> origins = Collections.nCopies(20, "Bercy");
+            new MatrixService(spy, unlimited, executor).getTravelMatrix(origins, DESTINATIONS, 53100, "TIME", "METRO");
+            // The calling thread runs its share of the origins, the other ones run on the executor and no other pool.
+            threads.remove(Thread.currentThread().getName());
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("routing-")));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This test case checks that the time budget of each origin starts with its own search: origins waiting for the
+     * searches of the other ones do not run out of time.
+     */
+    @Test
+    public void testBudgetStartsWithEachSearch() {
+        RoutingExecutor executor = new RoutingExecutor(false, 0, 1);
+        PathService limited = new PathService(metroMap, new RouteCache(0, Duration.ZERO), executor,
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ofSeconds(2),
+                true);
+        MetroMap spy = Mockito.spy(metroMap);
+        // Each search takes a third of the budget, the searches of all the origins take longer than it.
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(700);
+            return invocation.callRealMethod();
+        }).when(spy).getWeightsToStations(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+        List<String> origins = Collections.nCopies(4, "Bercy");
+        TravelMatrixDTO matrix = new MatrixService(spy, limited, executor).getTravelMatrix(origins, DESTINATIONS, 53100,
+                "TIME", "METRO");
+        assertEquals(origins.size(), matrix.getWeights().length);
+        assertEquals(0, limited.timedOutCount());
+    }
+
+    /**
+     * This test case checks the validation of the requests.
+     */
+    @Test
+    public void testInvalidRequests() {
+        assertThrows(IllegalArgumentException.class,
+                () -> matrixService.getTravelMatrix(List.of(), DESTINATIONS, 0, "TIME", "METRO"));
+        assertThrows(IllegalArgumentException.class,
+                () -> matrixService.getTravelMatrix(ORIGINS, null, 0, "TIME", "METRO"));
+        assertThrows(IllegalArgumentException.class,
+                () -> matrixService.getTravelMatrix(ORIGINS, List.of("Nowhere"), 0, "TIME", "METRO"));
+        assertThrows(IllegalArgumentException.class,
+                () -> matrixService.getTravelMatrix(ORIGINS, DESTINATIONS, -1, "TIME", "METRO"));
+    }
+}
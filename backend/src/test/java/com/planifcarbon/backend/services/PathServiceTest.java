@@ -1,28 +1,58 @@
 package com.planifcarbon.backend.services;
 
 import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import com.planifcarbon.backend.dtos.ReachableStationDTO;
+import com.planifcarbon.backend.exceptions.SearchTimeoutException;
 import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.SearchBudget;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 
 /**
  * This class is used for testing the PathService class.
  */
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, classes = {PathService.class, MetroMap.class})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        classes = {PathService.class, MetroMap.class, RouteCache.class, RoutingExecutor.class,
+        AdmissionController.class})
 @TestPropertySource(locations = "classpath:application-tests.properties")
 class PathServiceTest {
 
     @Autowired
     private PathService service;
 
+    @Autowired
+    private MetroMap metroMap;
+
+    @Autowired
+    private RouteCache routeCache;
+
     /**
      * This test case uses ParameterizedTest and CsvSource annotations to pass multiple sets of input arguments to the
      * getBestPath method of the PathService class, and checks if the result is non-null.
@@ -41,6 +71,31 @@ class PathServiceTest {
         assertNotNull(result);
     }
 
+    /**
+     * This test case checks that every routing engine gives a path arriving at the same time.
+     *
+     * @param start          the starting location for the path search
+     * @param end            the destination location for the path search
+     * @param time           the departure time
+     * @param transportation the mode of transportation to be used for the search (METRO, METRO_FOOT, FOOT)
+     */
+    @ParameterizedTest
+    @CsvSource({"Bercy, Gare du Nord, 53100, METRO", "Bercy, Gare du Nord, 53100, METRO_FOOT",
+            "Nation, La Défense (Grande Arche), 35000, METRO"})
+    public void testGetBestPathWithEngine(String start, String end, int time, String transportation) {
+        List<DjikstraSearchResultDTO> dijkstra = service.getBestPath(start, end, time, "TIME", transportation, "DIJKSTRA");
+        List<DjikstraSearchResultDTO> raptor = service.getBestPath(start, end, time, "TIME", transportation, "RAPTOR");
+        assertFalse(raptor.isEmpty());
+        assertEquals(dijkstra.get(dijkstra.size() - 1).getWeight(), raptor.get(raptor.size() - 1).getWeight());
+        List<DjikstraSearchResultDTO> csa = service.getBestPath(start, end, time, "TIME", transportation, "CSA");
+        assertFalse(csa.isEmpty());
+        assertEquals(dijkstra.get(dijkstra.size() - 1).getWeight(), csa.get(csa.size() - 1).getWeight());
+        List<DjikstraSearchResultDTO> aStar = service.getBestPath(start, end, time, "TIME", transportation, "ASTAR");
+        assertEquals(dijkstra.get(dijkstra.size() - 1).getWeight(), aStar.get(aStar.size() - 1).getWeight());
+        assertNotNull(service.getBestPath(start, end, time, "DISTANCE", transportation, "RAPTOR"));
+        assertFalse(service.getBestPath(start, end, time, "DISTANCE", transportation, "ASTAR").isEmpty());
+    }
+
     /**
      * This test case checks if the getBestPath method of the PathService class returns a non-null result when given
      * customized starting and ending locations, using the LatLng coordinates.
@@ -59,4 +114,347 @@ class PathServiceTest {
                 ".3572164888604563)", "(48.84014763512746, 2.3791909087742877)", 53100, "TIME", "METRO");
         assertNotNull(resultWithEndNode);
     }
+
+    /**
+     * This test case checks that cached paths are the ones computed without cache, when metro only departures from a
+     * station share a cache entry up to the next train, and other departures keep their exact time.
+     *
+     * @param transportation the mode of transportation to be used for the search (METRO, METRO_FOOT, FOOT)
+     * @param engine the routing engine to use
+     */
+    @ParameterizedTest
+    @CsvSource({"METRO, DIJKSTRA", "METRO, RAPTOR", "METRO_FOOT, DIJKSTRA", "FOOT, DIJKSTRA"})
+    public void testCachedPathsAreExact(String transportation, String engine) {
+        PathService uncached = new PathService(metroMap, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        for (int time = 53000; time < 53600; time += 37) {
+            List<DjikstraSearchResultDTO> expected = uncached.getBestPath("Bercy", "Gare du Nord", time, "TIME",
+                    transportation, engine);
+            List<DjikstraSearchResultDTO> result = service.getBestPath("Bercy", "Gare du Nord", time, "TIME",
+                    transportation, engine);
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getWeight(), result.get(i).getWeight());
+                assertEquals(expected.get(i).getEnd().getName(), result.get(i).getEnd().getName());
+            }
+        }
+    }
+
+    /**
+     * This test case checks that walking requests leave at their exact time by default, and that with a time bucket
+     * the requests leaving within the same bucket share one cache entry.
+     */
+    @Test
+    public void testCloseDeparturesShareTheCache() {
+        List<DjikstraSearchResultDTO> first = service.getBestPath("(48.84014763512746, 2.3791909087742877)",
+                "Gare du Nord", 43201, "TIME", "METRO_FOOT");
+        long hits = routeCache.hitCount();
+        List<DjikstraSearchResultDTO> second = service.getBestPath("(48.84014763512746, 2.3791909087742877)",
+                "Gare du Nord", 43259, "TIME", "METRO_FOOT");
+        assertEquals(hits, routeCache.hitCount());
+        assertEquals(first.get(0).getWeight() + 58, second.get(0).getWeight());
+
+        RouteCache bucketed = new RouteCache(10, Duration.ofMinutes(10), Duration.ofMinutes(1));
+        PathService sharing = new PathService(metroMap, bucketed, new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        first = sharing.getBestPath("(48.84014763512746, 2.3791909087742877)", "Gare du Nord", 43201, "TIME",
+                "METRO_FOOT");
+        second = sharing.getBestPath("(48.84014763512746, 2.3791909087742877)", "Gare du Nord", 43259, "TIME",
+                "METRO_FOOT");
+        assertEquals(1, bucketed.hitCount());
+        assertEquals(first, second);
+    }
+
+    /**
+     * This test case checks that a repeated request is answered from the cache.
+     */
+    @Test
+    public void testRepeatedRequestIsCached() {
+        List<DjikstraSearchResultDTO> first = service.getBestPath("Nation", "Bercy", 40000, "DISTANCE", "METRO_FOOT");
+        long hits = routeCache.hitCount();
+        List<DjikstraSearchResultDTO> second = service.getBestPath("Nation", "Bercy", 12345, "distance", "METRO_FOOT");
+        assertEquals(hits + 1, routeCache.hitCount());
+        assertEquals(first, second);
+    }
+
+    /**
+     * This stress test checks that concurrent identical requests trigger a single search, all the callers wait for it
+     * and receive its result.
+     */
+    @Test
+    public void testConcurrentIdenticalRequestsShareOneSearch() throws Exception {
+        int nbCallers = 32;
+        MetroMap spy = Mockito.spy(metroMap);
+        PathService coalescing = new PathService(spy, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        // The search is held until every other caller waits for it.
+        Mockito.doAnswer(invocation -> {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (coalescing.coalescedCount() < nbCallers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return invocation.callRealMethod();
+        }).when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbCallers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<DjikstraSearchResultDTO>>> results = new ArrayList<>();
+            for (int i = 0; i < nbCallers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return coalescing.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT");
+                }));
+            }
+            start.countDown();
+            List<DjikstraSearchResultDTO> first = results.get(0).get(30, TimeUnit.SECONDS);
+            assertFalse(first.isEmpty());
+            for (Future<List<DjikstraSearchResultDTO>> result : results) {
+                assertSame(first, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Mockito.verify(spy, Mockito.times(1)).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any());
+        assertEquals(nbCallers - 1, coalescing.coalescedCount());
+    }
+
+    /**
+     * This test case checks that an {@link Error} thrown by a search is given to the caller waiting for it, and that a
+     * later identical request runs a new search instead of waiting forever.
+     */
+    @Test
+    public void testCoalescedRequestsShareFatalErrors() throws Exception {
+        MetroMap spy = Mockito.spy(metroMap);
+        PathService coalescing = new PathService(spy, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        // The search fails once the other caller waits for it.
+        Mockito.doAnswer(invocation -> {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (coalescing.coalescedCount() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            throw new StackOverflowError("search too deep");
+        }).when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<DjikstraSearchResultDTO>>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> coalescing.getBestPath("Nation", "Gare du Nord", 50000, "TIME",
+                        "METRO_FOOT")));
+            }
+            for (Future<List<DjikstraSearchResultDTO>> result : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(30, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, coalescing.coalescedCount());
+        Mockito.doCallRealMethod().when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any());
+        assertFalse(coalescing.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT").isEmpty());
+    }
+
+    /**
+     * This test case checks that a request with its own timeout runs its own search instead of waiting for an identical
+     * request with the default budget.
+     */
+    @Test
+    public void testRequestTimeoutsAreNotCoalesced() throws Exception {
+        MetroMap spy = Mockito.spy(metroMap);
+        PathService coalescing = new PathService(spy, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        // The first search is held until the request with a timeout is over.
+        Mockito.doAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                entered.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return invocation.callRealMethod();
+        }).when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<DjikstraSearchResultDTO>> leader = executor.submit(() -> coalescing.getBestPath("Nation",
+                    "Gare du Nord", 50000, "TIME", "METRO_FOOT"));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            assertThrows(SearchTimeoutException.class, () -> coalescing.getBestPath("Nation", "Gare du Nord", 50000,
+                    "TIME", "METRO_FOOT", "DIJKSTRA", Duration.ofNanos(1)));
+            release.countDown();
+            assertFalse(leader.get(30, TimeUnit.SECONDS).isEmpty());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(0, coalescing.coalescedCount());
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * This test case checks that a request waiting for an identical one fails at its own deadline, not at the one of
+     * the search it waits for.
+     */
+    @Test
+    public void testCoalescedRequestsKeepTheirDeadline() throws Exception {
+        MetroMap spy = Mockito.spy(metroMap);
+        PathService coalescing = new PathService(spy, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ofMillis(300),
+                true);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The search is held until the waiting request gave up.
+        Mockito.doAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<DjikstraSearchResultDTO>> leader = executor.submit(() -> coalescing.getBestPath("Nation",
+                    "Gare du Nord", 50000, "TIME", "METRO_FOOT"));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            assertThrows(SearchTimeoutException.class,
+                    () -> coalescing.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT"));
+            assertEquals(1, coalescing.coalescedCount());
+            release.countDown();
+            // The held search ran out of time too.
+            ExecutionException e = assertThrows(ExecutionException.class, () -> leader.get(30, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof SearchTimeoutException);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(2, coalescing.timedOutCount());
+    }
+
+    /**
+     * This test case checks that a request waiting for an identical one does not share the path given by a search out
+     * of time, it runs its own search within its own budget.
+     */
+    @Test
+    public void testCoalescedRequestsDoNotShareBestEffortPaths() throws Exception {
+        Duration timeout = Duration.ofSeconds(1);
+        MetroMap spy = Mockito.spy(metroMap);
+        PathService coalescing = new PathService(spy, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), timeout, true);
+        CountDownLatch entered = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        // The first search is held until another request waits for it and its own budget is exhausted.
+        Mockito.doAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                entered.countDown();
+                SearchBudget budget = invocation.getArgument(6);
+                while (budget.remainingNanos() > 0 || coalescing.coalescedCount() == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            return invocation.callRealMethod();
+        }).when(spy).getSegmentsFromPath(any(), any(), anyInt(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<DjikstraSearchResultDTO>> leader = executor.submit(() -> coalescing.getBestPath("Nation",
+                    "Gare du Nord", 50000, "TIME", "METRO_FOOT"));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            Thread.sleep(600);
+            List<DjikstraSearchResultDTO> own = coalescing.getBestPath("Nation", "Gare du Nord", 50000, "TIME",
+                    "METRO_FOOT");
+            assertFalse(own.isEmpty());
+            assertEquals(service.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT").size(), own.size());
+            try {
+                assertNotSame(own, leader.get(30, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SearchTimeoutException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, coalescing.coalescedCount());
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * This test case checks that the error of a search is given to every caller waiting for it.
+     */
+    @Test
+    public void testCoalescedRequestsShareErrors() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getBestPath("Nation", "Bercy", -1, "TIME", "METRO_FOOT"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getBestPath("Nation", "Bercy", -1, "TIME", "METRO_FOOT"));
+    }
+
+    /**
+     * This test case checks that the isochrone gives the stations reachable within the limit, nearest first, with the
+     * arrival time of their best path.
+     */
+    @Test
+    public void testGetIsochrone() {
+        List<ReachableStationDTO> reachable = service.getIsochrone("Bercy", 53100, "TIME", "METRO_FOOT", 1800);
+        assertFalse(reachable.isEmpty());
+        assertEquals("Bercy", reachable.get(0).getStation().getName());
+        assertEquals(53100, reachable.get(0).getWeight());
+        for (int i = 1; i < reachable.size(); i++) {
+            assertTrue(reachable.get(i - 1).getWeight() <= reachable.get(i).getWeight());
+            assertTrue(reachable.get(i).getWeight() <= 53100 + 1800);
+        }
+        ReachableStationDTO last = reachable.get(reachable.size() - 1);
+        List<DjikstraSearchResultDTO> path = service.getBestPath("Bercy", last.getStation().getName(), 53100, "TIME",
+                "METRO_FOOT");
+        assertEquals(last.getWeight(), path.get(path.size() - 1).getWeight());
+        assertFalse(service.getIsochrone("(48.84014763512746, 2.3791909087742877)", 0, "DISTANCE", "FOOT", 2).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> service.getIsochrone("Bercy", 0, "TIME", "METRO", -1));
+    }
+
+    /**
+     * This test case checks that the searches out of time fail when they have no path to give, are counted, and that
+     * the timeout of a request can only shorten the default one.
+     */
+    @Test
+    public void testSearchTimeout() {
+        PathService limited = new PathService(metroMap, new RouteCache(10, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ofNanos(1), false);
+        assertThrows(SearchTimeoutException.class,
+                () -> limited.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT"));
+        assertThrows(SearchTimeoutException.class,
+                () -> limited.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT", "ASTAR"));
+        assertThrows(SearchTimeoutException.class,
+                () -> limited.getIsochrone("Nation", 50000, "TIME", "METRO_FOOT", 600));
+        // Raptor and Connection Scan are not bounded by the budget.
+        assertFalse(limited.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT", "RAPTOR").isEmpty());
+        assertThrows(SearchTimeoutException.class, () -> limited.getBestPath("Nation", "Gare du Nord", 50000, "TIME",
+                "METRO_FOOT", "DIJKSTRA", Duration.ofMinutes(1)));
+        assertEquals(4, limited.timedOutCount());
+        assertEquals(0, limited.bestEffortCount());
+
+        PathService unlimited = new PathService(metroMap, new RouteCache(0, Duration.ZERO),
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ZERO, true);
+        assertFalse(unlimited.getBestPath("Nation", "Gare du Nord", 50000, "TIME", "METRO_FOOT", "DIJKSTRA",
+                Duration.ofMinutes(1)).isEmpty());
+        assertThrows(SearchTimeoutException.class, () -> unlimited.getBestPath("Nation", "Gare du Nord", 50000, "TIME",
+                "METRO_FOOT", "DIJKSTRA", Duration.ofNanos(1)));
+        assertFalse(unlimited.getIsochrone("Nation", 50000, "TIME", "METRO_FOOT", 600, Duration.ofMinutes(1))
+                .isEmpty());
+        assertThrows(SearchTimeoutException.class, () -> unlimited.getIsochrone("Nation", 50000, "TIME", "METRO_FOOT",
+                600, Duration.ofNanos(1)));
+        assertEquals(2, unlimited.timedOutCount());
+        assertThrows(IllegalArgumentException.class, () -> new PathService(metroMap, routeCache,
+                new RoutingExecutor(false, 0, 1),
+                new AdmissionController(false, 1, 1, 1, Duration.ZERO, 0.5, Duration.ZERO), Duration.ofSeconds(-1), true));
+    }
 }
@@ -0,0 +1,128 @@
+package com.planifcarbon.backend.services;
+
+import com.planifcarbon.backend.dtos.DjikstraSearchResultDTO;
+import com.planifcarbon.backend.dtos.NodeDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link RouteCache} class.
+ */
+class RouteCacheTest {
+    private static final List<DjikstraSearchResultDTO> PATH = List.of(
+            new DjikstraSearchResultDTO(new NodeDTO("A", 2.0, 1.0), new NodeDTO("B", 2.1, 1.0), 100, "1", "B"));
+
+    /**
+     * Returns the key of a request at the given time.
+     *
+     * @param time departure time.
+     * @return the key of the request.
+     */
+    private static RouteCache.Key key(int time) {
+        return new RouteCache.Key("A", "B", "TIME", "METRO", "DIJKSTRA", time);
+    }
+
+    /**
+     * Tests that the least recently used path is evicted once the cache is full.
+     */
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        RouteCache cache = new RouteCache(2, Duration.ofMinutes(1));
+        cache.put(key(1), 0, PATH);
+        cache.put(key(2), 0, PATH);
+        assertEquals(PATH, cache.get(key(1), 0));
+        cache.put(key(3), 0, PATH);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(key(2), 0));
+        assertNotNull(cache.get(key(1), 0));
+        assertNotNull(cache.get(key(3), 0));
+        assertEquals(3, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    /**
+     * Tests that cached paths expire after their time to live.
+     */
+    @Test
+    void testTimeToLive() {
+        AtomicLong now = new AtomicLong();
+        RouteCache cache = new RouteCache(10, Duration.ofSeconds(5), Duration.ZERO, now::get);
+        cache.put(key(1), 0, PATH);
+        now.set(Duration.ofSeconds(4).toNanos());
+        assertNotNull(cache.get(key(1), 0));
+        now.set(Duration.ofSeconds(5).toNanos());
+        assertNull(cache.get(key(1), 0));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that a new version of the network data drops the cached paths, and that older paths are not cached.
+     */
+    @Test
+    void testDataVersion() {
+        RouteCache cache = new RouteCache(10, Duration.ofMinutes(1));
+        cache.put(key(1), 1, PATH);
+        assertNotNull(cache.get(key(1), 1));
+        assertNull(cache.get(key(1), 2));
+        cache.put(key(1), 1, PATH);
+        assertNull(cache.get(key(1), 2));
+        cache.put(key(1), 2, PATH);
+        assertNotNull(cache.get(key(1), 2));
+        cache.invalidate();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that a cache of size 0 keeps nothing, and that negative bounds are rejected.
+     */
+    @Test
+    void testDisabledAndInvalidCache() {
+        RouteCache cache = new RouteCache(0, Duration.ofMinutes(1));
+        cache.put(key(1), 0, PATH);
+        assertNull(cache.get(key(1), 0));
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(-1, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(1, Duration.ofMinutes(-1)));
+    }
+
+    /**
+     * Tests that departure times are rounded up to the end of their bucket, and kept when there is no bucket.
+     */
+    @Test
+    void testBucketTime() {
+        RouteCache cache = new RouteCache(10, Duration.ofMinutes(1), Duration.ofMinutes(1), System::nanoTime);
+        assertEquals(53100, cache.bucketTime(53041));
+        assertEquals(53100, cache.bucketTime(53100));
+        assertEquals(53160, cache.bucketTime(53101));
+        assertEquals(0, cache.bucketTime(0));
+        assertEquals(-1, cache.bucketTime(-1));
+        assertEquals(Integer.MAX_VALUE, cache.bucketTime(Integer.MAX_VALUE));
+        assertEquals(53101, new RouteCache(10, Duration.ofMinutes(1)).bucketTime(53101));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RouteCache(1, Duration.ofMinutes(1), Duration.ofMinutes(-1), System::nanoTime));
+    }
+
+    /**
+     * Tests that the counters of the cache are registered as metrics.
+     */
+    @Test
+    void testMetrics() {
+        RouteCache cache = new RouteCache(10, Duration.ofMinutes(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.put(key(1), 0, PATH);
+        cache.get(key(1), 0);
+        cache.get(key(2), 0);
+        assertEquals(1, registry.get("cache.gets").tag("cache", "routes").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertEquals(0, registry.get("cache.evictions").functionCounter().count());
+        assertEquals(1, registry.get("cache.size").gauge().value());
+    }
+}
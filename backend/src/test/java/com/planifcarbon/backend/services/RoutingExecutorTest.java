@@ -0,0 +1,141 @@
+package com.planifcarbon.backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link RoutingExecutor} class.
+ */
+class RoutingExecutorTest {
+
+    /**
+     * Tests that a disabled executor runs the searches on the calling thread.
+     */
+    @Test
+    void testDisabled() {
+        RoutingExecutor executor = new RoutingExecutor(false, 0, 1);
+        assertFalse(executor.isEnabled());
+        assertFalse(executor.isSearchThread());
+        assertSame(Thread.currentThread(), executor.call(Thread::currentThread));
+        assertEquals(0, executor.getQueueSize());
+        assertEquals(Runtime.getRuntime().availableProcessors(), executor.getThreads());
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that an enabled executor runs the searches on its threads and gives their exceptions to the callers.
+     */
+    @Test
+    void testEnabled() {
+        RoutingExecutor executor = new RoutingExecutor(true, 2, 4);
+        try {
+            assertTrue(executor.isEnabled());
+            assertTrue(executor.call(() -> Thread.currentThread().getName()).startsWith("routing-"));
+            assertThrows(IllegalArgumentException.class, () -> executor.call(() -> {
+                throw new IllegalArgumentException("bad search");
+            }));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the searches are rejected once the threads are busy and the queue is full.
+     */
+    @Test
+    void testRejectedWhenFull() throws Exception {
+        RoutingExecutor executor = new RoutingExecutor(true, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Integer> running = CompletableFuture.supplyAsync(() -> executor.call(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> executor.call(() -> 2));
+            while (executor.getQueueSize() < 1) {
+                Thread.sleep(1);
+            }
+            assertThrows(RejectedExecutionException.class, () -> executor.call(() -> 3));
+            release.countDown();
+            assertEquals(1, running.get(10, TimeUnit.SECONDS));
+            assertEquals(2, queued.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that several searches run on the calling thread and on the threads of the executor, even if it is disabled
+     * or its queue is full, that their results keep the order of the searches, and that the first error is thrown.
+     *
+     * @param enabled if true each single search runs on the executor.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testCallAll(boolean enabled) {
+        RoutingExecutor executor = new RoutingExecutor(enabled, 3, 1);
+        try {
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            List<Supplier<Integer>> searches = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int value = i;
+                searches.add(() -> {
+                    threads.add(Thread.currentThread().getName());
+                    // A search called from a thread running searches runs on it.
+                    return executor.call(() -> value * 2);
+                });
+            }
+            List<Integer> results = executor.callAll(searches);
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i * 2, results.get(i));
+            }
+            assertTrue(threads.size() <= 3);
+            assertEquals(0, executor.getQueueSize());
+            assertTrue(executor.callAll(List.of()).isEmpty());
+
+            searches.set(150, () -> {
+                throw new IllegalStateException("second error");
+            });
+            searches.set(50, () -> {
+                throw new IllegalArgumentException("first error");
+            });
+            assertThrows(IllegalArgumentException.class, () -> executor.callAll(searches));
+            searches.set(10, () -> {
+                throw new StackOverflowError();
+            });
+            assertThrows(StackOverflowError.class, () -> executor.callAll(searches));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that negative bounds are rejected.
+     */
+    @Test
+    void testInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new RoutingExecutor(true, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RoutingExecutor(true, 1, 0));
+    }
+}
@@ -0,0 +1,70 @@
+package com.planifcarbon.backend.services;
+
+import com.planifcarbon.backend.model.MetroMap;
+import com.planifcarbon.backend.model.Station;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SearchMetrics} class.
+ */
+class SearchMetricsTest {
+
+    /**
+     * Tests that each search is recorded with its tags once a registry is bound, with the work of every engine.
+     */
+    @Test
+    void testSearchesAreRecorded() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        SearchMetrics metrics = new SearchMetrics(map);
+        Station nation = map.getStationByName("Nation");
+        Station bercy = map.getStationByName("Bercy");
+        // Not bound yet, nothing is recorded.
+        map.getSegmentsFromPath(nation, bercy, 50000, true, true, true);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        map.getSegmentsFromPath(nation, bercy, 50000, true, true, true);
+        map.getSegmentsFromPath(nation, bercy, 50000, true, true, true);
+        map.getSegmentsFromAStar(nation, bercy, 0, false, true, false);
+        map.getSegmentsFromRaptor(nation, bercy, 50000, true, false);
+
+        assertEquals(2, registry.get("path.search").tags("engine", "DIJKSTRA", "method", "TIME", "transportation",
+                "METRO_FOOT").timer().count());
+        assertEquals(2, registry.get("path.search.settled").tags("engine", "DIJKSTRA").summary().count());
+        assertTrue(registry.get("path.search.schedule.lookups").tags("engine", "DIJKSTRA").summary().totalAmount() > 0);
+        assertEquals(1, registry.get("path.search.relaxed").tags("engine", "ASTAR", "method", "DISTANCE",
+                "transportation", "FOOT").summary().count());
+        assertEquals(0, registry.get("path.search.schedule.lookups").tags("engine", "ASTAR").summary().totalAmount());
+        assertEquals(1, registry.get("path.search").tags("engine", "RAPTOR", "transportation", "METRO").timer().count());
+        assertTrue(registry.get("path.search.settled").tags("engine", "RAPTOR").summary().totalAmount() > 0);
+        assertTrue(registry.get("path.search.schedule.lookups").tags("engine", "RAPTOR").summary().totalAmount() > 0);
+    }
+
+    /**
+     * Tests that a first search without work does not prevent the next searches of its shape from recording theirs.
+     */
+    @Test
+    void testWorkIsRecordedAfterAnEmptySearch() {
+        MetroMap map = new MetroMap();
+        map.initializeFields();
+        SearchMetrics metrics = new SearchMetrics(map);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        Station nation = map.getStationByName("Nation");
+        Station bercy = map.getStationByName("Bercy");
+
+        map.getSegmentsFromConnectionScan(nation, nation, 50000, true, false);
+        assertEquals(1, registry.get("path.search").tags("engine", "CSA").timer().count());
+        assertNull(registry.find("path.search.settled").tags("engine", "CSA").summary());
+
+        map.getSegmentsFromConnectionScan(nation, bercy, 50000, true, false);
+        assertEquals(2, registry.get("path.search").tags("engine", "CSA").timer().count());
+        assertEquals(1, registry.get("path.search.settled").tags("engine", "CSA").summary().count());
+        assertTrue(registry.get("path.search.settled").tags("engine", "CSA").summary().totalAmount() > 0);
+        assertEquals(0, registry.get("path.search.heap.pushes").tags("engine", "CSA").summary().totalAmount());
+    }
+}